@@ -0,0 +1,67 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.ColumnarLedger;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.Metric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting the partial sums of a ledger already in memory, from the accounting records of the
+ * book and from the columnar ledger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class AggregationBenchmark
+{
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    private BookKeeping book;
+
+    private ColumnarLedger ledger;
+
+    @Setup(Level.Trial)
+    public void generateLedger()
+    {
+        book = SyntheticLedgerGenerator.generate(rows, 42);
+        ledger = ColumnarLedger.of(book);
+    }
+
+    @Benchmark
+    public LedgerAggregates aggregateBook()
+    {
+        return LedgerAggregates.of(book);
+    }
+
+    @Benchmark
+    public LedgerAggregates aggregateBookRevenueOnly()
+    {
+        return LedgerAggregates.of(book, EnumSet.of(Metric.REVENUE));
+    }
+
+    @Benchmark
+    public LedgerAggregates aggregateColumnarLedger()
+    {
+        return ledger.aggregate();
+    }
+}
@@ -0,0 +1,39 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.AccountingMetricsApplication;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties.IngestionMode;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+
+/**
+ * Application context of the accounting metrics service for benchmarks, without web server and
+ * without watching the ledger file, so only the service itself is measured.
+ */
+public final class BenchmarkApplication
+{
+    private BenchmarkApplication()
+    {
+    }
+
+    /**
+     * Start the application context on a ledger file.
+     *
+     * @param ledger data file to read.
+     * @param mode ingestion mode of the data file.
+     * @return started application context.
+     */
+    public static ConfigurableApplicationContext start(final File ledger, final IngestionMode mode)
+    {
+        return new SpringApplicationBuilder(AccountingMetricsApplication.class)
+            .web(WebApplicationType.NONE)
+            .logStartupInfo(false)
+            .properties("accounting.metrics.ledger.path=" + ledger.getAbsolutePath(),
+                "accounting.metrics.ledger.watch=false",
+                "accounting.metrics.ledger.mode=" + mode.name().toLowerCase())
+            .run();
+    }
+}
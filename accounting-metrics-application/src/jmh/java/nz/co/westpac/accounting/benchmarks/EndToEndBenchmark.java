@@ -0,0 +1,88 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.RenderedMetrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties.IngestionMode;
+import nz.co.westpac.accounting.services.AccountingMetricsInterface;
+import nz.co.westpac.accounting.services.impl.LedgerSnapshotCache;
+import nz.co.westpac.accounting.services.impl.MetricsResponseCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end retrieval of all metrics information through the service, with the ledger cached,
+ * with the response rendered already, and with the ledger read again on every call as on a changed
+ * data file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class EndToEndBenchmark
+{
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    @Param({"TREE", "STREAMING", "COLUMNAR", "PARALLEL"})
+    private IngestionMode mode;
+
+    private ConfigurableApplicationContext context;
+
+    private AccountingMetricsInterface accountingMetricsService;
+
+    private MetricsResponseCache metricsResponseCache;
+
+    private LedgerSnapshotCache ledgerSnapshotCache;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException
+    {
+        context = BenchmarkApplication.start(SyntheticLedgerGenerator.file(rows, 42), mode);
+        accountingMetricsService = context.getBean(AccountingMetricsInterface.class);
+        metricsResponseCache = context.getBean(MetricsResponseCache.class);
+        ledgerSnapshotCache = context.getBean(LedgerSnapshotCache.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    public Metrics retrieveMetricsInformation()
+    {
+        return accountingMetricsService.retrieveMetricsInformation();
+    }
+
+    @Benchmark
+    public RenderedMetrics retrieveRenderedMetricsInformation()
+    {
+        return metricsResponseCache.getMetricsInformation();
+    }
+
+    @Benchmark
+    public Metrics retrieveMetricsInformationAfterChange()
+    {
+        ledgerSnapshotCache.invalidate();
+        return accountingMetricsService.retrieveMetricsInformation();
+    }
+}
@@ -0,0 +1,95 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.ColumnarLedger;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties.IngestionMode;
+import nz.co.westpac.accounting.services.impl.ParallelLedgerReader;
+import nz.co.westpac.accounting.services.impl.StreamingLedgerReader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a data file into partial sums, which is what populating the book costs on every change
+ * of the ledger, in each ingestion mode. The tree mode of ten million records needs a heap of
+ * several gigabytes. The parallel mode uses all cores, and reads files below a few megabytes per
+ * core sequentially.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class LedgerIngestionBenchmark
+{
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    @Param({"TREE", "STREAMING", "COLUMNAR", "PARALLEL"})
+    private IngestionMode mode;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final StreamingLedgerReader streamingLedgerReader = new StreamingLedgerReader(objectMapper);
+
+    private final ForkJoinPool parallelReaderPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final ParallelLedgerReader parallelLedgerReader = new ParallelLedgerReader(streamingLedgerReader, parallelReaderPool,
+        Runtime.getRuntime().availableProcessors() * 4, 4L * 1024 * 1024);
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void generateLedger() throws IOException
+    {
+        file = SyntheticLedgerGenerator.file(rows, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopWorkers()
+    {
+        parallelReaderPool.shutdownNow();
+    }
+
+    @Benchmark
+    public LedgerAggregates populateBook() throws IOException
+    {
+        switch (mode) {
+            case STREAMING:
+                final LedgerAggregates aggregates = new LedgerAggregates();
+                streamingLedgerReader.read(file, aggregates::add);
+                return aggregates;
+            case PARALLEL:
+                final LedgerAggregates parallelAggregates = new LedgerAggregates();
+                parallelLedgerReader.read(file, parallelAggregates);
+                return parallelAggregates;
+            case COLUMNAR:
+                final ColumnarLedger ledger = new ColumnarLedger();
+                streamingLedgerReader.read(file, ledger::add);
+                ledger.trim();
+                return ledger.aggregate();
+            default:
+                return LedgerAggregates.of(objectMapper.readValue(file, BookKeeping.class));
+        }
+    }
+}
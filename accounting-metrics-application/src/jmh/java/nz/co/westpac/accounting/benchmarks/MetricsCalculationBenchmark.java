@@ -0,0 +1,88 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.models.FxRateTable;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties.IngestionMode;
+import nz.co.westpac.accounting.services.impl.AccountingMetricsService;
+import nz.co.westpac.accounting.services.impl.FxRateCache;
+import nz.co.westpac.accounting.services.impl.LedgerSnapshotCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deriving and formatting each metric from the partial sums of a ledger, including the values it
+ * depends on. The cost does not depend on the size of the ledger, neither when the partial sums of
+ * its currencies get converted into a reporting currency first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsCalculationBenchmark
+{
+    @Param({"revenue", "expenses", "grossProfitMargin", "netProfitMargin", "workingCapitalRatio", "revenue,expenses,grossProfitMargin,netProfitMargin,workingCapitalRatio"})
+    private String fields;
+
+    private ConfigurableApplicationContext context;
+
+    private AccountingMetricsService accountingMetricsService;
+
+    private LedgerAggregates aggregates;
+
+    private Set<Metric> metrics;
+
+    private LedgerSnapshot snapshot;
+
+    private FxRateTable rates;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException
+    {
+        context = BenchmarkApplication.start(SyntheticLedgerGenerator.file(100000, 42), IngestionMode.STREAMING);
+        accountingMetricsService = context.getBean(AccountingMetricsService.class);
+        aggregates = LedgerAggregates.of(SyntheticLedgerGenerator.generate(100000, 42));
+        metrics = accountingMetricsService.parseFields(fields);
+        snapshot = context.getBean(LedgerSnapshotCache.class).getSnapshot();
+        rates = context.getBean(FxRateCache.class).getTable();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    public Metrics calculateMetrics()
+    {
+        return accountingMetricsService.calculateMetrics(aggregates, metrics);
+    }
+
+    @Benchmark
+    public Metrics calculateMetricsInCurrency()
+    {
+        return accountingMetricsService.calculateMetrics(snapshot, metrics, "USD", rates);
+    }
+}
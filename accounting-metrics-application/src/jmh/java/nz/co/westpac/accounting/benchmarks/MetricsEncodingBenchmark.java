@@ -0,0 +1,88 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.MetricsEncoding;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.impl.MetricsCalculator;
+import nz.co.westpac.accounting.services.impl.MetricsEncoder;
+import nz.co.westpac.accounting.services.impl.MetricsFormatter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding all metrics information of a ledger as the JSON response, against the binary encodings
+ * carrying the calculated values next to the formatted text. The size of every encoding on the wire,
+ * plain and gzipped, is printed once per trial next to its encode cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsEncodingBenchmark
+{
+    @Param({"JSON", "CBOR", "SMILE", "PROTOBUF"})
+    private String encoding;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MetricsEncoder metricsEncoder = new MetricsEncoder();
+
+    private Metrics metrics;
+
+    private MetricsEncoding metricsEncoding;
+
+    @Setup(Level.Trial)
+    public void calculateMetrics() throws IOException
+    {
+        final AccountingMetricsProperties properties = new AccountingMetricsProperties();
+        properties.getLocale().setLanguage("en");
+        properties.getLocale().setCountry("NZ");
+        properties.getCurrencyFormatter().setMaximumFractionDigits(0);
+        properties.getPercentFormatter().setMaximumFractionDigits(3);
+        final MetricsCalculator metricsCalculator = new MetricsCalculator(properties, new MetricsFormatter(properties));
+        final Set<Metric> fields = Metric.fields();
+        metrics = metricsCalculator.format(metricsCalculator.calculate(LedgerAggregates.of(SyntheticLedgerGenerator.generate(100000, 42)), fields),
+            fields, null);
+        metricsEncoding = "JSON".equals(encoding) ? null : MetricsEncoding.valueOf(encoding);
+
+        final byte[] body = encode();
+        final ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(body);
+        }
+        System.out.println(encoding + ": " + body.length + " bytes, " + gzipped.size() + " bytes gzipped");
+    }
+
+    @Benchmark
+    public byte[] encode() throws JsonProcessingException
+    {
+        if (metricsEncoding == null) {
+            return objectMapper.writeValueAsBytes(metrics);
+        }
+        return metricsEncoder.encode(metrics, metricsEncoding);
+    }
+}
@@ -0,0 +1,60 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.impl.MetricsFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Currency and percent formatting with the configuration of the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsFormattingBenchmark
+{
+    private final BigDecimal currency = new BigDecimal("123456789.56789");
+
+    private final BigDecimal percent = new BigDecimal("-0.126");
+
+    private MetricsFormatter metricsFormatter;
+
+    @Setup(Level.Trial)
+    public void createFormatter()
+    {
+        final AccountingMetricsProperties properties = new AccountingMetricsProperties();
+        properties.getLocale().setLanguage("en");
+        properties.getLocale().setCountry("NZ");
+        properties.getCurrencyFormatter().setMaximumFractionDigits(0);
+        properties.getPercentFormatter().setMaximumFractionDigits(3);
+        metricsFormatter = new MetricsFormatter(properties);
+    }
+
+    @Benchmark
+    public String formatCurrency()
+    {
+        return metricsFormatter.formatCurrency(currency);
+    }
+
+    @Benchmark
+    public String formatPercent()
+    {
+        return metricsFormatter.formatPercent(percent);
+    }
+}
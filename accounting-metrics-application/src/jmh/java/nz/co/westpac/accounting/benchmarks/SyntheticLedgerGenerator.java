@@ -0,0 +1,207 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BookKeeping;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Generator of synthetic ledgers in the structure of the data file. The mix of account_category,
+ * account_type and value_type follows a typical small business general ledger, widened from the
+ * sample data file so every partial sum of the metrics gets records. The same seed always
+ * generates the same ledger.
+ */
+public class SyntheticLedgerGenerator
+{
+    /**
+     * Weighted record kinds: account_category, account_type, value_type and weight.
+     */
+    private static final String[][] KINDS = {
+        {"revenue", "sales", "credit", "8"},
+        {"revenue", "sales", "debit", "2"},
+        {"revenue", "other_income", "credit", "2"},
+        {"expense", "overheads", "debit", "30"},
+        {"expense", "direct_costs", "debit", "6"},
+        {"expense", "payroll", "debit", "4"},
+        {"assets", "bank", "debit", "6"},
+        {"assets", "current", "debit", "4"},
+        {"assets", "current", "credit", "2"},
+        {"assets", "current_accounts_receivable", "debit", "4"},
+        {"assets", "current_accounts_payable", "debit", "1"},
+        {"assets", "fixed", "debit", "3"},
+        {"assets", "fixed", "credit", "1"},
+        {"liability", "current", "credit", "6"},
+        {"liability", "current", "debit", "2"},
+        {"liability", "current_accounts_payable", "credit", "4"},
+        {"liability", "tax", "credit", "2"},
+        {"liability", "payroll", "credit", "2"},
+        {"equity", "equity", "credit", "2"}
+    };
+
+    private static final String[] CURRENCIES = {"AUD", "NZD", "USD"};
+
+    private final int[] cumulativeWeights = new int[KINDS.length];
+
+    private final SplittableRandom random;
+
+    public SyntheticLedgerGenerator(final long seed)
+    {
+        random = new SplittableRandom(seed);
+        int total = 0;
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            total += Integer.parseInt(KINDS[kind][3]);
+            cumulativeWeights[kind] = total;
+        }
+    }
+
+    /**
+     * Write a generated ledger file of any size.
+     *
+     * @param args number of accounting records, seed, and the file to write.
+     * @throws IOException in case the file cannot be written.
+     */
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length != 3) {
+            System.err.println("Usage: SyntheticLedgerGenerator <rows> <seed> <file>");
+            System.exit(2);
+        }
+        final File file = new File(args[2]);
+        write(file, Long.parseLong(args[0]), Long.parseLong(args[1]));
+        System.out.println("Wrote " + args[0] + " accounting records to " + file.getAbsolutePath() + " (" + file.length() + " bytes)");
+    }
+
+    /**
+     * Generate a ledger in memory.
+     *
+     * @param rows number of accounting records.
+     * @param seed of the generator.
+     * @return generated book keeping.
+     */
+    public static BookKeeping generate(final int rows, final long seed)
+    {
+        final SyntheticLedgerGenerator generator = new SyntheticLedgerGenerator(seed);
+        final List<Accounting> data = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            data.add(generator.next(row));
+        }
+        final BookKeeping book = new BookKeeping();
+        book.setConnection_id(new UUID(seed, rows).toString());
+        book.setCurrency("AUD");
+        book.setData(data);
+        return book;
+    }
+
+    /**
+     * Get the data file of a generated ledger, writing it into the temporary directory unless a
+     * previous run did so already.
+     *
+     * @param rows number of accounting records.
+     * @param seed of the generator.
+     * @return generated data file.
+     * @throws IOException in case the file cannot be written.
+     */
+    public static File file(final long rows, final long seed) throws IOException
+    {
+        final File file = new File(System.getProperty("java.io.tmpdir"), "ledger-" + rows + "-" + seed + ".json");
+        if (!file.isFile()) {
+            final File partial = new File(file.getPath() + ".partial");
+            write(partial, rows, seed);
+            if (!partial.renameTo(file)) {
+                throw new IOException("Unable to move generated ledger to " + file);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Write a generated ledger in the structure of the data file, one record at a time.
+     *
+     * @param file to write.
+     * @param rows number of accounting records.
+     * @param seed of the generator.
+     * @throws IOException in case the file cannot be written.
+     */
+    public static void write(final File file, final long rows, final long seed) throws IOException
+    {
+        final SyntheticLedgerGenerator generator = new SyntheticLedgerGenerator(seed);
+        try (JsonGenerator json = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("object_category", "general-ledger");
+            json.writeStringField("connection_id", new UUID(seed, rows).toString());
+            json.writeStringField("user", new UUID(rows, seed).toString());
+            json.writeStringField("object_creation_date", "2020-10-30T01:58:16.723Z");
+            json.writeArrayFieldStart("data");
+            for (long row = 0; row < rows; row++) {
+                final Accounting account = generator.next(row);
+                json.writeStartObject();
+                json.writeStringField("account_category", account.getAccount_category());
+                json.writeStringField("account_code", account.getAccount_code());
+                json.writeStringField("account_currency", account.getAccount_currency());
+                json.writeStringField("account_identifier", account.getAccount_identifier());
+                json.writeStringField("account_status", account.getAccount_status());
+                json.writeStringField("value_type", account.getValue_type());
+                json.writeStringField("account_name", account.getAccount_name());
+                json.writeStringField("account_type", account.getAccount_type());
+                json.writeStringField("account_type_bank", account.getAccount_type_bank());
+                json.writeStringField("system_account", account.getSystem_account());
+                json.writeNumberField("total_value", account.getTotal_value());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeStringField("currency", "AUD");
+            json.writeStringField("object_origin_type", "accounting");
+            json.writeStringField("object_origin_category", "bookkeeping");
+            json.writeStringField("object_type", "day");
+            json.writeStringField("object_class", "timeline-balance");
+            json.writeStringField("balance_date", "2020-09-30T00:00:00.000Z");
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Generate the next accounting record. Values spread over cents to hundreds of thousands, with
+     * most of them in the hundreds, like in the sample data file.
+     *
+     * @param row number of the record, used for its account_code and account_identifier.
+     * @return generated accounting record.
+     */
+    public Accounting next(final long row)
+    {
+        final String[] kind = KINDS[kind(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]))];
+        final int currency = random.nextInt(50);
+
+        final Accounting account = new Accounting();
+        account.setAccount_category(kind[0]);
+        account.setAccount_type(kind[1]);
+        account.setValue_type(kind[2]);
+        account.setAccount_code(Long.toString(200 + row % 800));
+        account.setAccount_currency(currency < 45 ? CURRENCIES[0] : currency < 49 ? CURRENCIES[1] : CURRENCIES[2]);
+        account.setAccount_identifier(new UUID(random.nextLong(), row).toString());
+        account.setAccount_status(random.nextInt(100) < 97 ? "ACTIVE" : "ARCHIVED");
+        account.setAccount_name(kind[1] + " " + row);
+        account.setAccount_type_bank("bank".equals(kind[1]) ? "BANK" : "");
+        account.setSystem_account("");
+        account.setTotal_value(BigDecimal.valueOf((long) Math.pow(10, 1 + random.nextDouble() * 6), 2));
+        return account;
+    }
+
+    private int kind(final int weight)
+    {
+        int kind = 0;
+        while (weight >= cumulativeWeights[kind]) {
+            kind++;
+        }
+        return kind;
+    }
+}
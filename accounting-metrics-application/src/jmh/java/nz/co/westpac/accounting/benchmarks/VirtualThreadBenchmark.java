@@ -0,0 +1,98 @@
+package nz.co.westpac.accounting.benchmarks;
+
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties.IngestionMode;
+import nz.co.westpac.accounting.services.impl.LedgerLoader;
+import nz.co.westpac.accounting.services.impl.VirtualThreadExecutor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of loading ledger files under high concurrency, on a pool of 200 platform threads as
+ * Tomcat uses by default, and on a virtual thread per load. Every operation loads the ledger file
+ * as many times concurrently as the concurrency parameter asks for and waits for all of them. The
+ * virtual thread variant is skipped on runtimes without virtual threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class VirtualThreadBenchmark
+{
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    @Param({"100", "1000", "10000"})
+    private int concurrency;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private String threads;
+
+    private ConfigurableApplicationContext context;
+
+    private LedgerLoader ledgerLoader;
+
+    private File ledger;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException
+    {
+        executor = "VIRTUAL".equals(threads) ? VirtualThreadExecutor.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        if (executor == null) {
+            throw new IllegalStateException("Virtual threads are not supported by Java " + Runtime.version() + ".");
+        }
+        ledger = SyntheticLedgerGenerator.file(rows, 42);
+        context = BenchmarkApplication.start(ledger, IngestionMode.STREAMING);
+        ledgerLoader = context.getBean(LedgerLoader.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication()
+    {
+        executor.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    public List<LedgerSnapshot> loadConcurrently() throws InterruptedException, ExecutionException
+    {
+        final List<Future<LedgerSnapshot>> loads = new ArrayList<>(concurrency);
+        for (int load = 0; load < concurrency; load++) {
+            loads.add(executor.submit(() -> ledgerLoader.load(ledger, null)));
+        }
+        final List<LedgerSnapshot> snapshots = new ArrayList<>(concurrency);
+        for (final Future<LedgerSnapshot> load : loads) {
+            snapshots.add(load.get());
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,80 @@
+package nz.co.westpac.accounting.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Every latency measured by a load test, in nanoseconds, kept in full so high percentiles are
+ * exact. Not thread safe; every client thread records its own samples, which are merged after
+ * the run.
+ */
+public class LatencySamples
+{
+    private long[] latencies = new long[1024];
+    private int size;
+    private long errors;
+
+    /**
+     * Record the latency of a request.
+     *
+     * @param latency of the request in nanoseconds.
+     * @param success whether the request was answered with status 200.
+     */
+    public void add(final long latency, final boolean success)
+    {
+        if (size == latencies.length) {
+            latencies = Arrays.copyOf(latencies, size * 2);
+        }
+        latencies[size++] = latency;
+        if (!success) {
+            errors++;
+        }
+    }
+
+    /**
+     * Merge the samples of another client thread.
+     *
+     * @param other samples to merge.
+     */
+    public void addAll(final LatencySamples other)
+    {
+        if (size + other.size > latencies.length) {
+            latencies = Arrays.copyOf(latencies, Math.max(size + other.size, size * 2));
+        }
+        System.arraycopy(other.latencies, 0, latencies, size, other.size);
+        size += other.size;
+        errors += other.errors;
+    }
+
+    /**
+     * Sort the samples, needed before reading percentiles.
+     */
+    public void sort()
+    {
+        Arrays.sort(latencies, 0, size);
+    }
+
+    /**
+     * Latency below which the given fraction of the sorted samples falls.
+     *
+     * @param fraction of the samples, between 0 and 1.
+     * @return latency in nanoseconds, or 0 without samples.
+     */
+    public long percentile(final double fraction)
+    {
+        if (size == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(fraction * size);
+        return latencies[Math.max(0, Math.min(size, rank) - 1)];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long errors()
+    {
+        return errors;
+    }
+}
@@ -0,0 +1,148 @@
+package nz.co.westpac.accounting.loadtest;
+
+import nz.co.westpac.accounting.AccountingMetricsApplication;
+import nz.co.westpac.accounting.benchmarks.SyntheticLedgerGenerator;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load test of the accounting metrics application over HTTP. It generates a ledger, starts the
+ * application on a random local port, and drives the metrics endpoints from a number of client
+ * threads. Every thread sends its next request as soon as the previous one is answered, so the
+ * reported latencies are those of a closed system at the given concurrency.
+ *
+ * <p>
+ * Options, all optional: {@code --rows=1000000 --seed=42 --mode=streaming --concurrency=16
+ * --warmup=10 --duration=30 --paths=/challenge,/challenge/revenue}. Durations are in seconds.
+ */
+public final class LoadTestRunner
+{
+    private LoadTestRunner()
+    {
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        final Map<String, String> options = new HashMap<>();
+        options.put("rows", "1000000");
+        options.put("seed", "42");
+        options.put("mode", "streaming");
+        options.put("concurrency", "16");
+        options.put("warmup", "10");
+        options.put("duration", "30");
+        options.put("paths", "/challenge,/challenge/revenue,/challenge/netProfitMargin,/challenge/workingCapitalRatio");
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --option=value but got " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        final File ledger = SyntheticLedgerGenerator.file(Long.parseLong(options.get("rows")), Long.parseLong(options.get("seed")));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AccountingMetricsApplication.class)
+            .logStartupInfo(false)
+            .properties("server.port=0",
+                "accounting.metrics.ledger.path=" + ledger.getAbsolutePath(),
+                "accounting.metrics.ledger.watch=false",
+                "accounting.metrics.ledger.mode=" + options.get("mode"))
+            .run()) {
+            final String baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            final String[] paths = options.get("paths").split(",");
+            final int concurrency = Integer.parseInt(options.get("concurrency"));
+
+            System.out.println("Ledger " + ledger + " (" + ledger.length() + " bytes), " + options);
+            run(baseUri, paths, concurrency, Duration.ofSeconds(Long.parseLong(options.get("warmup"))));
+            final Map<String, LatencySamples> results = run(baseUri, paths, concurrency, Duration.ofSeconds(Long.parseLong(options.get("duration"))));
+            report(results, Duration.ofSeconds(Long.parseLong(options.get("duration"))));
+        }
+    }
+
+    /**
+     * Drive the paths round robin from every client thread for the given duration.
+     *
+     * @return latency samples per path.
+     */
+    private static Map<String, LatencySamples> run(final String baseUri, final String[] paths, final int concurrency, final Duration duration)
+            throws Exception
+    {
+        final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        final long deadline = System.nanoTime() + duration.toNanos();
+        final ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        try {
+            final List<Future<Map<String, LatencySamples>>> workers = new ArrayList<>(concurrency);
+            for (int worker = 0; worker < concurrency; worker++) {
+                final int offset = worker;
+                workers.add(clients.submit(() -> drive(client, baseUri, paths, offset, deadline)));
+            }
+
+            final Map<String, LatencySamples> results = new LinkedHashMap<>();
+            for (final String path : paths) {
+                results.put(path, new LatencySamples());
+            }
+            for (final Future<Map<String, LatencySamples>> worker : workers) {
+                for (final Map.Entry<String, LatencySamples> samples : worker.get().entrySet()) {
+                    results.get(samples.getKey()).addAll(samples.getValue());
+                }
+            }
+            return results;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static Map<String, LatencySamples> drive(final HttpClient client, final String baseUri, final String[] paths, final int offset,
+            final long deadline) throws IOException, InterruptedException
+    {
+        final Map<String, LatencySamples> samples = new HashMap<>();
+        final HttpRequest[] requests = new HttpRequest[paths.length];
+        for (int path = 0; path < paths.length; path++) {
+            samples.put(paths[path], new LatencySamples());
+            requests[path] = HttpRequest.newBuilder(URI.create(baseUri + paths[path])).header("Accept-Encoding", "gzip").build();
+        }
+        for (long request = offset; System.nanoTime() < deadline; request++) {
+            final int path = (int) (request % paths.length);
+            final long start = System.nanoTime();
+            final HttpResponse<byte[]> response = client.send(requests[path], HttpResponse.BodyHandlers.ofByteArray());
+            samples.get(paths[path]).add(System.nanoTime() - start, response.statusCode() == 200);
+        }
+        return samples;
+    }
+
+    private static void report(final Map<String, LatencySamples> results, final Duration duration)
+    {
+        final LatencySamples total = new LatencySamples();
+        System.out.println(String.format("%-40s %12s %10s %10s %10s %10s %10s %8s", "path", "requests/s", "p50 ms", "p99 ms", "p999 ms", "max ms",
+            "requests", "errors"));
+        for (final Map.Entry<String, LatencySamples> result : results.entrySet()) {
+            print(result.getKey(), result.getValue(), duration);
+            total.addAll(result.getValue());
+        }
+        print("all", total, duration);
+    }
+
+    private static void print(final String path, final LatencySamples samples, final Duration duration)
+    {
+        samples.sort();
+        System.out.println(String.format("%-40s %12.1f %10.3f %10.3f %10.3f %10.3f %10d %8d", path, samples.size() * 1000.0 / duration.toMillis(),
+            samples.percentile(0.5) / 1e6, samples.percentile(0.99) / 1e6, samples.percentile(0.999) / 1e6, samples.percentile(1) / 1e6,
+            samples.size(), samples.errors()));
+    }
+}
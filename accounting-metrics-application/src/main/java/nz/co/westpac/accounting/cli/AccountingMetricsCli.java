@@ -0,0 +1,383 @@
+package nz.co.westpac.accounting.cli;
+
+import nz.co.westpac.accounting.models.DataQuality;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.impl.MetricsCalculator;
+import nz.co.westpac.accounting.services.impl.MetricsFormatter;
+import nz.co.westpac.accounting.services.impl.StreamingLedgerReader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Command line interface printing the metrics information of ledger files, for batch jobs which
+ * would otherwise start the whole micro-service for a few numbers. It calculates and formats the
+ * metrics with the same {@link MetricsCalculator} as the service and reads the same
+ * {@code application.properties}, but starts neither a Spring context nor a web server. Ledger
+ * files are streamed into partial sums with a bare {@code JsonFactory}, so neither a book keeping
+ * tree nor an object mapper is built, which would take longer than the whole calculation.
+ *
+ * <pre>
+ * AccountingMetricsCli [--json] [--fields=revenue,netProfitMargin] [ledger file ...]
+ * AccountingMetricsCli --directory=ledgers [--output=report.csv] [--format=jsonl|csv] [--parallelism=8] [--fields=...]
+ * </pre>
+ *
+ * Without ledger files the ledger file defined in configuration is read. Metrics are printed one
+ * per line as in the challenge, or with {@code --json} as the JSON response of the
+ * {@code /challenge} endpoint, one line per ledger file. With {@code --directory} every ledger file
+ * of the directory is calculated by the {@link LedgerDirectoryPipeline} into a record per ledger,
+ * and the throughput of the run is reported on the error stream. Configuration properties can be
+ * overridden with system properties, like {@code -Daccounting.metrics.locale.country=AU}.
+ */
+public final class AccountingMetricsCli
+{
+    /**
+     * Exit status when a ledger file could not be read or calculated.
+     */
+    public static final int EXIT_FAILURE = 1;
+
+    /**
+     * Exit status for invalid arguments.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    private static final String PREFIX = "accounting.metrics.";
+
+    /**
+     * Printed for a ratio which divides by zero.
+     */
+    private static final String UNDEFINED = "n/a";
+
+    private static final String USAGE = "Usage: myChallenge [--json] [--fields=revenue,expenses,...] [ledger file ...]%n"
+        + "       myChallenge --directory=DIR [--output=FILE] [--format=jsonl|csv] [--parallelism=N] [--fields=revenue,expenses,...]%n";
+
+    private final AccountingMetricsProperties properties;
+
+    private final MetricsCalculator metricsCalculator;
+
+    private final JsonFactory jsonFactory;
+
+    private final StreamingLedgerReader streamingLedgerReader;
+
+    /**
+     * Command line interface configured by the given properties, like the ones of
+     * {@code application.properties}.
+     *
+     * @param configuration properties named as in {@code application.properties}.
+     */
+    public AccountingMetricsCli(final Properties configuration)
+    {
+        properties = new AccountingMetricsProperties();
+        properties.getLocale().setLanguage(configuration.getProperty(PREFIX + "locale.language", "en"));
+        properties.getLocale().setCountry(configuration.getProperty(PREFIX + "locale.country", "NZ"));
+        properties.getCurrencyFormatter()
+            .setMaximumFractionDigits(Integer.valueOf(configuration.getProperty(PREFIX + "currencyFormatter.maximumFractionDigits", "0")));
+        properties.getPercentFormatter()
+            .setMaximumFractionDigits(Integer.valueOf(configuration.getProperty(PREFIX + "percentFormatter.maximumFractionDigits", "3")));
+        properties.getLedger().setPath(configuration.getProperty(PREFIX + "ledger.path", properties.getLedger().getPath()));
+        metricsCalculator = new MetricsCalculator(properties, new MetricsFormatter(properties));
+        jsonFactory = new JsonFactory();
+        streamingLedgerReader = new StreamingLedgerReader(jsonFactory);
+    }
+
+    /**
+     * Entry point of the command line interface.
+     *
+     * @param args is command line arguments.
+     */
+    public static void main(final String[] args)
+    {
+        System.exit(new AccountingMetricsCli(configuration()).run(args, System.out, System.err));
+    }
+
+    /**
+     * Print the metrics information of every ledger file passed in the arguments. A ledger file
+     * failing to read is reported on the error stream, the other ledger files are still printed.
+     *
+     * @param args options and ledger files.
+     * @param out stream the metrics are printed to.
+     * @param err stream failures are reported to.
+     * @return exit status, zero when the metrics of all ledger files got printed.
+     */
+    public int run(final String[] args, final PrintStream out, final PrintStream err)
+    {
+        boolean json = false;
+        Set<Metric> fields = Metric.fields();
+        String directory = null;
+        String output = null;
+        LedgerDirectoryPipeline.Format format = LedgerDirectoryPipeline.Format.JSONL;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        final List<String> ledgers = new ArrayList<>();
+        try {
+            for (final String arg : args) {
+                if ("--json".equals(arg)) {
+                    json = true;
+                } else if (arg.startsWith("--fields=")) {
+                    fields = parseFields(option(arg));
+                    if (fields == null) {
+                        err.println("Not a valid metrics information requested.");
+                        return EXIT_USAGE;
+                    }
+                } else if (arg.startsWith("--directory=")) {
+                    directory = option(arg);
+                } else if (arg.startsWith("--output=")) {
+                    output = option(arg);
+                } else if (arg.startsWith("--format=")) {
+                    format = LedgerDirectoryPipeline.Format.valueOf(option(arg).toUpperCase(Locale.ROOT));
+                } else if (arg.startsWith("--parallelism=")) {
+                    parallelism = Integer.parseInt(option(arg));
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException(arg);
+                } else {
+                    ledgers.add(arg);
+                }
+            }
+            if (parallelism < 1 || directory != null && !ledgers.isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException invalidArgument) {
+            err.printf(USAGE);
+            return EXIT_USAGE;
+        }
+        if (directory != null) {
+            return runPipeline(new LedgerDirectoryPipeline(this::calculate, jsonFactory, fields, format, parallelism), Paths.get(directory), output, out,
+                err);
+        }
+        if (ledgers.isEmpty()) {
+            ledgers.add(properties.getLedger().getPath());
+        }
+
+        int status = 0;
+        for (final String ledger : ledgers) {
+            final Metrics metrics;
+            try {
+                metrics = calculate(new File(ledger), fields);
+            } catch (CliException failure) {
+                err.println(ledger + ": " + failure.getMessage());
+                status = EXIT_FAILURE;
+                continue;
+            }
+            if (json) {
+                out.println(render(metrics, fields));
+            } else {
+                if (ledgers.size() > 1) {
+                    out.println(ledger + ":");
+                }
+                print(metrics, fields, out);
+            }
+        }
+        out.flush();
+        return status;
+    }
+
+    /**
+     * Run the pipeline over a directory of ledger files, writing its records to the output file, or
+     * to the output stream when there is none.
+     */
+    private static int runPipeline(final LedgerDirectoryPipeline pipeline, final Path directory, final String output, final PrintStream out,
+            final PrintStream err)
+    {
+        final LedgerDirectoryPipeline.Summary summary;
+        try {
+            if (output == null) {
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                summary = pipeline.run(directory, writer);
+            } else {
+                try (Writer writer = Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+                    summary = pipeline.run(directory, writer);
+                }
+            }
+        } catch (IOException ioException) {
+            err.println(directory + ": " + ioException);
+            return EXIT_FAILURE;
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            err.println(directory + ": interrupted");
+            return EXIT_FAILURE;
+        }
+        err.println(summary);
+        return summary.getFailures() == 0 ? 0 : EXIT_FAILURE;
+    }
+
+    /**
+     * Stream a ledger file into the partial sums the metrics need and calculate the metrics.
+     *
+     * @throws CliException in case problem in reading the file, or file structure is not correct,
+     *         or mappig is corrupt.
+     */
+    Metrics calculate(final File file, final Set<Metric> fields)
+    {
+        final LedgerAggregates aggregates = new LedgerAggregates(fields);
+        try {
+            streamingLedgerReader.read(file, aggregates::add);
+        } catch (JsonParseException parseException) {
+            throw new CliException("Data file contains invalid content", parseException);
+        } catch (JsonMappingException mappingException) {
+            throw new CliException("data file JSON structure does not match structure expected", mappingException);
+        } catch (IOException ioException) {
+            throw new CliException("Failed reading data file.", ioException);
+        }
+        final Map<Metric, BigDecimal> values = metricsCalculator.calculate(aggregates, fields);
+        final Metrics metrics = metricsCalculator.format(values, fields, null);
+        metrics.setDataQuality(metricsCalculator.dataQuality(aggregates, values, fields));
+        return metrics;
+    }
+
+    /**
+     * Print every requested metric on a line of its own, labelled like in the challenge, followed
+     * by the quarantined records of the ledger when there are any.
+     */
+    private static void print(final Metrics metrics, final Set<Metric> fields, final PrintStream out)
+    {
+        for (final Metric field : fields) {
+            final StringBuilder label = new StringBuilder();
+            for (final String word : field.name().split("_")) {
+                label.append(label.length() == 0 ? "" : " ").append(word.charAt(0)).append(word.substring(1).toLowerCase(Locale.ROOT));
+            }
+            out.println(label + ": " + (field.get(metrics) != null ? field.get(metrics) : UNDEFINED));
+        }
+        final DataQuality dataQuality = metrics.getDataQuality();
+        if (dataQuality != null && dataQuality.getQuarantinedRows() != 0) {
+            out.println("Quarantined Rows: " + dataQuality.getQuarantinedRows() + " " + dataQuality.getQuarantined());
+        }
+    }
+
+    /**
+     * Render metrics like the {@code /challenge} response, which holds the requested metrics in
+     * the order of their declaration.
+     */
+    private String render(final Metrics metrics, final Set<Metric> fields)
+    {
+        final StringWriter json = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            generator.writeStartObject();
+            writeMetrics(metrics, fields, generator);
+            generator.writeEndObject();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+        return json.toString();
+    }
+
+    /**
+     * Write the requested metrics which have a value, and the data quality summary when there is
+     * one, as the fields of the current object.
+     *
+     * @throws IOException in case the generator failed writing.
+     */
+    static void writeMetrics(final Metrics metrics, final Set<Metric> fields, final JsonGenerator generator) throws IOException
+    {
+        for (final Metric field : fields) {
+            if (field.get(metrics) != null) {
+                generator.writeStringField(field.getFieldName(), field.get(metrics));
+            }
+        }
+        final DataQuality dataQuality = metrics.getDataQuality();
+        if (dataQuality == null) {
+            return;
+        }
+        generator.writeObjectFieldStart("dataQuality");
+        generator.writeNumberField("validRows", dataQuality.getValidRows());
+        generator.writeNumberField("quarantinedRows", dataQuality.getQuarantinedRows());
+        if (!dataQuality.getQuarantined().isEmpty()) {
+            generator.writeObjectFieldStart("quarantined");
+            for (final Map.Entry<String, Long> reason : dataQuality.getQuarantined().entrySet()) {
+                generator.writeNumberField(reason.getKey(), reason.getValue());
+            }
+            generator.writeEndObject();
+        }
+        if (!dataQuality.getUndefinedMetrics().isEmpty()) {
+            generator.writeArrayFieldStart("undefinedMetrics");
+            for (final String fieldName : dataQuality.getUndefinedMetrics()) {
+                generator.writeString(fieldName);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    private static String option(final String arg)
+    {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    /**
+     * Parse comma separated metrics field names.
+     *
+     * @return requested metrics, or null in case invalid field is passed.
+     */
+    private static Set<Metric> parseFields(final String fields)
+    {
+        final Set<Metric> metrics = EnumSet.noneOf(Metric.class);
+        for (final String fieldName : fields.split(",")) {
+            final Metric metric = Metric.ofFieldName(fieldName.trim());
+            if (metric == null) {
+                return null;
+            }
+            metrics.add(metric);
+        }
+        return metrics;
+    }
+
+    /**
+     * Configuration of {@code application.properties} on the class path, overridden by system
+     * properties.
+     */
+    private static Properties configuration()
+    {
+        final Properties configuration = new Properties();
+        try (InputStream content = AccountingMetricsCli.class.getResourceAsStream("/application.properties")) {
+            if (content != null) {
+                configuration.load(content);
+            }
+        } catch (IOException ioException) {
+            throw new IllegalStateException("Failed reading application.properties.", ioException);
+        }
+        for (final String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                configuration.setProperty(name, System.getProperty(name));
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * Failure of a single ledger file, reported with its message.
+     */
+    static class CliException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        CliException(final String message, final Throwable cause)
+        {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package nz.co.westpac.accounting.cli;
+
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Pipeline calculating the metrics information of every ledger file of a directory, one file per
+ * connection_id, and writing a record per ledger as soon as its metrics are calculated. Files are
+ * discovered lazily while they are processed, and only a bounded window of files is in flight at
+ * any time, each streamed into its partial sums. Memory use therefore does not depend on the number
+ * of files in the directory, nor on their size.
+ *
+ * <p>
+ * A ledger file failing to read is written as a record with its status and message, like a failed
+ * ledger of a batch request, and the run goes on. Records are written as JSON lines shaped like the
+ * results of {@code /challenge/batch}, or as CSV with a header line.
+ */
+class LedgerDirectoryPipeline
+{
+    /**
+     * Output format of the records.
+     */
+    enum Format
+    {
+        JSONL, CSV
+    }
+
+    private static final String LEDGER_SUFFIX = ".json";
+
+    private static final int STATUS_OK = 200;
+
+    private static final int STATUS_FAILED = 500;
+
+    private static final double MEGABYTE = 1024 * 1024;
+
+    private final BiFunction<File, Set<Metric>, Metrics> calculator;
+
+    private final JsonFactory jsonFactory;
+
+    private final Set<Metric> fields;
+
+    private final Format format;
+
+    private final int parallelism;
+
+    private final ReentrantLock outputLock = new ReentrantLock();
+
+    private final AtomicLong files = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicReference<IOException> outputFailure = new AtomicReference<>();
+
+    /**
+     * @param calculator calculating the metrics of a ledger file, failing with a
+     *        {@code CliException} for a ledger file which cannot be read or calculated.
+     * @param jsonFactory to write JSON lines with.
+     * @param fields metrics to calculate.
+     * @param format of the records.
+     * @param parallelism number of ledger files calculated at the same time.
+     */
+    LedgerDirectoryPipeline(final BiFunction<File, Set<Metric>, Metrics> calculator, final JsonFactory jsonFactory, final Set<Metric> fields,
+            final Format format, final int parallelism)
+    {
+        this.calculator = calculator;
+        this.jsonFactory = jsonFactory;
+        this.fields = fields;
+        this.format = format;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Calculate every ledger file of the directory and write its record to the output.
+     *
+     * @param directory holding ledger files named after their connection_id.
+     * @param output to write the records to, it is not closed.
+     * @return summary of the run.
+     * @throws IOException in case problem in listing the directory or writing the output.
+     * @throws InterruptedException in case the run got interrupted.
+     */
+    Summary run(final Path directory, final Writer output) throws IOException, InterruptedException
+    {
+        final long started = System.nanoTime();
+        // two files per worker keep the workers busy while finished records are written.
+        final Semaphore window = new Semaphore(2 * parallelism);
+        final ExecutorService workers = Executors.newFixedThreadPool(parallelism, task -> {
+            final Thread thread = new Thread(task, "ledger-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            if (format == Format.CSV) {
+                output.write(csvHeader());
+            }
+            try (DirectoryStream<Path> ledgers = Files.newDirectoryStream(directory, "*" + LEDGER_SUFFIX)) {
+                for (final Path ledger : ledgers) {
+                    if (outputFailure.get() != null) {
+                        break;
+                    }
+                    window.acquire();
+                    workers.execute(() -> {
+                        try {
+                            write(output, process(ledger.toFile()));
+                        } finally {
+                            window.release();
+                        }
+                    });
+                }
+            }
+            window.acquire(2 * parallelism);
+        } finally {
+            workers.shutdownNow();
+        }
+        if (outputFailure.get() != null) {
+            throw outputFailure.get();
+        }
+        output.flush();
+        return new Summary(files.get(), failures.get(), bytes.get(), System.nanoTime() - started);
+    }
+
+    /**
+     * Calculate a ledger file into its record.
+     */
+    private String process(final File file)
+    {
+        final String name = file.getName();
+        final String ledger = name.substring(0, name.length() - LEDGER_SUFFIX.length());
+        files.incrementAndGet();
+        bytes.addAndGet(file.length());
+        try {
+            return record(ledger, STATUS_OK, null, calculator.apply(file, fields));
+        } catch (AccountingMetricsCli.CliException failure) {
+            failures.incrementAndGet();
+            return record(ledger, STATUS_FAILED, failure.getMessage(), null);
+        } catch (RuntimeException failure) {
+            failures.incrementAndGet();
+            return record(ledger, STATUS_FAILED, "Failed calculating metrics information, " + failure, null);
+        }
+    }
+
+    /**
+     * Write a record, one at a time. A failure to write stops the run.
+     */
+    private void write(final Writer output, final String record)
+    {
+        outputLock.lock();
+        try {
+            if (outputFailure.get() == null) {
+                output.write(record);
+            }
+        } catch (IOException ioException) {
+            outputFailure.compareAndSet(null, ioException);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    private String record(final String ledger, final int status, final String message, final Metrics metrics)
+    {
+        return format == Format.CSV ? csvRecord(ledger, status, message, metrics) : jsonRecord(ledger, status, message, metrics);
+    }
+
+    /**
+     * Record shaped like a result of a batch request, with the fields in the same order.
+     */
+    private String jsonRecord(final String ledger, final int status, final String message, final Metrics metrics)
+    {
+        final StringWriter json = new StringWriter(256);
+        try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeStringField("ledger", ledger);
+            generator.writeNumberField("status", status);
+            if (message != null) {
+                generator.writeStringField("message", message);
+            }
+            if (metrics != null) {
+                generator.writeObjectFieldStart("metrics");
+                AccountingMetricsCli.writeMetrics(metrics, fields, generator);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+        return json.append('\n').toString();
+    }
+
+    private String csvHeader()
+    {
+        final StringBuilder header = new StringBuilder("ledger,status");
+        for (final Metric field : fields) {
+            header.append(',').append(field.getFieldName());
+        }
+        return header.append(",message\n").toString();
+    }
+
+    private String csvRecord(final String ledger, final int status, final String message, final Metrics metrics)
+    {
+        final StringBuilder record = new StringBuilder(128);
+        csvValue(record, ledger).append(',').append(status);
+        for (final Metric field : fields) {
+            record.append(',');
+            if (metrics != null && field.get(metrics) != null) {
+                csvValue(record, field.get(metrics));
+            }
+        }
+        record.append(',');
+        if (message != null) {
+            csvValue(record, message);
+        }
+        return record.append('\n').toString();
+    }
+
+    /**
+     * Append a CSV value, quoted when it holds a separator, quote or line break, like the
+     * thousands separators of formatted currency values.
+     */
+    private static StringBuilder csvValue(final StringBuilder record, final String value)
+    {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return record.append(value);
+        }
+        return record.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Counts and throughput of a pipeline run.
+     */
+    static class Summary
+    {
+        private final long files;
+        private final long failures;
+        private final long bytes;
+        private final long nanos;
+
+        Summary(final long files, final long failures, final long bytes, final long nanos)
+        {
+            this.files = files;
+            this.failures = failures;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        long getFiles()
+        {
+            return files;
+        }
+
+        long getFailures()
+        {
+            return failures;
+        }
+
+        @Override
+        public String toString()
+        {
+            final double seconds = Math.max(nanos, 1) / 1e9;
+            return String.format(Locale.ROOT, "%d ledgers, %d failed, %.1f MB in %.3f s: %.1f files/s, %.1f MB/s", files, failures, bytes / MEGABYTE, seconds,
+                files / seconds, bytes / MEGABYTE / seconds);
+        }
+    }
+}
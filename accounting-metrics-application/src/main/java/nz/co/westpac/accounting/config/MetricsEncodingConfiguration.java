@@ -0,0 +1,40 @@
+package nz.co.westpac.accounting.config;
+
+import nz.co.westpac.accounting.controller.MetricsHttpMessageConverter;
+import nz.co.westpac.accounting.services.impl.MetricsEncoder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Content negotiation of the binary metrics encodings for request mappings returning metrics
+ * information. The converter goes right after the JSON converter: clients accepting anything keep
+ * getting JSON, while the generic CBOR and Smile converters of Jackson, which know nothing of the
+ * calculated values of the metrics, never get to write metrics.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class MetricsEncodingConfiguration implements WebMvcConfigurer
+{
+    @Autowired
+    private MetricsEncoder metricsEncoder;
+
+    @Override
+    public void extendMessageConverters(final List<HttpMessageConverter<?>> converters)
+    {
+        int position = 0;
+        for (int index = 0; index < converters.size(); index++) {
+            if (converters.get(index) instanceof MappingJackson2HttpMessageConverter) {
+                position = index + 1;
+                break;
+            }
+        }
+        converters.add(position, new MetricsHttpMessageConverter(metricsEncoder));
+    }
+}
@@ -0,0 +1,38 @@
+package nz.co.westpac.accounting.config;
+
+import nz.co.westpac.accounting.services.impl.VirtualThreadExecutor;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Servlet request handling on virtual threads, enabled with
+ * {@code accounting.metrics.threads.virtual=true}. Tomcat hands every request to a new virtual
+ * thread instead of a thread of its bounded pool, so requests waiting for a ledger file do not
+ * exhaust the pool. Without virtual thread support in the runtime Tomcat keeps its pool.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "accounting.metrics.threads", name = "virtual", havingValue = "true")
+public class VirtualThreadConfiguration
+{
+    /**
+     * Customize Tomcat to run requests on the virtual thread executor.
+     *
+     * @param virtualThreadExecutor executor starting a virtual thread per task.
+     * @return Tomcat customizer.
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer(final VirtualThreadExecutor virtualThreadExecutor)
+    {
+        return factory -> factory.addProtocolHandlerCustomizers(protocolHandler -> {
+            if (virtualThreadExecutor.isEnabled()) {
+                protocolHandler.setExecutor(virtualThreadExecutor.getExecutor());
+            }
+        });
+    }
+}
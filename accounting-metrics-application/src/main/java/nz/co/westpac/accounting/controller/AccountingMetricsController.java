@@ -1,36 +1,95 @@
 package nz.co.westpac.accounting.controller;
 
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BatchMetricsRequest;
+import nz.co.westpac.accounting.models.BatchMetricsResult;
+import nz.co.westpac.accounting.models.Breakdown;
+import nz.co.westpac.accounting.models.LedgerConsistency;
+import nz.co.westpac.accounting.models.LedgerStoreStatistics;
 import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.PeriodMetrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
 import nz.co.westpac.accounting.services.AccountingMetricsInterface;
+import nz.co.westpac.accounting.services.MetricsResponseInterface;
+import nz.co.westpac.accounting.services.MetricsStreamInterface;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Rest Controller to handle the accounting metrics application service requests. Another and nice
  * way to generate these mappings and response entities defined in swagger definition would be to
  * use swagger codegen maven plugin. That way we can easily share our swagger definition with
- * clients to use our application.
+ * clients to use our application. Runs in a servlet web application; the reactive variant of
+ * the metrics endpoints is served by {@link ReactiveAccountingMetricsController} instead.
  */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AccountingMetricsController
 {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private MetricsResponseInterface metricsResponseService;
+
     @Autowired
     private AccountingMetricsInterface accountingMetricsService;
 
+    @Autowired
+    private MetricsStreamInterface metricsStreamService;
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
     /**
-     * Request mapping to get all non null metrics information.
+     * Request mapping to get all non null metrics information, or only the metrics asked for in
+     * the fields query parameter, like {@code /challenge?fields=revenue,netProfitMargin}. With the
+     * currency query parameter, like {@code /challenge?currency=USD}, the accounting records of
+     * every account_currency are converted into that reporting currency first. Clients preferring
+     * {@code application/cbor}, {@code application/x-jackson-smile} or
+     * {@code application/x-protobuf} in the Accept header get the metrics in that binary encoding,
+     * with the calculated value and scale of every metric next to its formatted text.
      * 
+     * @param fields optional comma separated metrics information requested.
+     * @param currency optional ISO 4217 code of the reporting currency.
+     * @param accept media types accepted by the client, JSON or a binary encoding.
+     * @param acceptEncoding content codings accepted by the client.
      * @return Http status 200 with all non-null metrics information.
+     * @return Http status 304 when the If-None-Match header matches the entity tag of the response.
+     * @return Http status 404 with its error and message for Invalid field name or currency.
      * @return Http status 500 with its error and message when the application failed to process the
      *         request.
      */
     @GetMapping("/challenge")
-    public Metrics retrieveMetricsInformation()
+    public ResponseEntity<byte[]> retrieveMetricsInformation(@RequestParam(required = false) String fields,
+            @RequestParam(required = false) String currency,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
     {
-        return accountingMetricsService.retrieveMetricsInformation();
+        if (currency != null) {
+            return MetricsResponses.respond(metricsResponseService, metricsResponseService.getCurrencyMetricsInformation(fields, currency), accept, acceptEncoding);
+        } else if (fields == null) {
+            return MetricsResponses.respond(metricsResponseService, metricsResponseService.getMetricsInformation(), accept, acceptEncoding);
+        }
+        return MetricsResponses.respond(metricsResponseService, metricsResponseService.getSelectedMetricsInformation(fields), accept, acceptEncoding);
     }
 
     /**
@@ -40,14 +99,266 @@ public class AccountingMetricsController
      * path parameter, will require more analysis to achieve that.
      * 
      * @param fieldName is requested metrics information.
+     * @param currency optional ISO 4217 code of the reporting currency.
+     * @param accept media types accepted by the client, JSON or a binary encoding.
+     * @param acceptEncoding content codings accepted by the client.
      * @return metrics information asked for in fieldName.
-     * @return Http status 404 with its error and message for Invalid field name.
+     * @return Http status 304 when the If-None-Match header matches the entity tag of the response.
+     * @return Http status 404 with its error and message for Invalid field name or currency.
      * @return Http status 500 with its error and message when the application failed to process the
      *         request.
      */
     @GetMapping("/challenge/{fieldName}")
-    public Metrics retrieveFieldSpecificMetricsInformation(@PathVariable String fieldName)
+    public ResponseEntity<byte[]> retrieveFieldSpecificMetricsInformation(@PathVariable String fieldName,
+            @RequestParam(required = false) String currency,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+    {
+        if (currency != null) {
+            return MetricsResponses.respond(metricsResponseService, metricsResponseService.getCurrencyMetricsInformation(fieldName, currency), accept, acceptEncoding);
+        }
+        return MetricsResponses.respond(metricsResponseService, metricsResponseService.getSpecificMetricsInformation(fieldName), accept, acceptEncoding);
+    }
+
+    /**
+     * Request mapping to stream all non null metrics information as server-sent events. The
+     * current metrics are sent first, then new metrics whenever a change of the ledger changed
+     * them, so clients no longer poll for changes. A client reading slower than the ledger changes
+     * skips metrics and gets the latest ones next. The stream ends after the timeout defined in
+     * configuration, clients are expected to reconnect.
+     * 
+     * @return Http status 200 with a metrics event per change of the metrics information.
+     */
+    @GetMapping(path = "/challenge/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMetricsInformation()
     {
-        return accountingMetricsService.retrieveSpecificMetricsInformation(fieldName);
+        final SseEmitter emitter = new SseEmitter(properties.getStream().getTimeout());
+        final Runnable unsubscribe = metricsStreamService.subscribe(metrics -> send(emitter, metrics));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(failure -> unsubscribe.run());
+        return emitter;
     }
+
+    /**
+     * Request mapping to get all non null metrics information of a connected business. The ledger
+     * of the business is read from its own data file, named after its connection_id.
+     * 
+     * @param connectionId of the connected business.
+     * @param accept media types accepted by the client, JSON or a binary encoding.
+     * @param acceptEncoding content codings accepted by the client.
+     * @return Http status 200 with all non-null metrics information.
+     * @return Http status 304 when the If-None-Match header matches the entity tag of the response.
+     * @return Http status 404 with its error and message for unknown connection.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/connections/{connectionId}")
+    public ResponseEntity<byte[]> retrieveConnectionMetricsInformation(@PathVariable String connectionId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+    {
+        return MetricsResponses.respond(metricsResponseService, metricsResponseService.getConnectionMetricsInformation(connectionId), accept, acceptEncoding);
+    }
+
+    /**
+     * Request mapping to get specific metrics information of a connected business asked for in
+     * fieldName.
+     * 
+     * @param connectionId of the connected business.
+     * @param fieldName is requested metrics information.
+     * @param accept media types accepted by the client, JSON or a binary encoding.
+     * @param acceptEncoding content codings accepted by the client.
+     * @return metrics information asked for in fieldName.
+     * @return Http status 304 when the If-None-Match header matches the entity tag of the response.
+     * @return Http status 404 with its error and message for unknown connection or Invalid field
+     *         name.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/connections/{connectionId}/{fieldName}")
+    public ResponseEntity<byte[]> retrieveConnectionFieldSpecificMetricsInformation(@PathVariable String connectionId, @PathVariable String fieldName,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+    {
+        return MetricsResponses.respond(metricsResponseService, metricsResponseService.getConnectionSpecificMetricsInformation(connectionId, fieldName), accept, acceptEncoding);
+    }
+
+    /**
+     * Request mapping to get hit, miss and eviction counts of the connected business ledgers held
+     * in memory.
+     * 
+     * @return Http status 200 with the statistics of the ledger store.
+     */
+    @GetMapping("/challenge/connections")
+    public LedgerStoreStatistics retrieveConnectionStatistics()
+    {
+        return accountingMetricsService.retrieveConnectionStatistics();
+    }
+
+    /**
+     * Request mapping to get all metrics information of many ledgers in one request. Ledgers are
+     * calculated in parallel and every result is written as one line of newline delimited JSON as
+     * soon as its ledger is calculated, so results arrive in no particular order.
+     * 
+     * @param request ledger documents and connection_ids to calculate metrics information for.
+     * @return Http status 200 with one metrics result per ledger.
+     * @return Http status 400 with its error and message when too many ledgers are requested.
+     */
+    @PostMapping("/challenge/batch")
+    public ResponseEntity<ResponseBodyEmitter> retrieveBatchMetricsInformation(@RequestBody BatchMetricsRequest request)
+    {
+        final ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        accountingMetricsService.retrieveBatchMetricsInformation(request, result -> send(emitter, result))
+            .whenComplete((done, failure) -> {
+                if (failure == null) {
+                    emitter.complete();
+                } else {
+                    emitter.completeWithError(failure);
+                }
+            });
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    /**
+     * Request mapping to get all metrics information of the live ledger, which is the data file
+     * with all journal deltas applied since it last changed.
+     * 
+     * @return Http status 200 with all non-null metrics information.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/live")
+    public Metrics retrieveLiveMetricsInformation()
+    {
+        return accountingMetricsService.retrieveLiveMetricsInformation();
+    }
+
+    /**
+     * Request mapping to apply journal deltas to the live ledger.
+     * 
+     * @param deltas changed fields of accounts, keyed by account_identifier.
+     * @return Http status 200 with all non-null metrics information after applying the deltas.
+     * @return Http status 400 with its error and message for an invalid delta.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @PostMapping("/challenge/live/deltas")
+    public Metrics applyLedgerDeltas(@RequestBody List<Accounting> deltas)
+    {
+        return accountingMetricsService.applyLedgerDeltas(deltas);
+    }
+
+    /**
+     * Request mapping to check the metrics information of the live ledger against a full
+     * recalculation.
+     * 
+     * @return Http status 200 with the outcome of the check.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/live/consistency")
+    public LedgerConsistency checkLiveConsistency()
+    {
+        return accountingMetricsService.checkLiveConsistency();
+    }
+
+    /**
+     * Request mapping to get metrics information over the ledger history, from all archived
+     * ledgers with a balance_date in the range.
+     * 
+     * @param from first day of the range in ISO format, the oldest balance date when not passed.
+     * @param to last day of the range in ISO format, the newest balance date when not passed.
+     * @param fields comma separated metrics to return, all when not passed.
+     * @return Http status 200 with the metrics information of the range.
+     * @return Http status 400 with its error and message when the range ends before it starts.
+     * @return Http status 404 with its error and message when the range holds no archived ledger,
+     *         or an invalid field is passed.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/history")
+    public Metrics retrieveHistoryMetricsInformation(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to, @RequestParam(required = false) String fields)
+    {
+        return accountingMetricsService.retrieveHistoryMetricsInformation(from, to, fields);
+    }
+
+    /**
+     * Request mapping to get metrics information over the ledger history for every calendar period
+     * in the range.
+     * 
+     * @param period day, month, quarter or year.
+     * @param from first day of the range in ISO format, the oldest balance date when not passed.
+     * @param to last day of the range in ISO format, the newest balance date when not passed.
+     * @param fields comma separated metrics to return, all when not passed.
+     * @return Http status 200 with the metrics information of every period between the oldest and
+     *         newest balance dates in the range, without metrics for periods holding no archived
+     *         ledger.
+     * @return Http status 400 with its error and message when the range ends before it starts, or
+     *         holds more periods than configured.
+     * @return Http status 404 with its error and message when the period is unknown, or the history
+     *         is empty, or an invalid field is passed.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/history/{period}")
+    public List<PeriodMetrics> retrieveHistoryPeriodMetricsInformation(@PathVariable String period,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to, @RequestParam(required = false) String fields)
+    {
+        return accountingMetricsService.retrieveHistoryPeriodMetricsInformation(period, from, to, fields);
+    }
+
+    /**
+     * Request mapping to break the ledger down by a field of its accounting records, like
+     * {@code /challenge/breakdown/account_code?sort=revenue&size=10} for the ten account codes with
+     * the highest revenue.
+     * 
+     * @param dimension account_category, account_type or account_code.
+     * @param sort key, rows, revenue, expenses or total; groups are ranked by descending sums and
+     *        row counts, or by ascending key.
+     * @param page number of the page, starting at zero.
+     * @param size number of groups per page.
+     * @return Http status 200 with a page of the groups.
+     * @return Http status 400 with its error and message when the page is invalid.
+     * @return Http status 404 with its error and message for an unknown dimension or sort.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/breakdown/{dimension}")
+    public Breakdown retrieveBreakdown(@PathVariable String dimension, @RequestParam(defaultValue = "revenue") String sort,
+        @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size)
+    {
+        return accountingMetricsService.retrieveBreakdown(dimension, sort, page, size);
+    }
+
+    /**
+     * Write metrics as a server-sent event. Failing to write unsubscribes the client.
+     */
+    private static void send(final SseEmitter emitter, final Metrics metrics)
+    {
+        try {
+            emitter.send(SseEmitter.event().name("metrics").data(metrics, MediaType.APPLICATION_JSON));
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    /**
+     * Write one result of a batch as a line of JSON. Results of a batch are sent from several
+     * threads, so lines are written one at a time.
+     */
+    private static void send(final ResponseBodyEmitter emitter, final BatchMetricsResult result)
+    {
+        synchronized (emitter) {
+            try {
+                emitter.send(result, MediaType.APPLICATION_JSON);
+                emitter.send("\n", MediaType.TEXT_PLAIN);
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        }
+    }
+
 }
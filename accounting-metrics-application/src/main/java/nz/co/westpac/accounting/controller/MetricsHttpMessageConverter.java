@@ -0,0 +1,62 @@
+package nz.co.westpac.accounting.controller;
+
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.MetricsEncoding;
+import nz.co.westpac.accounting.services.impl.MetricsEncoder;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Writes metrics information returned by request mappings in the binary encodings of
+ * {@link MetricsEncoder}, like the pre-rendered metrics responses, so metrics are encoded the same
+ * way whichever endpoint they come from. Metrics are never read in a binary encoding.
+ */
+public class MetricsHttpMessageConverter extends AbstractHttpMessageConverter<Metrics>
+{
+    private final MetricsEncoder metricsEncoder;
+
+    public MetricsHttpMessageConverter(final MetricsEncoder metricsEncoder)
+    {
+        super(MediaType.parseMediaType(MetricsEncoding.CBOR.getMediaType()), MediaType.parseMediaType(MetricsEncoding.SMILE.getMediaType()),
+            MediaType.parseMediaType(MetricsEncoding.PROTOBUF.getMediaType()));
+        this.metricsEncoder = metricsEncoder;
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz)
+    {
+        return Metrics.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(final MediaType mediaType)
+    {
+        return false;
+    }
+
+    @Override
+    protected Metrics readInternal(final Class<? extends Metrics> clazz, final HttpInputMessage inputMessage)
+    {
+        throw new HttpMessageNotReadableException("Metrics information is not read in a binary encoding.", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(final Metrics metrics, final HttpOutputMessage outputMessage) throws IOException
+    {
+        final MediaType contentType = outputMessage.getHeaders().getContentType();
+        for (final MetricsEncoding encoding : MetricsEncoding.values()) {
+            if (MediaType.parseMediaType(encoding.getMediaType()).isCompatibleWith(contentType)) {
+                final byte[] body = metricsEncoder.encode(metrics, encoding);
+                outputMessage.getHeaders().setContentLength(body.length);
+                outputMessage.getBody().write(body);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package nz.co.westpac.accounting.controller;
+
+import nz.co.westpac.accounting.models.EncodedMetrics;
+import nz.co.westpac.accounting.models.MetricsEncoding;
+import nz.co.westpac.accounting.models.RenderedMetrics;
+import nz.co.westpac.accounting.services.MetricsResponseInterface;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Response entities of pre-rendered metrics, shared by the servlet and the reactive controllers.
+ */
+final class MetricsResponses
+{
+    private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+    private MetricsResponses()
+    {
+    }
+
+    /**
+     * Respond with the pre-rendered metrics, gzip encoded when the client accepts it. Spring answers
+     * with status 304 instead when the If-None-Match header of the request matches the entity tag.
+     *
+     * @param rendered metrics response.
+     * @param acceptEncoding content codings accepted by the client.
+     * @return response entity.
+     */
+    static ResponseEntity<byte[]> respond(final RenderedMetrics rendered, final String acceptEncoding)
+    {
+        final boolean gzip = rendered.getGzippedJson() != null && acceptsGzip(acceptEncoding);
+        final String eTag = gzip ? rendered.getGzippedETag() : rendered.getETag();
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(eTag)
+            .header(HttpHeaders.VARY, VARY);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(rendered.getGzippedJson());
+        }
+        return response.body(rendered.getJson());
+    }
+
+    /**
+     * Respond with the pre-rendered metrics in the binary encoding the client prefers in its Accept
+     * header, or as JSON when it prefers JSON or accepts no binary encoding.
+     *
+     * @param metricsResponseService to get the binary encoding from.
+     * @param rendered metrics response.
+     * @param accept media types accepted by the client.
+     * @param acceptEncoding content codings accepted by the client.
+     * @return response entity.
+     */
+    static ResponseEntity<byte[]> respond(final MetricsResponseInterface metricsResponseService, final RenderedMetrics rendered, final String accept,
+            final String acceptEncoding)
+    {
+        final MetricsEncoding encoding = negotiate(accept);
+        if (encoding == null) {
+            return respond(rendered, acceptEncoding);
+        }
+        final EncodedMetrics encoded = metricsResponseService.getEncodedMetrics(rendered, encoding);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(encoding.getMediaType()))
+            .eTag(encoded.getETag())
+            .header(HttpHeaders.VARY, VARY)
+            .body(encoded.getBody());
+    }
+
+    /**
+     * Check whether an Accept-Encoding header accepts gzip, named by itself, as x-gzip or by the
+     * {@code *} wildcard, with a quality above zero. A coding named by itself takes precedence over
+     * the wildcard, so {@code *, gzip;q=0} does not accept gzip.
+     *
+     * @param acceptEncoding content codings accepted by the client.
+     * @return true when gzip is accepted.
+     */
+    static boolean acceptsGzip(final String acceptEncoding)
+    {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        // -1 until the header names the coding.
+        double gzip = -1;
+        double wildcard = -1;
+        for (final String element : acceptEncoding.split(",")) {
+            final String[] parameters = element.split(";");
+            final String coding = parameters[0].trim().toLowerCase(Locale.ROOT);
+            final double quality = quality(parameters);
+            if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+                gzip = Math.max(gzip, quality);
+            } else if ("*".equals(coding)) {
+                wildcard = quality;
+            }
+        }
+        return gzip >= 0 ? gzip > 0 : wildcard > 0;
+    }
+
+    /**
+     * Get the quality of a content coding from its parameters, 1 when it has none and 0 when it is
+     * not a valid number.
+     */
+    private static double quality(final String[] parameters)
+    {
+        for (int index = 1; index < parameters.length; index++) {
+            final String parameter = parameters[index].trim();
+            if (parameter.length() > 1 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q') && parameter.charAt(1) == '=') {
+                try {
+                    final double quality = Double.parseDouble(parameter.substring(2).trim());
+                    return quality >= 0 && quality <= 1 ? quality : 0;
+                } catch (NumberFormatException invalidQuality) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Find the binary encoding preferred in an Accept header, by specificity and quality of its
+     * media types. JSON is preferred over binary encodings the client accepts as much, so clients
+     * accepting anything keep getting JSON.
+     *
+     * @param accept media types accepted by the client.
+     * @return preferred binary encoding, or null for JSON.
+     */
+    static MetricsEncoding negotiate(final String accept)
+    {
+        if (accept == null) {
+            return null;
+        }
+        final List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException invalidMediaType) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (final MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            } else if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return null;
+            }
+            for (final MetricsEncoding encoding : MetricsEncoding.values()) {
+                if (mediaType.includes(MediaType.parseMediaType(encoding.getMediaType()))) {
+                    return encoding;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+package nz.co.westpac.accounting.controller;
+
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.MetricsResponseInterface;
+import nz.co.westpac.accounting.services.MetricsStreamInterface;
+import nz.co.westpac.accounting.services.impl.ReactiveLedgerSnapshotCache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Reactive Rest Controller serving the metrics endpoints on a WebFlux event loop. It is used
+ * instead of {@link AccountingMetricsController} when the application runs as reactive web
+ * application, selected with {@code spring.main.web-application-type=reactive}. Requests never
+ * block: the ledger is read with asynchronous file I/O when it changed, and responses are
+ * pre-rendered, so a few event loop threads hold many concurrent connections. WebFlux writes the
+ * response only as fast as the client reads it.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAccountingMetricsController
+{
+    @Autowired
+    private ReactiveLedgerSnapshotCache reactiveLedgerSnapshotCache;
+
+    @Autowired
+    private MetricsResponseInterface metricsResponseService;
+
+    @Autowired
+    private MetricsStreamInterface metricsStreamService;
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    /**
+     * Request mapping to get all non null metrics information, or only the metrics asked for in
+     * the fields query parameter.
+     * 
+     * @param fields optional comma separated metrics information requested.
+     * @param currency optional ISO 4217 code of the reporting currency.
+     * @param accept media types accepted by the client, JSON or a binary encoding.
+     * @param acceptEncoding content codings accepted by the client.
+     * @return Http status 200 with all non-null metrics information.
+     * @return Http status 304 when the If-None-Match header matches the entity tag of the response.
+     * @return Http status 404 with its error and message for Invalid field name or currency.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge")
+    public Mono<ResponseEntity<byte[]>> retrieveMetricsInformation(@RequestParam(required = false) String fields,
+            @RequestParam(required = false) String currency,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+    {
+        return reactiveLedgerSnapshotCache.getSnapshot()
+            .map(snapshot -> currency != null ? metricsResponseService.getCurrencyMetricsInformation(snapshot, fields, currency)
+                    : fields == null ? metricsResponseService.getMetricsInformation(snapshot)
+                    : metricsResponseService.getSelectedMetricsInformation(snapshot, fields))
+            .map(rendered -> MetricsResponses.respond(metricsResponseService, rendered, accept, acceptEncoding));
+    }
+
+    /**
+     * Request mapping to get specific metrics information asked for in fieldName.
+     * 
+     * @param fieldName is requested metrics information.
+     * @param currency optional ISO 4217 code of the reporting currency.
+     * @param accept media types accepted by the client, JSON or a binary encoding.
+     * @param acceptEncoding content codings accepted by the client.
+     * @return metrics information asked for in fieldName.
+     * @return Http status 304 when the If-None-Match header matches the entity tag of the response.
+     * @return Http status 404 with its error and message for Invalid field name or currency.
+     * @return Http status 500 with its error and message when the application failed to process the
+     *         request.
+     */
+    @GetMapping("/challenge/{fieldName}")
+    public Mono<ResponseEntity<byte[]>> retrieveFieldSpecificMetricsInformation(@PathVariable String fieldName,
+            @RequestParam(required = false) String currency,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+    {
+        return reactiveLedgerSnapshotCache.getSnapshot()
+            .map(snapshot -> currency != null ? metricsResponseService.getCurrencyMetricsInformation(snapshot, fieldName, currency)
+                    : metricsResponseService.getSpecificMetricsInformation(snapshot, fieldName))
+            .map(rendered -> MetricsResponses.respond(metricsResponseService, rendered, accept, acceptEncoding));
+    }
+
+    /**
+     * Request mapping to stream all non null metrics information as server-sent events, sent
+     * whenever a change of the ledger changed them. Metrics not yet written to a slow client are
+     * replaced by the latest ones.
+     * 
+     * @return Http status 200 with a metrics event per change of the metrics information.
+     */
+    @GetMapping(path = "/challenge/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Metrics>> streamMetricsInformation()
+    {
+        return Flux.<Metrics>create(sink -> {
+            final Runnable unsubscribe = metricsStreamService.subscribe(sink::next);
+            sink.onDispose(unsubscribe::run);
+        }, FluxSink.OverflowStrategy.LATEST)
+            .map(metrics -> ServerSentEvent.builder(metrics).event("metrics").build())
+            .take(Duration.ofMillis(properties.getStream().getTimeout()));
+    }
+}
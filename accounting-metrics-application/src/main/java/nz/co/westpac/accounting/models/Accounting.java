@@ -1,10 +1,14 @@
 package nz.co.westpac.accounting.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import java.math.BigDecimal;
 
 /**
  * Model to hold Accounting Information from external data file. This class structure got generated
- * from external webtool.
+ * from external webtool. An invalid total_value does not fail reading the whole file, the record
+ * gets marked for quarantine instead.
  */
 public class Accounting
 {
@@ -18,7 +22,10 @@ public class Accounting
     public String account_type;
     public String account_type_bank;
     public String system_account;
+    @JsonDeserialize(using = TotalValueDeserializer.class)
     public BigDecimal total_value;
+    @JsonIgnore
+    private QuarantineReason quarantine;
 
     public String getAccount_category()
     {
@@ -129,4 +136,20 @@ public class Accounting
     {
         this.total_value = total_value;
     }
+
+    /**
+     * Reason found while reading the record why it has to be quarantined, null when reading found
+     * nothing wrong with it. Use {@link QuarantineReason#of(Accounting)} to validate a record.
+     *
+     * @return quarantine reason.
+     */
+    public QuarantineReason getQuarantine()
+    {
+        return quarantine;
+    }
+
+    public void setQuarantine(QuarantineReason quarantine)
+    {
+        this.quarantine = quarantine;
+    }
 }
@@ -0,0 +1,42 @@
+package nz.co.westpac.accounting.models;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Maps an element of the data array like Jackson maps any {@code Accounting}, except that an
+ * element which is not an object, like a number or null, does not fail mapping the whole ledger.
+ * It is mapped to an empty record marked for quarantine then, like the streaming reader does.
+ */
+public class AccountingRecordDeserializer extends JsonDeserializer<Accounting>
+{
+    @Override
+    public Accounting deserialize(final JsonParser parser, final DeserializationContext context) throws IOException
+    {
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            return context.readValue(parser, Accounting.class);
+        }
+        parser.skipChildren();
+        return malformed();
+    }
+
+    /**
+     * Null elements of the data array are not handed to {@link #deserialize}, they are mapped here.
+     */
+    @Override
+    public Accounting getNullValue(final DeserializationContext context)
+    {
+        return malformed();
+    }
+
+    private static Accounting malformed()
+    {
+        final Accounting account = new Accounting();
+        account.setQuarantine(QuarantineReason.MALFORMED_RECORD);
+        return account;
+    }
+}
@@ -0,0 +1,46 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.List;
+
+/**
+ * Request to calculate metrics information of many ledgers at once. Ledgers are either passed in
+ * as documents in the data file structure, or referenced by the connection_id of a connected
+ * business. Optionally, only the comma separated metrics fields are calculated.
+ */
+public class BatchMetricsRequest
+{
+    private List<BookKeeping> ledgers;
+    private List<String> connections;
+    private String fields;
+
+    public List<BookKeeping> getLedgers()
+    {
+        return ledgers;
+    }
+
+    public void setLedgers(List<BookKeeping> ledgers)
+    {
+        this.ledgers = ledgers;
+    }
+
+    public List<String> getConnections()
+    {
+        return connections;
+    }
+
+    public void setConnections(List<String> connections)
+    {
+        this.connections = connections;
+    }
+
+    public String getFields()
+    {
+        return fields;
+    }
+
+    public void setFields(String fields)
+    {
+        this.fields = fields;
+    }
+
+}
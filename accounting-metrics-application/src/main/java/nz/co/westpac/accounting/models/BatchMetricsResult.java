@@ -0,0 +1,59 @@
+package nz.co.westpac.accounting.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Metrics information of one ledger of a batch. The ledger is identified by its position in the
+ * ledgers of the request, like {@code ledgers[3]}, or by its connection_id. Failed ledgers carry
+ * the Http status and message they would have been answered with on their own instead of metrics.
+ */
+@JsonInclude(Include.NON_NULL)
+public class BatchMetricsResult
+{
+    private String ledger;
+    private int status;
+    private String message;
+    private Metrics metrics;
+
+    public String getLedger()
+    {
+        return ledger;
+    }
+
+    public void setLedger(String ledger)
+    {
+        this.ledger = ledger;
+    }
+
+    public int getStatus()
+    {
+        return status;
+    }
+
+    public void setStatus(int status)
+    {
+        this.status = status;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+}
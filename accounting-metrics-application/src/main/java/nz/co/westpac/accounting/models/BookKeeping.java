@@ -1,6 +1,7 @@
 package nz.co.westpac.accounting.models;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.Date;
 import java.util.List;
@@ -8,7 +9,9 @@ import java.util.List;
 /**
  * Model to hold BookKeeping Information from external data file. This class structure got generated
  * from external webtool. Used @JsonProperty to map json file value to another field. This is done
- * to show that, the same can be done for another fields which starts from object.
+ * to show that, the same can be done for another fields which starts from object. An element of
+ * data which is not an accounting object does not fail reading the whole file, it is mapped to a
+ * record marked for quarantine instead.
  */
 public class BookKeeping
 {
@@ -17,6 +20,7 @@ public class BookKeeping
     public String connection_id;
     public String user;
     public Date object_creation_date;
+    @JsonDeserialize(contentUsing = AccountingRecordDeserializer.class)
     public List<Accounting> data;
     public String currency;
     public String object_origin_type;
@@ -0,0 +1,82 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.List;
+
+/**
+ * A page of the groups of a ledger broken down by a field of its accounting records, ranked by the
+ * requested sort.
+ */
+public class Breakdown
+{
+    private String dimension;
+    private String sort;
+    private int groups;
+    private int page;
+    private int size;
+    private List<BreakdownGroup> items;
+
+    public String getDimension()
+    {
+        return dimension;
+    }
+
+    public void setDimension(String dimension)
+    {
+        this.dimension = dimension;
+    }
+
+    public String getSort()
+    {
+        return sort;
+    }
+
+    public void setSort(String sort)
+    {
+        this.sort = sort;
+    }
+
+    /**
+     * Number of groups of all pages.
+     *
+     * @return group count.
+     */
+    public int getGroups()
+    {
+        return groups;
+    }
+
+    public void setGroups(int groups)
+    {
+        this.groups = groups;
+    }
+
+    public int getPage()
+    {
+        return page;
+    }
+
+    public void setPage(int page)
+    {
+        this.page = page;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public void setSize(int size)
+    {
+        this.size = size;
+    }
+
+    public List<BreakdownGroup> getItems()
+    {
+        return items;
+    }
+
+    public void setItems(List<BreakdownGroup> items)
+    {
+        this.items = items;
+    }
+}
@@ -0,0 +1,67 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.function.Function;
+
+/**
+ * Fields of the accounting records a ledger can be broken down by.
+ */
+public enum BreakdownDimension
+{
+    ACCOUNT_CATEGORY("account_category", Accounting::getAccount_category, ColumnarLedger::getCategories),
+    ACCOUNT_TYPE("account_type", Accounting::getAccount_type, ColumnarLedger::getAccountTypes),
+    ACCOUNT_CODE("account_code", Accounting::getAccount_code, null);
+
+    private final String fieldName;
+    private final Function<Accounting, String> key;
+    private final Function<ColumnarLedger, DictionaryColumn> column;
+
+    BreakdownDimension(final String fieldName, final Function<Accounting, String> key, final Function<ColumnarLedger, DictionaryColumn> column)
+    {
+        this.fieldName = fieldName;
+        this.key = key;
+        this.column = column;
+    }
+
+    /**
+     * Find the dimension of a field of the accounting records.
+     *
+     * @param fieldName of the accounting records, like account_code.
+     * @return dimension, or null when records cannot be broken down by the field.
+     */
+    public static BreakdownDimension ofFieldName(final String fieldName)
+    {
+        for (final BreakdownDimension dimension : values()) {
+            if (dimension.fieldName.equals(fieldName)) {
+                return dimension;
+            }
+        }
+        return null;
+    }
+
+    public String getFieldName()
+    {
+        return fieldName;
+    }
+
+    /**
+     * Value of the field of an accounting record.
+     *
+     * @param account to read.
+     * @return key of the group of the record, may be null.
+     */
+    public String key(final Accounting account)
+    {
+        return key.apply(account);
+    }
+
+    /**
+     * Dictionary column of the field in a columnar ledger.
+     *
+     * @param ledger columnar accounting records.
+     * @return column, or null when the columnar ledger does not keep the field.
+     */
+    public DictionaryColumn column(final ColumnarLedger ledger)
+    {
+        return column == null ? null : column.apply(ledger);
+    }
+}
@@ -0,0 +1,68 @@
+package nz.co.westpac.accounting.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Revenue, expenses and total of the accounting records sharing a value of the field broken down
+ * by. The key is left out for records without a value.
+ */
+@JsonInclude(Include.NON_NULL)
+public class BreakdownGroup
+{
+    private String key;
+    private long rows;
+    private String revenue;
+    private String expenses;
+    private String total;
+
+    public String getKey()
+    {
+        return key;
+    }
+
+    public void setKey(String key)
+    {
+        this.key = key;
+    }
+
+    public long getRows()
+    {
+        return rows;
+    }
+
+    public void setRows(long rows)
+    {
+        this.rows = rows;
+    }
+
+    public String getRevenue()
+    {
+        return revenue;
+    }
+
+    public void setRevenue(String revenue)
+    {
+        this.revenue = revenue;
+    }
+
+    public String getExpenses()
+    {
+        return expenses;
+    }
+
+    public void setExpenses(String expenses)
+    {
+        this.expenses = expenses;
+    }
+
+    public String getTotal()
+    {
+        return total;
+    }
+
+    public void setTotal(String total)
+    {
+        this.total = total;
+    }
+}
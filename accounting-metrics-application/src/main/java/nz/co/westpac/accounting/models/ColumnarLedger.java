@@ -0,0 +1,262 @@
+package nz.co.westpac.accounting.models;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Columnar in-memory representation of the accounting records of a ledger. The low-cardinality
+ * fields account_category, account_type, value_type, account_currency and account_status are
+ * dictionary encoded, and total_value is kept as unscaled long and scale columns. Only values which
+ * do not fit a long fall back to a {@code BigDecimal} column. Filters become integer compares over
+ * the code columns instead of {@code String} comparisons. Invalid records are quarantined instead of
+ * appended, only their number is kept per reason.
+ */
+public class ColumnarLedger
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Marks a row whose total_value is kept in the oversized values column.
+     */
+    private static final byte OVERSIZED = Byte.MIN_VALUE;
+
+    private final DictionaryColumn categories = new DictionaryColumn(INITIAL_CAPACITY);
+    private final DictionaryColumn accountTypes = new DictionaryColumn(INITIAL_CAPACITY);
+    private final DictionaryColumn valueTypes = new DictionaryColumn(INITIAL_CAPACITY);
+    private final DictionaryColumn currencies = new DictionaryColumn(INITIAL_CAPACITY);
+    private final DictionaryColumn statuses = new DictionaryColumn(INITIAL_CAPACITY);
+    private long[] unscaledValues = new long[INITIAL_CAPACITY];
+    private byte[] scales = new byte[INITIAL_CAPACITY];
+    private BigDecimal[] oversizedValues;
+    private int size;
+    private final long[] quarantined = new long[QuarantineReason.values().length];
+
+    /**
+     * Encode all accounting records of the book.
+     *
+     * @param book to encode.
+     * @return columnar ledger of the book.
+     */
+    public static ColumnarLedger of(final BookKeeping book)
+    {
+        final ColumnarLedger ledger = new ColumnarLedger();
+        for (final Accounting account : book.getData()) {
+            ledger.add(account);
+        }
+        ledger.trim();
+        return ledger;
+    }
+
+    /**
+     * Append an accounting record, or quarantine it when it is not valid. The record itself is not
+     * retained.
+     *
+     * @param account to append.
+     */
+    public void add(final Accounting account)
+    {
+        final QuarantineReason reason = QuarantineReason.of(account);
+        if (reason != null) {
+            quarantined[reason.ordinal()]++;
+            return;
+        }
+        if (size == scales.length) {
+            grow(Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        categories.set(size, account.getAccount_category());
+        accountTypes.set(size, account.getAccount_type());
+        valueTypes.set(size, account.getValue_type());
+        currencies.set(size, account.getAccount_currency());
+        statuses.set(size, account.getAccount_status());
+        if (account instanceof FixedPointAccounting && ((FixedPointAccounting) account).isFixedPoint()) {
+            setValue(size, (FixedPointAccounting) account);
+        } else {
+            setValue(size, account.getTotal_value());
+        }
+        size++;
+    }
+
+    /**
+     * Release the spare capacity left after appending the last record.
+     */
+    public void trim()
+    {
+        categories.trim(size);
+        accountTypes.trim(size);
+        valueTypes.trim(size);
+        currencies.trim(size);
+        statuses.trim(size);
+        unscaledValues = Arrays.copyOf(unscaledValues, size);
+        scales = Arrays.copyOf(scales, size);
+        if (oversizedValues != null) {
+            oversizedValues = Arrays.copyOf(oversizedValues, size);
+        }
+    }
+
+    /**
+     * Collect every partial sum needed by the metrics with one scan over the code columns. The
+     * masks of the partial sums are resolved once per dictionary value, not per row.
+     *
+     * @return partial sums of the ledger.
+     */
+    public LedgerAggregates aggregate()
+    {
+        final int[] categoryMasks = new int[categories.cardinality()];
+        for (int code = 0; code < categoryMasks.length; code++) {
+            categoryMasks[code] = LedgerAggregates.categoryMask(categories.value(code));
+        }
+        final int[] accountTypeMasks = new int[accountTypes.cardinality()];
+        for (int code = 0; code < accountTypeMasks.length; code++) {
+            accountTypeMasks[code] = LedgerAggregates.accountTypeMask(accountTypes.value(code));
+        }
+        final int[] valueTypeMasks = new int[valueTypes.cardinality()];
+        for (int code = 0; code < valueTypeMasks.length; code++) {
+            valueTypeMasks[code] = LedgerAggregates.valueTypeMask(valueTypes.value(code));
+        }
+
+        final LedgerAggregates aggregates = new LedgerAggregates();
+        for (int row = 0; row < size; row++) {
+            final int mask = categoryMasks[categories.code(row)] & accountTypeMasks[accountTypes.code(row)] & valueTypeMasks[valueTypes.code(row)];
+            final String currency = currencies.value(currencies.code(row));
+            if (scales[row] == OVERSIZED) {
+                aggregates.add(currency, mask, oversizedValues[row]);
+            } else {
+                aggregates.add(currency, mask, unscaledValues[row], scales[row]);
+            }
+        }
+        for (final QuarantineReason reason : QuarantineReason.values()) {
+            aggregates.quarantine(reason, quarantined[reason.ordinal()]);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Group the revenue, expenses and total_value of all rows by a dictionary column of this ledger
+     * with one scan. The dictionary codes are the group numbers, so no key is looked up per row.
+     *
+     * @param column of this ledger to group by.
+     * @return breakdown of the ledger.
+     */
+    public LedgerBreakdown breakdown(final DictionaryColumn column)
+    {
+        final int[] kinds = new int[categories.cardinality()];
+        for (int code = 0; code < kinds.length; code++) {
+            kinds[code] = LedgerBreakdown.kind(categories.value(code));
+        }
+
+        final LedgerBreakdown breakdown = new LedgerBreakdown(column);
+        for (int row = 0; row < size; row++) {
+            final int kind = kinds[categories.code(row)];
+            if (scales[row] == OVERSIZED) {
+                breakdown.add(column.code(row), kind, oversizedValues[row]);
+            } else {
+                breakdown.add(column.code(row), kind, unscaledValues[row], scales[row]);
+            }
+        }
+        return breakdown;
+    }
+
+    /**
+     * Get the total_value of a row.
+     *
+     * @param row to read.
+     * @return total value, may be null.
+     */
+    public BigDecimal getValue(final int row)
+    {
+        return scales[row] == OVERSIZED ? oversizedValues[row] : BigDecimal.valueOf(unscaledValues[row], scales[row]);
+    }
+
+    public DictionaryColumn getCategories()
+    {
+        return categories;
+    }
+
+    public DictionaryColumn getAccountTypes()
+    {
+        return accountTypes;
+    }
+
+    public DictionaryColumn getValueTypes()
+    {
+        return valueTypes;
+    }
+
+    public DictionaryColumn getCurrencies()
+    {
+        return currencies;
+    }
+
+    public DictionaryColumn getStatuses()
+    {
+        return statuses;
+    }
+
+    /**
+     * Number of accounting records in the ledger.
+     *
+     * @return row count, without the quarantined records.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Estimated memory held by the columns, not counting the dictionaries.
+     *
+     * @return size in bytes.
+     */
+    public long retainedSize()
+    {
+        long retained = categories.retainedSize() + accountTypes.retainedSize() + valueTypes.retainedSize() + currencies.retainedSize()
+                + statuses.retainedSize() + 8L * unscaledValues.length + scales.length;
+        if (oversizedValues != null) {
+            retained += 8L * oversizedValues.length;
+        }
+        return retained;
+    }
+
+    private void setValue(final int row, final FixedPointAccounting account)
+    {
+        if (account.getValueScale() > OVERSIZED && account.getValueScale() <= Byte.MAX_VALUE) {
+            unscaledValues[row] = account.getUnscaledValue();
+            scales[row] = (byte) account.getValueScale();
+        } else {
+            setOversizedValue(row, account.getTotal_value());
+        }
+    }
+
+    private void setValue(final int row, final BigDecimal value)
+    {
+        if (value != null && value.scale() > OVERSIZED && value.scale() <= Byte.MAX_VALUE && value.unscaledValue().bitLength() < Long.SIZE) {
+            unscaledValues[row] = value.unscaledValue().longValue();
+            scales[row] = (byte) value.scale();
+        } else {
+            setOversizedValue(row, value);
+        }
+    }
+
+    private void setOversizedValue(final int row, final BigDecimal value)
+    {
+        if (oversizedValues == null) {
+            oversizedValues = new BigDecimal[scales.length];
+        }
+        oversizedValues[row] = value;
+        scales[row] = OVERSIZED;
+    }
+
+    private void grow(final int capacity)
+    {
+        categories.ensureCapacity(capacity);
+        accountTypes.ensureCapacity(capacity);
+        valueTypes.ensureCapacity(capacity);
+        currencies.ensureCapacity(capacity);
+        statuses.ensureCapacity(capacity);
+        unscaledValues = Arrays.copyOf(unscaledValues, capacity);
+        scales = Arrays.copyOf(scales, capacity);
+        if (oversizedValues != null) {
+            oversizedValues = Arrays.copyOf(oversizedValues, capacity);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package nz.co.westpac.accounting.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Data quality summary of the ledger metrics got calculated from: how many accounting records were
+ * valid, how many got quarantined for which reason, and which metrics have no value because they
+ * would divide by zero. Only responses with something to report carry it.
+ */
+@JsonInclude(Include.NON_EMPTY)
+public class DataQuality
+{
+    private long validRows;
+    private long quarantinedRows;
+    private Map<String, Long> quarantined;
+    private List<String> undefinedMetrics;
+
+    public long getValidRows()
+    {
+        return validRows;
+    }
+
+    public void setValidRows(long validRows)
+    {
+        this.validRows = validRows;
+    }
+
+    public long getQuarantinedRows()
+    {
+        return quarantinedRows;
+    }
+
+    public void setQuarantinedRows(long quarantinedRows)
+    {
+        this.quarantinedRows = quarantinedRows;
+    }
+
+    /**
+     * Number of quarantined accounting records per reason.
+     *
+     * @return record counts by name of the quarantine reason.
+     */
+    public Map<String, Long> getQuarantined()
+    {
+        return quarantined;
+    }
+
+    public void setQuarantined(Map<String, Long> quarantined)
+    {
+        this.quarantined = quarantined;
+    }
+
+    /**
+     * Field names of the requested metrics left out of the response, because revenue or total
+     * liabilities they are divided by are zero.
+     *
+     * @return metrics field names.
+     */
+    public List<String> getUndefinedMetrics()
+    {
+        return undefinedMetrics;
+    }
+
+    public void setUndefinedMetrics(List<String> undefinedMetrics)
+    {
+        this.undefinedMetrics = undefinedMetrics;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof DataQuality)) {
+            return false;
+        }
+        final DataQuality dataQuality = (DataQuality) other;
+        return validRows == dataQuality.validRows && quarantinedRows == dataQuality.quarantinedRows && Objects.equals(quarantined, dataQuality.quarantined)
+                && Objects.equals(undefinedMetrics, dataQuality.undefinedMetrics);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(validRows, quarantinedRows, quarantined, undefinedMetrics);
+    }
+}
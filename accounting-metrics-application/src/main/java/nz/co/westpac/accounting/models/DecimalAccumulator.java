@@ -0,0 +1,140 @@
+package nz.co.westpac.accounting.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Exact running sum of decimal values kept as an unscaled {@code long} and a scale. Adding values
+ * does not allocate; the sum only moves to a {@code BigDecimal} once it no longer fits a long. The
+ * result is identical to adding the values up with {@code BigDecimal.add}, including its scale.
+ */
+public class DecimalAccumulator
+{
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int power = 1; power < POWERS_OF_TEN.length; power++) {
+            POWERS_OF_TEN[power] = POWERS_OF_TEN[power - 1] * 10;
+        }
+    }
+
+    private long unscaled;
+    private int scale;
+    private boolean empty = true;
+    private BigDecimal overflow;
+
+    /**
+     * Add a decimal value.
+     *
+     * @param value to add.
+     */
+    public void add(final BigDecimal value)
+    {
+        if (overflow == null && fitsLong(value)) {
+            add(unscaledLong(value), value.scale());
+        } else {
+            final BigDecimal sum = toBigDecimal();
+            overflow = sum == null ? value : sum.add(value);
+        }
+    }
+
+    /**
+     * Add the decimal value {@code unscaledValue * 10^-scale}.
+     *
+     * @param unscaledValue of the value to add.
+     * @param valueScale of the value to add.
+     */
+    public void add(final long unscaledValue, final int valueScale)
+    {
+        if (overflow != null) {
+            overflow = overflow.add(BigDecimal.valueOf(unscaledValue, valueScale));
+        } else if (empty) {
+            unscaled = unscaledValue;
+            scale = valueScale;
+            empty = false;
+        } else {
+            final int sumScale = Math.max(scale, valueScale);
+            final long left = rescale(unscaled, sumScale - scale);
+            final long right = rescale(unscaledValue, sumScale - valueScale);
+            final long sum = left + right;
+            if (left == Long.MIN_VALUE || right == Long.MIN_VALUE || ((left ^ sum) & (right ^ sum)) < 0) {
+                overflow = BigDecimal.valueOf(unscaled, scale).add(BigDecimal.valueOf(unscaledValue, valueScale));
+            } else {
+                unscaled = sum;
+                scale = sumScale;
+            }
+        }
+    }
+
+    /**
+     * Add the running sum of another accumulator.
+     *
+     * @param other accumulator to add.
+     */
+    public void add(final DecimalAccumulator other)
+    {
+        if (other.overflow != null) {
+            add(other.overflow);
+        } else if (!other.empty) {
+            add(other.unscaled, other.scale);
+        }
+    }
+
+    /**
+     * Get the running sum.
+     *
+     * @return sum of all added values, or null when nothing got added.
+     */
+    public BigDecimal toBigDecimal()
+    {
+        if (overflow != null) {
+            return overflow;
+        }
+        return empty ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * Whether the unscaled value of a decimal fits a long, checked on its precision so no
+     * {@code BigInteger} is created: fewer than 19 digits always fit.
+     *
+     * @param value decimal.
+     * @return true when {@link #unscaledLong(BigDecimal)} is exact.
+     */
+    static boolean fitsLong(final BigDecimal value)
+    {
+        return value.precision() < POWERS_OF_TEN.length;
+    }
+
+    /**
+     * Unscaled value of a decimal which fits a long. Moving the point by the scale gives an
+     * integer holding the same compact long as the value, so reading it creates no
+     * {@code BigInteger}, unlike {@code unscaledValue()}.
+     *
+     * @param value decimal, see {@link #fitsLong(BigDecimal)}.
+     * @return unscaled value.
+     */
+    static long unscaledLong(final BigDecimal value)
+    {
+        return value.movePointRight(value.scale()).longValue();
+    }
+
+    /**
+     * Multiply by a power of ten.
+     *
+     * @return rescaled value, or {@code Long.MIN_VALUE} when it does not fit a long.
+     */
+    static long rescale(final long value, final int power)
+    {
+        if (power == 0) {
+            return value;
+        } else if (power >= POWERS_OF_TEN.length) {
+            return value == 0 ? 0 : Long.MIN_VALUE;
+        }
+        final long factor = POWERS_OF_TEN[power];
+        final long rescaled = value * factor;
+        if (value != 0 && (rescaled / factor != value || rescaled == Long.MIN_VALUE)) {
+            return Long.MIN_VALUE;
+        }
+        return rescaled;
+    }
+}
@@ -0,0 +1,123 @@
+package nz.co.westpac.accounting.models;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Exact running sums of decimal values, one per index, kept in parallel arrays of unscaled
+ * {@code long} values and scales like {@link DecimalAccumulator}. Many sums, like one per group of a
+ * breakdown, then take no object per sum; only a sum which no longer fits a long moves to a
+ * {@code BigDecimal}. Sums start at zero.
+ */
+public class DecimalAccumulators
+{
+    private long[] unscaled;
+    private int[] scales;
+    private BigDecimal[] overflow;
+
+    public DecimalAccumulators(final int capacity)
+    {
+        unscaled = new long[capacity];
+        scales = new int[capacity];
+    }
+
+    /**
+     * Add the decimal value {@code unscaledValue * 10^-scale} to a sum.
+     *
+     * @param index of the sum.
+     * @param unscaledValue of the value to add.
+     * @param valueScale of the value to add.
+     */
+    public void add(final int index, final long unscaledValue, final int valueScale)
+    {
+        if (overflow != null && overflow[index] != null) {
+            overflow[index] = overflow[index].add(BigDecimal.valueOf(unscaledValue, valueScale));
+            return;
+        }
+        final int sumScale = Math.max(scales[index], valueScale);
+        final long left = DecimalAccumulator.rescale(unscaled[index], sumScale - scales[index]);
+        final long right = DecimalAccumulator.rescale(unscaledValue, sumScale - valueScale);
+        final long sum = left + right;
+        if (left == Long.MIN_VALUE || right == Long.MIN_VALUE || ((left ^ sum) & (right ^ sum)) < 0) {
+            overflow(index, BigDecimal.valueOf(unscaled[index], scales[index]).add(BigDecimal.valueOf(unscaledValue, valueScale)));
+        } else {
+            unscaled[index] = sum;
+            scales[index] = sumScale;
+        }
+    }
+
+    /**
+     * Add a decimal value to a sum.
+     *
+     * @param index of the sum.
+     * @param value to add.
+     */
+    public void add(final int index, final BigDecimal value)
+    {
+        if ((overflow == null || overflow[index] == null) && DecimalAccumulator.fitsLong(value)) {
+            add(index, DecimalAccumulator.unscaledLong(value), value.scale());
+        } else {
+            overflow(index, get(index).add(value));
+        }
+    }
+
+    /**
+     * Get a sum.
+     *
+     * @param index of the sum.
+     * @return sum of all values added at the index.
+     */
+    public BigDecimal get(final int index)
+    {
+        if (overflow != null && overflow[index] != null) {
+            return overflow[index];
+        }
+        return BigDecimal.valueOf(unscaled[index], scales[index]);
+    }
+
+    /**
+     * Compare two sums by value, without creating a {@code BigDecimal} while both fit a long at
+     * their common scale.
+     *
+     * @param left index of a sum.
+     * @param right index of another sum.
+     * @return negative, zero or positive as the left sum is less than, equal to or greater than the
+     *         right sum.
+     */
+    public int compare(final int left, final int right)
+    {
+        if (overflow == null || overflow[left] == null && overflow[right] == null) {
+            final int scale = Math.max(scales[left], scales[right]);
+            final long leftValue = DecimalAccumulator.rescale(unscaled[left], scale - scales[left]);
+            final long rightValue = DecimalAccumulator.rescale(unscaled[right], scale - scales[right]);
+            if (leftValue != Long.MIN_VALUE && rightValue != Long.MIN_VALUE) {
+                return Long.compare(leftValue, rightValue);
+            }
+        }
+        return get(left).compareTo(get(right));
+    }
+
+    /**
+     * Grow to hold at least the given number of sums.
+     *
+     * @param capacity number of sums.
+     */
+    public void ensureCapacity(final int capacity)
+    {
+        if (unscaled.length < capacity) {
+            unscaled = Arrays.copyOf(unscaled, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            if (overflow != null) {
+                overflow = Arrays.copyOf(overflow, capacity);
+            }
+        }
+    }
+
+    private void overflow(final int index, final BigDecimal value)
+    {
+        if (overflow == null) {
+            overflow = new BigDecimal[unscaled.length];
+        }
+        overflow[index] = value;
+    }
+}
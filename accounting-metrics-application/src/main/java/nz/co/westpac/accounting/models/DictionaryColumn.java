@@ -0,0 +1,130 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoded column of a low-cardinality text field. Every distinct value is stored once in
+ * the dictionary and rows only hold its code, one byte per row while the dictionary has at most 256
+ * values and an int per row after that.
+ */
+public class DictionaryColumn
+{
+    private static final int BYTE_CODES = 256;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private byte[] byteCodes;
+    private int[] intCodes;
+
+    public DictionaryColumn(final int capacity)
+    {
+        byteCodes = new byte[capacity];
+    }
+
+    /**
+     * Store the value of a row, adding it to the dictionary when seen for the first time.
+     *
+     * @param row to store the value for.
+     * @param value to store, may be null.
+     */
+    public void set(final int row, final String value)
+    {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+            if (code == BYTE_CODES) {
+                widen();
+            }
+        }
+        if (intCodes != null) {
+            intCodes[row] = code;
+        } else {
+            byteCodes[row] = (byte) code.intValue();
+        }
+    }
+
+    /**
+     * Get the dictionary code of a row.
+     *
+     * @param row to get the code for.
+     * @return dictionary code.
+     */
+    public int code(final int row)
+    {
+        return intCodes != null ? intCodes[row] : byteCodes[row] & 0xFF;
+    }
+
+    /**
+     * Get the value of a dictionary code.
+     *
+     * @param code to decode.
+     * @return value, may be null.
+     */
+    public String value(final int code)
+    {
+        return values.get(code);
+    }
+
+    /**
+     * Number of distinct values in the dictionary.
+     *
+     * @return dictionary size.
+     */
+    public int cardinality()
+    {
+        return values.size();
+    }
+
+    /**
+     * Grow the column to hold at least the given number of rows.
+     *
+     * @param capacity number of rows.
+     */
+    void ensureCapacity(final int capacity)
+    {
+        if (intCodes != null && intCodes.length < capacity) {
+            intCodes = Arrays.copyOf(intCodes, capacity);
+        } else if (intCodes == null && byteCodes.length < capacity) {
+            byteCodes = Arrays.copyOf(byteCodes, capacity);
+        }
+    }
+
+    /**
+     * Trim the column to the given number of rows.
+     *
+     * @param rows number of rows.
+     */
+    void trim(final int rows)
+    {
+        if (intCodes != null) {
+            intCodes = Arrays.copyOf(intCodes, rows);
+        } else {
+            byteCodes = Arrays.copyOf(byteCodes, rows);
+        }
+    }
+
+    /**
+     * Estimated memory held by the codes of this column.
+     *
+     * @return size in bytes.
+     */
+    long retainedSize()
+    {
+        return intCodes != null ? 4L * intCodes.length : byteCodes.length;
+    }
+
+    private void widen()
+    {
+        intCodes = new int[byteCodes.length];
+        for (int row = 0; row < byteCodes.length; row++) {
+            intCodes[row] = byteCodes[row] & 0xFF;
+        }
+        byteCodes = null;
+    }
+}
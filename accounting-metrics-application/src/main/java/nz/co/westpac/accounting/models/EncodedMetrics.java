@@ -0,0 +1,26 @@
+package nz.co.westpac.accounting.models;
+
+/**
+ * Metrics response in a binary encoding, together with its strong entity tag.
+ */
+public class EncodedMetrics
+{
+    private final byte[] body;
+    private final String eTag;
+
+    public EncodedMetrics(final byte[] body, final String eTag)
+    {
+        this.body = body;
+        this.eTag = eTag;
+    }
+
+    public byte[] getBody()
+    {
+        return body;
+    }
+
+    public String getETag()
+    {
+        return eTag;
+    }
+}
@@ -0,0 +1,138 @@
+package nz.co.westpac.accounting.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Reusable accounting record whose total_value is parsed straight from its JSON text into an
+ * unscaled {@code long} and a scale. The {@code BigDecimal} is only created when somebody asks for
+ * it through {@link #getTotal_value()}; the partial sums read the fixed point value directly.
+ */
+public class FixedPointAccounting extends Accounting
+{
+    private static final int MAX_EXPONENT = 9999;
+
+    private long unscaledValue;
+    private int valueScale;
+    private boolean fixedPoint;
+
+    /**
+     * Set total_value from the text of a JSON number, for example {@code -1234.50} or
+     * {@code 1.5E+3}, with the same unscaled value and scale {@code new BigDecimal(text)} would
+     * have.
+     *
+     * @param text buffer holding the number.
+     * @param offset of the number in the buffer.
+     * @param length of the number.
+     * @return false when the number does not fit a long, total_value is left unset then.
+     */
+    public boolean setTotal_value(final char[] text, final int offset, final int length)
+    {
+        final int end = offset + length;
+        int index = offset;
+        final boolean negative = index < end && text[index] == '-';
+        if (negative || index < end && text[index] == '+') {
+            index++;
+        }
+
+        long unscaled = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; index < end; index++) {
+            final char character = text[index];
+            if (character >= '0' && character <= '9') {
+                if (unscaled > (Long.MAX_VALUE - 9) / 10) {
+                    return false;
+                }
+                unscaled = unscaled * 10 + (character - '0');
+                digits++;
+                if (fraction) {
+                    scale++;
+                }
+            } else if (character == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+
+        if (index < end) {
+            if (text[index] != 'e' && text[index] != 'E') {
+                return false;
+            }
+            index++;
+            final boolean negativeExponent = index < end && text[index] == '-';
+            if (negativeExponent || index < end && text[index] == '+') {
+                index++;
+            }
+            if (index == end) {
+                return false;
+            }
+            int exponent = 0;
+            for (; index < end; index++) {
+                final char character = text[index];
+                if (character < '0' || character > '9' || exponent > MAX_EXPONENT) {
+                    return false;
+                }
+                exponent = exponent * 10 + (character - '0');
+            }
+            scale += negativeExponent ? exponent : -exponent;
+        }
+
+        setTotalValue(negative ? -unscaled : unscaled, scale);
+        return true;
+    }
+
+    /**
+     * Set total_value to {@code unscaledValue * 10^-scale}.
+     *
+     * @param unscaledValue of total_value.
+     * @param scale of total_value.
+     */
+    public void setTotalValue(final long unscaledValue, final int scale)
+    {
+        super.setTotal_value(null);
+        this.unscaledValue = unscaledValue;
+        this.valueScale = scale;
+        this.fixedPoint = true;
+    }
+
+    @Override
+    public void setTotal_value(final BigDecimal total_value)
+    {
+        super.setTotal_value(total_value);
+        this.fixedPoint = false;
+    }
+
+    @Override
+    public BigDecimal getTotal_value()
+    {
+        if (fixedPoint && super.getTotal_value() == null) {
+            super.setTotal_value(BigDecimal.valueOf(unscaledValue, valueScale));
+        }
+        return super.getTotal_value();
+    }
+
+    /**
+     * Whether total_value is held as fixed point value.
+     *
+     * @return true when the unscaled value and scale hold total_value.
+     */
+    public boolean isFixedPoint()
+    {
+        return fixedPoint;
+    }
+
+    public long getUnscaledValue()
+    {
+        return unscaledValue;
+    }
+
+    public int getValueScale()
+    {
+        return valueScale;
+    }
+}
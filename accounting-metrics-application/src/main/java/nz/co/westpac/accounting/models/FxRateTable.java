@@ -0,0 +1,81 @@
+package nz.co.westpac.accounting.models;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+
+/**
+ * Table of foreign exchange rates from the FX rates file. Every rate is the amount of its currency
+ * one unit of the base currency buys, so the base currency itself has a rate of one. The version
+ * tells the tables apart, metrics converted with one table are never served for another.
+ */
+public class FxRateTable
+{
+    private String version;
+    private String base;
+    private Map<String, BigDecimal> rates;
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(String version)
+    {
+        this.version = version;
+    }
+
+    public String getBase()
+    {
+        return base;
+    }
+
+    public void setBase(String base)
+    {
+        this.base = base;
+    }
+
+    public Map<String, BigDecimal> getRates()
+    {
+        return rates;
+    }
+
+    public void setRates(Map<String, BigDecimal> rates)
+    {
+        this.rates = rates;
+    }
+
+    /**
+     * Rate of a currency against the base currency.
+     *
+     * @param currency ISO 4217 currency code.
+     * @return rate, or null when the table has no rate for the currency.
+     */
+    public BigDecimal rate(final String currency)
+    {
+        if (currency == null) {
+            return null;
+        }
+        return currency.equals(base) ? BigDecimal.ONE : rates.get(currency);
+    }
+
+    /**
+     * Factor converting an amount of one currency into another, crossed over the base currency.
+     *
+     * @param from currency of the amount.
+     * @param to currency to convert into.
+     * @return conversion factor, or null when the table misses a rate of either currency.
+     */
+    public BigDecimal factor(final String from, final String to)
+    {
+        if (from != null && from.equals(to)) {
+            return BigDecimal.ONE;
+        }
+        final BigDecimal fromRate = rate(from);
+        final BigDecimal toRate = rate(to);
+        if (fromRate == null || toRate == null) {
+            return null;
+        }
+        return toRate.divide(fromRate, MathContext.DECIMAL128);
+    }
+}
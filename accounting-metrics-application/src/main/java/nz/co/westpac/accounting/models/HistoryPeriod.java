@@ -0,0 +1,68 @@
+package nz.co.westpac.accounting.models;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Calendar periods the metrics information of the ledger history can be broken down into.
+ */
+public enum HistoryPeriod
+{
+    DAY, MONTH, QUARTER, YEAR;
+
+    /**
+     * Look up a period by its name, ignoring case.
+     *
+     * @param name of the period, like month.
+     * @return period, or null when there is none of that name.
+     */
+    public static HistoryPeriod ofName(final String name)
+    {
+        for (final HistoryPeriod period : values()) {
+            if (period.name().equalsIgnoreCase(name)) {
+                return period;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * First day of the period holding the date.
+     *
+     * @param date within the period.
+     * @return start of the period.
+     */
+    public LocalDate start(final LocalDate date)
+    {
+        switch (this) {
+            case DAY:
+                return date;
+            case MONTH:
+                return date.with(TemporalAdjusters.firstDayOfMonth());
+            case QUARTER:
+                return LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+            default:
+                return date.with(TemporalAdjusters.firstDayOfYear());
+        }
+    }
+
+    /**
+     * First day of the period following the one starting at the date.
+     *
+     * @param start of a period.
+     * @return start of the next period.
+     */
+    public LocalDate next(final LocalDate start)
+    {
+        switch (this) {
+            case DAY:
+                return start.plusDays(1);
+            case MONTH:
+                return start.plusMonths(1);
+            case QUARTER:
+                return start.plusMonths(3);
+            default:
+                return start.plusYears(1);
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package nz.co.westpac.accounting.models;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Partial sums needed by all accounting metrics, collected in a single pass over the accounting
+ * records of a book. Metrics are derived from these sums instead of filtering the records again
+ * for every metric. The sums are kept per account_currency, so they can be converted into another
+ * currency once per currency rather than once per record; the getters return the sums over all
+ * currencies, as if they were one. Invalid records are validated in the same pass: they are
+ * quarantined, counted per reason and left out of every sum.
+ */
+public class LedgerAggregates
+{
+    private static final List<String> ASSET_ACCOUNT_TYPES = List.of("current", "bank", "current_accounts_receivable");
+    private static final List<String> LIABILITY_ACCOUNT_TYPES = List.of("current", "current_accounts_payable");
+
+    static final int REVENUE = 1;
+    static final int EXPENSES = 1 << 1;
+    static final int GROSS_PROFIT = 1 << 2;
+    static final int DEBIT_ASSETS = 1 << 3;
+    static final int CREDIT_ASSETS = 1 << 4;
+    static final int CREDIT_LIABILITIES = 1 << 5;
+    static final int DEBIT_LIABILITIES = 1 << 6;
+
+    private static final int ALL = (1 << 7) - 1;
+
+    private static final int SUMS = 7;
+
+    private static final QuarantineReason[] REASONS = QuarantineReason.values();
+
+    /**
+     * Partial sums per account_currency, records without one are kept under null.
+     */
+    private final Map<String, DecimalAccumulator[]> currencies = new HashMap<>(4);
+    private final int collected;
+    private long rows;
+    private final long[] quarantined = new long[REASONS.length];
+
+    /**
+     * Partial sums of the currency added last. Records of a ledger mostly share one currency, which
+     * saves looking it up for every record.
+     */
+    private String lastCurrency;
+    private DecimalAccumulator[] lastSums;
+
+    public LedgerAggregates()
+    {
+        this(ALL);
+    }
+
+    /**
+     * Partial sums collecting only what the metrics need. Records which cannot contribute to any of
+     * those sums are not classified any further.
+     *
+     * @param metrics to collect the partial sums for.
+     */
+    public LedgerAggregates(final Set<Metric> metrics)
+    {
+        this(Metric.partialSums(metrics));
+    }
+
+    private LedgerAggregates(final int collected)
+    {
+        this.collected = collected;
+    }
+
+    /**
+     * Walk all accounting records of the book once and collect every partial sum.
+     *
+     * @param book to aggregate.
+     * @return partial sums of the book.
+     */
+    public static LedgerAggregates of(final BookKeeping book)
+    {
+        return of(book, new LedgerAggregates());
+    }
+
+    /**
+     * Walk all accounting records of the book once and collect the partial sums the metrics need.
+     *
+     * @param book to aggregate.
+     * @param metrics to collect the partial sums for.
+     * @return partial sums of the book.
+     */
+    public static LedgerAggregates of(final BookKeeping book, final Set<Metric> metrics)
+    {
+        return of(book, new LedgerAggregates(metrics));
+    }
+
+    private static LedgerAggregates of(final BookKeeping book, final LedgerAggregates aggregates)
+    {
+        for (final Accounting account : book.getData()) {
+            aggregates.add(account);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Add an accounting record to every partial sum it contributes to, or quarantine it when it is
+     * not valid.
+     *
+     * @param account to add.
+     */
+    public void add(final Accounting account)
+    {
+        final QuarantineReason reason = QuarantineReason.of(account);
+        if (reason != null) {
+            quarantined[reason.ordinal()]++;
+            return;
+        }
+        final int mask = mask(account);
+        if (account instanceof FixedPointAccounting && ((FixedPointAccounting) account).isFixedPoint()) {
+            final FixedPointAccounting fixedPointAccount = (FixedPointAccounting) account;
+            add(account.getAccount_currency(), mask, fixedPointAccount.getUnscaledValue(), fixedPointAccount.getValueScale());
+        } else {
+            add(account.getAccount_currency(), mask, account.getTotal_value());
+        }
+    }
+
+    /**
+     * Add the partial sums collected from another part of the same ledger. The sums are then
+     * exactly those of adding the records of both parts to one instance, in any order.
+     *
+     * @param other partial sums to add.
+     */
+    public void add(final LedgerAggregates other)
+    {
+        for (final Map.Entry<String, DecimalAccumulator[]> currency : other.currencies.entrySet()) {
+            final DecimalAccumulator[] sums = sums(currency.getKey());
+            for (int sum = 0; sum < SUMS; sum++) {
+                sums[sum].add(currency.getValue()[sum]);
+            }
+        }
+        rows += other.rows;
+        for (int reason = 0; reason < REASONS.length; reason++) {
+            quarantined[reason] += other.quarantined[reason];
+        }
+    }
+
+    /**
+     * Take the partial sums of a part of the ledger added before back out, like an earlier prefix
+     * of a series of ledgers. The sums are then equal in value to those of the remaining part.
+     *
+     * @param other partial sums to subtract.
+     */
+    public void subtract(final LedgerAggregates other)
+    {
+        for (final Map.Entry<String, DecimalAccumulator[]> currency : other.currencies.entrySet()) {
+            final DecimalAccumulator[] sums = sums(currency.getKey());
+            for (int sum = 0; sum < SUMS; sum++) {
+                final BigDecimal value = currency.getValue()[sum].toBigDecimal();
+                if (value != null) {
+                    sums[sum].add(value.negate());
+                }
+            }
+        }
+        rows -= other.rows;
+        for (int reason = 0; reason < REASONS.length; reason++) {
+            quarantined[reason] -= other.quarantined[reason];
+        }
+    }
+
+    /**
+     * Take an accounting record added before back out of every partial sum it contributed to. The
+     * sums are then equal in value to the sums of the remaining records, only their scale may stay
+     * larger. A quarantined record is only taken out of the quarantine counts.
+     *
+     * @param account to subtract.
+     */
+    public void subtract(final Accounting account)
+    {
+        final QuarantineReason reason = QuarantineReason.of(account);
+        if (reason != null) {
+            quarantined[reason.ordinal()]--;
+            return;
+        }
+        final int mask = mask(account);
+        final BigDecimal value = account.getTotal_value().negate();
+        final DecimalAccumulator[] sums = sums(account.getAccount_currency());
+        for (int sum = 0; sum < SUMS; sum++) {
+            if ((mask & (1 << sum)) != 0) {
+                sums[sum].add(value);
+            }
+        }
+        rows--;
+    }
+
+    /**
+     * Partial sums of all records converted into one currency. The sums of every currency are
+     * multiplied by its conversion factor once, however many records they hold.
+     *
+     * @param currency to convert into.
+     * @param factors conversion factor into the currency, per account_currency of the records.
+     * @return partial sums held in the currency only.
+     */
+    public LedgerAggregates convert(final String currency, final Function<String, BigDecimal> factors)
+    {
+        final LedgerAggregates converted = new LedgerAggregates(collected);
+        final DecimalAccumulator[] convertedSums = converted.sums(currency);
+        for (final Map.Entry<String, DecimalAccumulator[]> recordCurrency : currencies.entrySet()) {
+            final BigDecimal factor = factors.apply(recordCurrency.getKey());
+            for (int sum = 0; sum < SUMS; sum++) {
+                final BigDecimal value = recordCurrency.getValue()[sum].toBigDecimal();
+                if (value != null) {
+                    convertedSums[sum].add(factor.compareTo(BigDecimal.ONE) == 0 ? value : value.multiply(factor, MathContext.DECIMAL128));
+                }
+            }
+        }
+        converted.rows = rows;
+        System.arraycopy(quarantined, 0, converted.quarantined, 0, REASONS.length);
+        return converted;
+    }
+
+    /**
+     * Currencies of the aggregated records.
+     *
+     * @return account_currency values, including null when records have none.
+     */
+    public Set<String> getCurrencies()
+    {
+        return Collections.unmodifiableSet(currencies.keySet());
+    }
+
+    /**
+     * Count records quarantined elsewhere, like by a columnar ledger, as if they were added here.
+     *
+     * @param reason the records got quarantined for.
+     * @param count of quarantined records.
+     */
+    void quarantine(final QuarantineReason reason, final long count)
+    {
+        quarantined[reason.ordinal()] += count;
+    }
+
+    /**
+     * Add a value to the partial sums selected by the mask. The mask of a record is the bitwise and
+     * of the masks of its account_category, account_type and value_type.
+     *
+     * @param currency of the value.
+     * @param mask of partial sums the value contributes to.
+     * @param value to add.
+     */
+    void add(final String currency, final int mask, final BigDecimal value)
+    {
+        final DecimalAccumulator[] sums = sums(currency);
+        for (int sum = 0; sum < SUMS; sum++) {
+            if ((mask & (1 << sum)) != 0) {
+                sums[sum].add(value);
+            }
+        }
+        rows++;
+    }
+
+    /**
+     * Add the fixed point value {@code unscaledValue * 10^-scale} to the partial sums selected by
+     * the mask, without allocating.
+     *
+     * @param currency of the value.
+     * @param mask of partial sums the value contributes to.
+     * @param unscaledValue of the value to add.
+     * @param scale of the value to add.
+     */
+    void add(final String currency, final int mask, final long unscaledValue, final int scale)
+    {
+        final DecimalAccumulator[] sums = sums(currency);
+        for (int sum = 0; sum < SUMS; sum++) {
+            if ((mask & (1 << sum)) != 0) {
+                sums[sum].add(unscaledValue, scale);
+            }
+        }
+        rows++;
+    }
+
+    /**
+     * Collected partial sums an accounting record contributes to. Revenue and expenses depend on
+     * the account_category only, so account_type and value_type are not looked at when nothing
+     * else is collected.
+     *
+     * @param account to classify.
+     * @return mask of partial sums.
+     */
+    private int mask(final Accounting account)
+    {
+        final int mask = categoryMask(account.getAccount_category()) & collected;
+        if ((mask & ~(REVENUE | EXPENSES)) == 0) {
+            return mask;
+        }
+        return mask & accountTypeMask(account.getAccount_type()) & valueTypeMask(account.getValue_type());
+    }
+
+    /**
+     * Partial sums an account_category can contribute to. Gross profit does not depend on it.
+     *
+     * @param category of the accounting record.
+     * @return mask of partial sums.
+     */
+    static int categoryMask(final String category)
+    {
+        if ("revenue".equals(category)) {
+            return REVENUE | GROSS_PROFIT;
+        } else if ("expense".equals(category)) {
+            return EXPENSES | GROSS_PROFIT;
+        } else if ("assets".equals(category)) {
+            // Debit liabilities have always been read from asset records of the liability account
+            // types; kept as is so the working capital ratio does not change.
+            return DEBIT_ASSETS | CREDIT_ASSETS | DEBIT_LIABILITIES | GROSS_PROFIT;
+        } else if ("liability".equals(category)) {
+            return CREDIT_LIABILITIES | GROSS_PROFIT;
+        }
+        return GROSS_PROFIT;
+    }
+
+    /**
+     * Partial sums an account_type can contribute to. Revenue and expenses do not depend on it.
+     *
+     * @param accountType of the accounting record.
+     * @return mask of partial sums.
+     */
+    static int accountTypeMask(final String accountType)
+    {
+        int mask = REVENUE | EXPENSES;
+        if (accountType == null) {
+            return mask;
+        } else if ("sales".equals(accountType)) {
+            mask |= GROSS_PROFIT;
+        }
+        if (ASSET_ACCOUNT_TYPES.contains(accountType)) {
+            mask |= DEBIT_ASSETS | CREDIT_ASSETS;
+        }
+        if (LIABILITY_ACCOUNT_TYPES.contains(accountType)) {
+            mask |= CREDIT_LIABILITIES | DEBIT_LIABILITIES;
+        }
+        return mask;
+    }
+
+    /**
+     * Partial sums a value_type can contribute to. Revenue and expenses do not depend on it.
+     *
+     * @param valueType of the accounting record.
+     * @return mask of partial sums.
+     */
+    static int valueTypeMask(final String valueType)
+    {
+        if ("debit".equals(valueType)) {
+            return REVENUE | EXPENSES | GROSS_PROFIT | DEBIT_ASSETS | DEBIT_LIABILITIES;
+        } else if ("credit".equals(valueType)) {
+            return REVENUE | EXPENSES | CREDIT_ASSETS | CREDIT_LIABILITIES;
+        }
+        return REVENUE | EXPENSES;
+    }
+
+    /**
+     * Sum of total_value where account_category is revenue.
+     *
+     * @return revenue partial sum.
+     */
+    public BigDecimal getRevenue()
+    {
+        return sum(REVENUE);
+    }
+
+    /**
+     * Sum of total_value where account_category is expense.
+     *
+     * @return expenses partial sum.
+     */
+    public BigDecimal getExpenses()
+    {
+        return sum(EXPENSES);
+    }
+
+    /**
+     * Sum of total_value where account_type is sales and value_type is debit.
+     *
+     * @return gross profit partial sum.
+     */
+    public BigDecimal getGrossProfit()
+    {
+        return sum(GROSS_PROFIT);
+    }
+
+    /**
+     * Sum of total_value of debit current asset records.
+     *
+     * @return debit assets partial sum.
+     */
+    public BigDecimal getDebitAssets()
+    {
+        return sum(DEBIT_ASSETS);
+    }
+
+    /**
+     * Sum of total_value of credit current asset records.
+     *
+     * @return credit assets partial sum.
+     */
+    public BigDecimal getCreditAssets()
+    {
+        return sum(CREDIT_ASSETS);
+    }
+
+    /**
+     * Sum of total_value of credit current liability records.
+     *
+     * @return credit liabilities partial sum.
+     */
+    public BigDecimal getCreditLiabilities()
+    {
+        return sum(CREDIT_LIABILITIES);
+    }
+
+    /**
+     * Sum of total_value subtracted from the credit liabilities.
+     *
+     * @return debit liabilities partial sum.
+     */
+    public BigDecimal getDebitLiabilities()
+    {
+        return sum(DEBIT_LIABILITIES);
+    }
+
+    /**
+     * Number of accounting records aggregated.
+     *
+     * @return row count, without the quarantined records.
+     */
+    public long getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Number of accounting records quarantined instead of aggregated.
+     *
+     * @return quarantined row count.
+     */
+    public long getQuarantinedRows()
+    {
+        long quarantinedRows = 0;
+        for (final long count : quarantined) {
+            quarantinedRows += count;
+        }
+        return quarantinedRows;
+    }
+
+    /**
+     * Number of accounting records quarantined for a reason.
+     *
+     * @param reason of the quarantine.
+     * @return quarantined row count.
+     */
+    public long getQuarantinedRows(final QuarantineReason reason)
+    {
+        return quarantined[reason.ordinal()];
+    }
+
+    /**
+     * Sum of a partial sum over all currencies. Adding up decimals is exact, so the sum is the same
+     * as if all records had been added up together.
+     */
+    private BigDecimal sum(final int mask)
+    {
+        if ((collected & mask) == 0) {
+            throw new IllegalStateException("Partial sum " + Integer.numberOfTrailingZeros(mask) + " was not collected.");
+        }
+        final DecimalAccumulator total = new DecimalAccumulator();
+        for (final DecimalAccumulator[] sums : currencies.values()) {
+            total.add(sums[Integer.numberOfTrailingZeros(mask)]);
+        }
+        final BigDecimal value = total.toBigDecimal();
+        return value == null ? new BigDecimal(0) : value;
+    }
+
+    /**
+     * Partial sums of a currency, created on first use.
+     */
+    private DecimalAccumulator[] sums(final String currency)
+    {
+        if (lastSums != null && Objects.equals(lastCurrency, currency)) {
+            return lastSums;
+        }
+        DecimalAccumulator[] sums = currencies.get(currency);
+        if (sums == null) {
+            sums = new DecimalAccumulator[SUMS];
+            for (int sum = 0; sum < SUMS; sum++) {
+                sums[sum] = new DecimalAccumulator();
+            }
+            currencies.put(currency, sums);
+        }
+        lastCurrency = currency;
+        lastSums = sums;
+        return sums;
+    }
+}
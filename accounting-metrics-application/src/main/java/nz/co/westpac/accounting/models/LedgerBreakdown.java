@@ -0,0 +1,408 @@
+package nz.co.westpac.accounting.models;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Revenue, expenses and total_value of the accounting records of a ledger grouped by the value of
+ * one of their fields, like account_code. Groups are found with an open addressing hash table of
+ * group numbers, and the sums of all groups are kept in parallel primitive arrays, so adding a
+ * record neither allocates nor boxes, however many groups there are.
+ */
+public class LedgerBreakdown
+{
+    /**
+     * Order of the groups. Groups are ranked by descending sums or row counts, or by ascending key.
+     */
+    public enum Sort
+    {
+        KEY, ROWS, REVENUE, EXPENSES, TOTAL;
+
+        /**
+         * Look up a sort by its name, ignoring case.
+         *
+         * @param name of the sort, like revenue.
+         * @return sort, or null when there is none of that name.
+         */
+        public static Sort ofName(final String name)
+        {
+            for (final Sort sort : values()) {
+                if (sort.name().equalsIgnoreCase(name)) {
+                    return sort;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final int OTHER = 0;
+    static final int REVENUE = 1;
+    static final int EXPENSE = 2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] keys;
+    private long[] rows;
+    private final DecimalAccumulators revenue;
+    private final DecimalAccumulators expenses;
+    private final DecimalAccumulators totals;
+    private int groups;
+
+    /**
+     * Hash table of group numbers plus one, zero marks a free slot. Only groups with a key are in
+     * the table, the group of records without one is kept aside.
+     */
+    private int[] slots;
+    private int nullGroup = -1;
+
+    public LedgerBreakdown()
+    {
+        keys = new String[INITIAL_CAPACITY];
+        rows = new long[INITIAL_CAPACITY];
+        revenue = new DecimalAccumulators(INITIAL_CAPACITY);
+        expenses = new DecimalAccumulators(INITIAL_CAPACITY);
+        totals = new DecimalAccumulators(INITIAL_CAPACITY);
+        slots = new int[2 * INITIAL_CAPACITY];
+    }
+
+    /**
+     * Breakdown with a group per value of a dictionary encoded column, numbered by dictionary code.
+     * Records of the column are added by code without looking their key up.
+     *
+     * @param column to group by.
+     */
+    LedgerBreakdown(final DictionaryColumn column)
+    {
+        groups = column.cardinality();
+        final int capacity = Math.max(groups, 1);
+        keys = new String[capacity];
+        rows = new long[capacity];
+        revenue = new DecimalAccumulators(capacity);
+        expenses = new DecimalAccumulators(capacity);
+        totals = new DecimalAccumulators(capacity);
+        for (int code = 0; code < groups; code++) {
+            keys[code] = column.value(code);
+            if (keys[code] == null) {
+                nullGroup = code;
+            }
+        }
+        slots = new int[Integer.highestOneBit(capacity) * 4];
+        for (int group = 0; group < groups; group++) {
+            if (keys[group] != null) {
+                slots[free(keys[group])] = group + 1;
+            }
+        }
+    }
+
+    /**
+     * Add an accounting record to the group of its key.
+     *
+     * @param key of the group, may be null.
+     * @param account to add.
+     */
+    public void add(final String key, final Accounting account)
+    {
+        final int group = group(key);
+        final int kind = kind(account.getAccount_category());
+        if (account instanceof FixedPointAccounting && ((FixedPointAccounting) account).isFixedPoint()) {
+            final FixedPointAccounting fixedPointAccount = (FixedPointAccounting) account;
+            add(group, kind, fixedPointAccount.getUnscaledValue(), fixedPointAccount.getValueScale());
+        } else {
+            add(group, kind, account.getTotal_value());
+        }
+    }
+
+    /**
+     * Add a value of a record of the given kind to a group.
+     *
+     * @param group number.
+     * @param kind of the record, revenue, expense or other.
+     * @param unscaledValue of the total_value.
+     * @param scale of the total_value.
+     */
+    void add(final int group, final int kind, final long unscaledValue, final int scale)
+    {
+        rows[group]++;
+        totals.add(group, unscaledValue, scale);
+        if (kind == REVENUE) {
+            revenue.add(group, unscaledValue, scale);
+        } else if (kind == EXPENSE) {
+            expenses.add(group, unscaledValue, scale);
+        }
+    }
+
+    /**
+     * Add a value of a record of the given kind to a group. A value fitting a long takes the fixed
+     * point path, its unscaled value is read once for all sums it is added to.
+     *
+     * @param group number.
+     * @param kind of the record, revenue, expense or other.
+     * @param value total_value, a record without one is only counted.
+     */
+    void add(final int group, final int kind, final BigDecimal value)
+    {
+        if (value != null && DecimalAccumulator.fitsLong(value)) {
+            add(group, kind, DecimalAccumulator.unscaledLong(value), value.scale());
+            return;
+        }
+        rows[group]++;
+        if (value == null) {
+            return;
+        }
+        totals.add(group, value);
+        if (kind == REVENUE) {
+            revenue.add(group, value);
+        } else if (kind == EXPENSE) {
+            expenses.add(group, value);
+        }
+    }
+
+    /**
+     * Kind of record an account_category stands for.
+     *
+     * @param category of the accounting record.
+     * @return revenue, expense or other.
+     */
+    static int kind(final String category)
+    {
+        if ("revenue".equals(category)) {
+            return REVENUE;
+        } else if ("expense".equals(category)) {
+            return EXPENSE;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Rank the groups and take a page of them. Only as many groups as the page reaches are kept
+     * while ranking, in a bounded heap, so taking the top groups does not sort all of them.
+     *
+     * @param sort order of the groups.
+     * @param offset number of groups ranked before the page.
+     * @param limit number of groups of the page.
+     * @return group numbers of the page, in order.
+     */
+    public int[] top(final Sort sort, final int offset, final int limit)
+    {
+        if (offset >= groups || limit <= 0) {
+            return new int[0];
+        }
+        final int kept = (int) Math.min(groups, (long) offset + limit);
+        // the root of the heap is the kept group ranked last.
+        final int[] heap = new int[kept];
+        int heapSize = 0;
+        for (int group = 0; group < groups; group++) {
+            if (heapSize < kept) {
+                heap[heapSize] = group;
+                siftUp(heap, heapSize++, sort);
+            } else if (compare(sort, group, heap[0]) < 0) {
+                heap[0] = group;
+                siftDown(heap, heapSize, sort);
+            }
+        }
+        final int[] ranked = new int[kept];
+        for (int rank = kept - 1; rank >= 0; rank--) {
+            ranked[rank] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, sort);
+        }
+        return Arrays.copyOfRange(ranked, offset, kept);
+    }
+
+    /**
+     * Number of groups.
+     *
+     * @return group count.
+     */
+    public int getGroups()
+    {
+        return groups;
+    }
+
+    public String getKey(final int group)
+    {
+        return keys[group];
+    }
+
+    public long getRows(final int group)
+    {
+        return rows[group];
+    }
+
+    /**
+     * Sum of total_value of the revenue records of a group.
+     *
+     * @param group number.
+     * @return revenue of the group.
+     */
+    public BigDecimal getRevenue(final int group)
+    {
+        return revenue.get(group);
+    }
+
+    /**
+     * Sum of total_value of the expense records of a group.
+     *
+     * @param group number.
+     * @return expenses of the group.
+     */
+    public BigDecimal getExpenses(final int group)
+    {
+        return expenses.get(group);
+    }
+
+    /**
+     * Sum of total_value of all records of a group.
+     *
+     * @param group number.
+     * @return total of the group.
+     */
+    public BigDecimal getTotal(final int group)
+    {
+        return totals.get(group);
+    }
+
+    /**
+     * Negative when the left group ranks before the right group. Ties are ranked by group number,
+     * which is the order the groups were first seen in.
+     */
+    private int compare(final Sort sort, final int left, final int right)
+    {
+        final int order;
+        switch (sort) {
+            case KEY:
+                order = keys[left] == null || keys[right] == null ? Boolean.compare(keys[left] == null, keys[right] == null)
+                        : keys[left].compareTo(keys[right]);
+                break;
+            case ROWS:
+                order = Long.compare(rows[right], rows[left]);
+                break;
+            case REVENUE:
+                order = revenue.compare(right, left);
+                break;
+            case EXPENSES:
+                order = expenses.compare(right, left);
+                break;
+            default:
+                order = totals.compare(right, left);
+                break;
+        }
+        return order != 0 ? order : Integer.compare(left, right);
+    }
+
+    private void siftUp(final int[] heap, final int index, final Sort sort)
+    {
+        int child = index;
+        while (child > 0) {
+            final int parent = (child - 1) >>> 1;
+            if (compare(sort, heap[parent], heap[child]) > 0) {
+                return;
+            }
+            swap(heap, parent, child);
+            child = parent;
+        }
+    }
+
+    private void siftDown(final int[] heap, final int size, final Sort sort)
+    {
+        int parent = 0;
+        while (true) {
+            int last = parent;
+            final int left = 2 * parent + 1;
+            final int right = left + 1;
+            if (left < size && compare(sort, heap[left], heap[last]) > 0) {
+                last = left;
+            }
+            if (right < size && compare(sort, heap[right], heap[last]) > 0) {
+                last = right;
+            }
+            if (last == parent) {
+                return;
+            }
+            swap(heap, parent, last);
+            parent = last;
+        }
+    }
+
+    private static void swap(final int[] heap, final int left, final int right)
+    {
+        final int group = heap[left];
+        heap[left] = heap[right];
+        heap[right] = group;
+    }
+
+    /**
+     * Group of a key, created on first use.
+     */
+    private int group(final String key)
+    {
+        if (key == null) {
+            if (nullGroup < 0) {
+                nullGroup = newGroup(null);
+            }
+            return nullGroup;
+        }
+        final int mask = slots.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            final int group = slots[slot] - 1;
+            if (key.equals(keys[group])) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        final int group = newGroup(key);
+        slots[slot] = group + 1;
+        if (2 * groups > slots.length) {
+            rehash();
+        }
+        return group;
+    }
+
+    private int newGroup(final String key)
+    {
+        if (groups == keys.length) {
+            final int capacity = 2 * keys.length;
+            keys = Arrays.copyOf(keys, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            revenue.ensureCapacity(capacity);
+            expenses.ensureCapacity(capacity);
+            totals.ensureCapacity(capacity);
+        }
+        keys[groups] = key;
+        return groups++;
+    }
+
+    private void rehash()
+    {
+        slots = new int[2 * slots.length];
+        for (int group = 0; group < groups; group++) {
+            if (keys[group] != null) {
+                slots[free(keys[group])] = group + 1;
+            }
+        }
+    }
+
+    /**
+     * First free slot of the probe sequence of a key.
+     */
+    private int free(final String key)
+    {
+        final int mask = slots.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Spread the bits of a hash code, since keys like account codes often differ in their last
+     * characters only.
+     */
+    private static int spread(final int hashCode)
+    {
+        final int hash = hashCode * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
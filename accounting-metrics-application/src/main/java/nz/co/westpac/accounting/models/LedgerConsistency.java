@@ -0,0 +1,65 @@
+package nz.co.westpac.accounting.models;
+
+/**
+ * Response to report whether the metrics maintained incrementally from ledger deltas are identical
+ * to the metrics of a full recalculation over the same accounting records.
+ */
+public class LedgerConsistency
+{
+    private boolean consistent;
+    private int accounts;
+    private long deltas;
+    private Metrics maintained;
+    private Metrics recalculated;
+
+    public boolean isConsistent()
+    {
+        return consistent;
+    }
+
+    public void setConsistent(boolean consistent)
+    {
+        this.consistent = consistent;
+    }
+
+    public int getAccounts()
+    {
+        return accounts;
+    }
+
+    public void setAccounts(int accounts)
+    {
+        this.accounts = accounts;
+    }
+
+    public long getDeltas()
+    {
+        return deltas;
+    }
+
+    public void setDeltas(long deltas)
+    {
+        this.deltas = deltas;
+    }
+
+    public Metrics getMaintained()
+    {
+        return maintained;
+    }
+
+    public void setMaintained(Metrics maintained)
+    {
+        this.maintained = maintained;
+    }
+
+    public Metrics getRecalculated()
+    {
+        return recalculated;
+    }
+
+    public void setRecalculated(Metrics recalculated)
+    {
+        this.recalculated = recalculated;
+    }
+
+}
@@ -0,0 +1,119 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Index of the partial sums of a series of ledger snapshots ordered by balance_date. It keeps the
+ * running total of the partial sums up to every snapshot, so the partial sums of the snapshots in
+ * any date range are the difference of two running totals. A range is found by binary search,
+ * which makes every query logarithmic in the number of snapshots instead of linear.
+ */
+public class LedgerHistoryIndex
+{
+    private final long[] balanceDates;
+
+    /**
+     * Partial sums of the first n snapshots at index n, starting with empty sums.
+     */
+    private final LedgerAggregates[] prefixSums;
+
+    /**
+     * @param balanceDates of the snapshots in ascending order, in milliseconds since the epoch.
+     * @param snapshots partial sums of the snapshots, in the same order.
+     */
+    public LedgerHistoryIndex(final long[] balanceDates, final List<LedgerAggregates> snapshots)
+    {
+        this.balanceDates = Arrays.copyOf(balanceDates, balanceDates.length);
+        prefixSums = new LedgerAggregates[snapshots.size() + 1];
+        prefixSums[0] = new LedgerAggregates();
+        for (int snapshot = 0; snapshot < snapshots.size(); snapshot++) {
+            if (snapshot > 0 && balanceDates[snapshot] < balanceDates[snapshot - 1]) {
+                throw new IllegalArgumentException("Balance dates are not in ascending order.");
+            }
+            prefixSums[snapshot + 1] = new LedgerAggregates();
+            prefixSums[snapshot + 1].add(prefixSums[snapshot]);
+            prefixSums[snapshot + 1].add(snapshots.get(snapshot));
+        }
+    }
+
+    /**
+     * Number of snapshots in the index.
+     *
+     * @return snapshot count.
+     */
+    public int size()
+    {
+        return balanceDates.length;
+    }
+
+    /**
+     * Balance date of the oldest snapshot.
+     *
+     * @return balance date, or null when the index is empty.
+     */
+    public Date getFirstBalanceDate()
+    {
+        return balanceDates.length == 0 ? null : new Date(balanceDates[0]);
+    }
+
+    /**
+     * Balance date of the newest snapshot.
+     *
+     * @return balance date, or null when the index is empty.
+     */
+    public Date getLastBalanceDate()
+    {
+        return balanceDates.length == 0 ? null : new Date(balanceDates[balanceDates.length - 1]);
+    }
+
+    /**
+     * Number of snapshots with a balance date in the range.
+     *
+     * @param from start of the range, inclusive, in milliseconds since the epoch.
+     * @param to end of the range, exclusive, in milliseconds since the epoch.
+     * @return snapshot count.
+     */
+    public int count(final long from, final long to)
+    {
+        return Math.max(0, lowerBound(to) - lowerBound(from));
+    }
+
+    /**
+     * Partial sums of all snapshots with a balance date in the range.
+     *
+     * @param from start of the range, inclusive, in milliseconds since the epoch.
+     * @param to end of the range, exclusive, in milliseconds since the epoch.
+     * @return partial sums of the range, empty when it holds no snapshot.
+     */
+    public LedgerAggregates sum(final long from, final long to)
+    {
+        final int first = lowerBound(from);
+        final int last = lowerBound(to);
+        final LedgerAggregates range = new LedgerAggregates();
+        if (last > first) {
+            range.add(prefixSums[last]);
+            range.subtract(prefixSums[first]);
+        }
+        return range;
+    }
+
+    /**
+     * Index of the first snapshot with a balance date not before the time.
+     */
+    private int lowerBound(final long time)
+    {
+        int low = 0;
+        int high = balanceDates.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (balanceDates[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,153 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable snapshot of a loaded ledger file: the parsed book together with its computed partial
+ * sums and the file state it was loaded from. A new snapshot is created on every reload, so readers
+ * holding a snapshot never see a half-loaded book.
+ */
+public class LedgerSnapshot
+{
+    /**
+     * Rough ratio between the heap held by mapped accounting records and their JSON text.
+     */
+    private static final int TREE_EXPANSION = 3;
+
+    /**
+     * Rough heap held by a book keeping header and its partial sums.
+     */
+    private static final long HEADER_SIZE = 2048;
+
+    private final BookKeeping book;
+    private final LedgerAggregates aggregates;
+    private final ColumnarLedger ledger;
+    private final long lastModified;
+    private final long length;
+    private final String contentHash;
+    private final long version;
+    private final ConcurrentMap<String, RenderedMetrics> renderedMetrics;
+    private final ConcurrentMap<BreakdownDimension, LedgerBreakdown> breakdowns;
+
+    public LedgerSnapshot(final BookKeeping book, final LedgerAggregates aggregates, final ColumnarLedger ledger, final long lastModified,
+            final long length, final String contentHash, final long version)
+    {
+        this(book, aggregates, ledger, lastModified, length, contentHash, version, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private LedgerSnapshot(final BookKeeping book, final LedgerAggregates aggregates, final ColumnarLedger ledger, final long lastModified,
+            final long length, final String contentHash, final long version, final ConcurrentMap<String, RenderedMetrics> renderedMetrics,
+            final ConcurrentMap<BreakdownDimension, LedgerBreakdown> breakdowns)
+    {
+        this.book = book;
+        this.aggregates = aggregates;
+        this.ledger = ledger;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.contentHash = contentHash;
+        this.version = version;
+        this.renderedMetrics = renderedMetrics;
+        this.breakdowns = breakdowns;
+    }
+
+    /**
+     * Copy of this snapshot for a file which got touched without changing its content.
+     *
+     * @param lastModified new modification time of the file.
+     * @param length new length of the file.
+     * @return snapshot sharing the book, partial sums, rendered responses and breakdowns of this
+     *         snapshot.
+     */
+    public LedgerSnapshot withFileState(final long lastModified, final long length)
+    {
+        return new LedgerSnapshot(book, aggregates, ledger, lastModified, length, contentHash, version, renderedMetrics, breakdowns);
+    }
+
+    /**
+     * Whether the snapshot got loaded from a file with the given modification time and length.
+     *
+     * @param lastModified modification time of the file.
+     * @param length length of the file.
+     * @return true when the file state matches.
+     */
+    public boolean matches(final long lastModified, final long length)
+    {
+        return this.lastModified == lastModified && this.length == length;
+    }
+
+    public BookKeeping getBook()
+    {
+        return book;
+    }
+
+    public LedgerAggregates getAggregates()
+    {
+        return aggregates;
+    }
+
+    /**
+     * Columnar accounting records, only kept when the ledger got loaded in columnar mode.
+     *
+     * @return columnar ledger or null.
+     */
+    public ColumnarLedger getLedger()
+    {
+        return ledger;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public String getContentHash()
+    {
+        return contentHash;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Estimated heap held by this snapshot, used to keep cached ledgers within a memory budget.
+     *
+     * @return size in bytes.
+     */
+    public long getRetainedSize()
+    {
+        if (ledger != null) {
+            return HEADER_SIZE + ledger.retainedSize();
+        } else if (book != null && book.getData() != null) {
+            return HEADER_SIZE + TREE_EXPANSION * length;
+        }
+        return HEADER_SIZE;
+    }
+
+    /**
+     * Responses rendered from this snapshot, keyed by requested metrics.
+     *
+     * @return rendered responses.
+     */
+    public ConcurrentMap<String, RenderedMetrics> getRenderedMetrics()
+    {
+        return renderedMetrics;
+    }
+
+    /**
+     * Breakdowns grouped from this snapshot, keyed by the field grouped by.
+     *
+     * @return breakdowns.
+     */
+    public ConcurrentMap<BreakdownDimension, LedgerBreakdown> getBreakdowns()
+    {
+        return breakdowns;
+    }
+}
@@ -0,0 +1,75 @@
+package nz.co.westpac.accounting.models;
+
+/**
+ * Response to report how the cache of connected business ledgers performs, so it can be sized
+ * against real traffic.
+ */
+public class LedgerStoreStatistics
+{
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int ledgers;
+    private long retainedSize;
+    private long memoryBudget;
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public void setHits(long hits)
+    {
+        this.hits = hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public void setMisses(long misses)
+    {
+        this.misses = misses;
+    }
+
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions)
+    {
+        this.evictions = evictions;
+    }
+
+    public int getLedgers()
+    {
+        return ledgers;
+    }
+
+    public void setLedgers(int ledgers)
+    {
+        this.ledgers = ledgers;
+    }
+
+    public long getRetainedSize()
+    {
+        return retainedSize;
+    }
+
+    public void setRetainedSize(long retainedSize)
+    {
+        this.retainedSize = retainedSize;
+    }
+
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+    }
+}
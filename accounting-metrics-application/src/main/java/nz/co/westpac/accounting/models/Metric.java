@@ -0,0 +1,159 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Dependency graph of the metrics and the partial sums they are derived from. Besides the metrics
+ * of the response, it holds the intermediate values shared between them. Every value depends only
+ * on values declared before it, so iterating a set of metrics in declaration order always meets a
+ * value after its dependencies.
+ */
+public enum Metric
+{
+    REVENUE("revenue", Unit.CURRENCY, Metrics::getRevenue, Metrics::setRevenue, LedgerAggregates.REVENUE),
+    EXPENSES("expenses", Unit.CURRENCY, Metrics::getExpenses, Metrics::setExpenses, LedgerAggregates.EXPENSES),
+    GROSS_PROFIT(null, null, null, null, LedgerAggregates.GROSS_PROFIT),
+    TOTAL_ASSETS(null, null, null, null, LedgerAggregates.DEBIT_ASSETS | LedgerAggregates.CREDIT_ASSETS),
+    TOTAL_LIABILITIES(null, null, null, null, LedgerAggregates.CREDIT_LIABILITIES | LedgerAggregates.DEBIT_LIABILITIES),
+    GROSS_PROFIT_MARGIN("grossProfitMargin", Unit.PERCENT, Metrics::getGrossProfitMargin, Metrics::setGrossProfitMargin, 0, GROSS_PROFIT, REVENUE),
+    NET_PROFIT_MARGIN("netProfitMargin", Unit.PERCENT, Metrics::getNetProfitMargin, Metrics::setNetProfitMargin, 0, REVENUE, EXPENSES),
+    WORKING_CAPITAL_RATIO("workingCapitalRatio", Unit.PERCENT, Metrics::getWorkingCapitalRatio, Metrics::setWorkingCapitalRatio, 0, TOTAL_ASSETS, TOTAL_LIABILITIES);
+
+    /**
+     * How the value of a metric is formatted in the response.
+     */
+    public enum Unit
+    {
+        CURRENCY, PERCENT
+    }
+
+    private final String fieldName;
+    private final Unit unit;
+    private final Function<Metrics, String> getter;
+    private final BiConsumer<Metrics, String> setter;
+    private final int partialSums;
+    private final List<Metric> dependencies;
+
+    Metric(final String fieldName, final Unit unit, final Function<Metrics, String> getter, final BiConsumer<Metrics, String> setter,
+            final int partialSums, final Metric... dependencies)
+    {
+        this.fieldName = fieldName;
+        this.unit = unit;
+        this.getter = getter;
+        this.setter = setter;
+        this.partialSums = partialSums;
+        this.dependencies = List.of(dependencies);
+    }
+
+    /**
+     * Find the metric of a response field.
+     *
+     * @param fieldName of the metric in the response.
+     * @return metric, or null when there is no such field.
+     */
+    public static Metric ofFieldName(final String fieldName)
+    {
+        for (final Metric metric : values()) {
+            if (metric.fieldName != null && metric.fieldName.equals(fieldName)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * All metrics of the response.
+     *
+     * @return metrics having a response field.
+     */
+    public static Set<Metric> fields()
+    {
+        final Set<Metric> fields = EnumSet.noneOf(Metric.class);
+        for (final Metric metric : values()) {
+            if (metric.fieldName != null) {
+                fields.add(metric);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * The metrics together with every value they depend on, directly or not.
+     *
+     * @param metrics to resolve.
+     * @return metrics and dependencies, iterating in dependency order.
+     */
+    public static Set<Metric> required(final Set<Metric> metrics)
+    {
+        final Set<Metric> required = EnumSet.noneOf(Metric.class);
+        for (final Metric metric : metrics) {
+            metric.require(required);
+        }
+        return required;
+    }
+
+    /**
+     * Mask of the partial sums the metrics are derived from, directly or not.
+     *
+     * @param metrics to resolve.
+     * @return mask of partial sums.
+     */
+    static int partialSums(final Set<Metric> metrics)
+    {
+        int partialSums = 0;
+        for (final Metric metric : required(metrics)) {
+            partialSums |= metric.partialSums;
+        }
+        return partialSums;
+    }
+
+    public String getFieldName()
+    {
+        return fieldName;
+    }
+
+    public Unit getUnit()
+    {
+        return unit;
+    }
+
+    public List<Metric> getDependencies()
+    {
+        return dependencies;
+    }
+
+    /**
+     * Get the formatted value of the metric from its response field.
+     *
+     * @param metrics response to read.
+     * @return formatted value, null when the metric is not in the response.
+     */
+    public String get(final Metrics metrics)
+    {
+        return getter.apply(metrics);
+    }
+
+    /**
+     * Set the formatted value of the metric on its response field.
+     *
+     * @param metrics response to populate.
+     * @param value formatted value.
+     */
+    public void set(final Metrics metrics, final String value)
+    {
+        setter.accept(metrics, value);
+    }
+
+    private void require(final Set<Metric> required)
+    {
+        if (required.add(this)) {
+            for (final Metric dependency : dependencies) {
+                dependency.require(required);
+            }
+        }
+    }
+}
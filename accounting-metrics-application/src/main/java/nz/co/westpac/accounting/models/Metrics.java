@@ -1,8 +1,13 @@
 package nz.co.westpac.accounting.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
+
 /**
  * Response to populate metrics information. Only Non null fields will be included in the response.
  * This is useful to get the same response which is defined for getting specific field metrics
@@ -16,6 +21,11 @@ public class Metrics
     private String grossProfitMargin;
     private String netProfitMargin;
     private String workingCapitalRatio;
+    private String currency;
+    private String fxRates;
+    private DataQuality dataQuality;
+    @JsonIgnore
+    private Map<Metric, BigDecimal> values;
 
     public String getRevenue()
     {
@@ -66,4 +76,88 @@ public class Metrics
     {
         this.workingCapitalRatio = workingCapitalRatio;
     }
+
+    /**
+     * Reporting currency the metrics got converted into, null when not converted.
+     *
+     * @return ISO 4217 currency code.
+     */
+    public String getCurrency()
+    {
+        return currency;
+    }
+
+    public void setCurrency(String currency)
+    {
+        this.currency = currency;
+    }
+
+    /**
+     * Version of the FX rate table the metrics got converted with, null when not converted.
+     *
+     * @return FX rate table version.
+     */
+    public String getFxRates()
+    {
+        return fxRates;
+    }
+
+    public void setFxRates(String fxRates)
+    {
+        this.fxRates = fxRates;
+    }
+
+    /**
+     * Data quality summary of the ledger, null when all its accounting records are valid and all
+     * requested metrics have a value.
+     *
+     * @return data quality summary.
+     */
+    public DataQuality getDataQuality()
+    {
+        return dataQuality;
+    }
+
+    public void setDataQuality(DataQuality dataQuality)
+    {
+        this.dataQuality = dataQuality;
+    }
+
+    /**
+     * Calculated values the metrics got formatted from, null when the metrics are not calculated
+     * from a ledger. Percent metrics hold their ratio, or null when it is undefined. Only binary
+     * encodings of the metrics carry these values, the JSON response has the formatted text only.
+     *
+     * @return values per metric, which may hold intermediate values besides the metrics fields.
+     */
+    public Map<Metric, BigDecimal> getValues()
+    {
+        return values;
+    }
+
+    public void setValues(Map<Metric, BigDecimal> values)
+    {
+        this.values = values;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof Metrics)) {
+            return false;
+        }
+        final Metrics metrics = (Metrics) other;
+        return Objects.equals(revenue, metrics.revenue) && Objects.equals(expenses, metrics.expenses)
+                && Objects.equals(grossProfitMargin, metrics.grossProfitMargin) && Objects.equals(netProfitMargin, metrics.netProfitMargin)
+                && Objects.equals(workingCapitalRatio, metrics.workingCapitalRatio) && Objects.equals(currency, metrics.currency)
+                && Objects.equals(fxRates, metrics.fxRates) && Objects.equals(dataQuality, metrics.dataQuality);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(revenue, expenses, grossProfitMargin, netProfitMargin, workingCapitalRatio, currency, fxRates, dataQuality);
+    }
 }
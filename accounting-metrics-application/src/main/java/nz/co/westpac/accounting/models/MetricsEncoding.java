@@ -0,0 +1,28 @@
+package nz.co.westpac.accounting.models;
+
+/**
+ * Compact binary encodings of the metrics information, besides the JSON response. Binary encodings
+ * carry the calculated value of every metric with its scale next to its formatted text, so clients
+ * do not parse the formatted text back into numbers.
+ */
+public enum MetricsEncoding
+{
+    CBOR("application/cbor"),
+    SMILE("application/x-jackson-smile"),
+    /**
+     * Protocol buffers message as defined in {@code src/main/proto/metrics.proto}.
+     */
+    PROTOBUF("application/x-protobuf");
+
+    private final String mediaType;
+
+    MetricsEncoding(final String mediaType)
+    {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType()
+    {
+        return mediaType;
+    }
+}
@@ -0,0 +1,59 @@
+package nz.co.westpac.accounting.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import java.time.LocalDate;
+
+/**
+ * Metrics information of the ledger snapshots with a balance_date within a period. Periods
+ * without snapshots carry no metrics.
+ */
+@JsonInclude(Include.NON_NULL)
+public class PeriodMetrics
+{
+    private LocalDate from;
+    private LocalDate to;
+    private int snapshots;
+    private Metrics metrics;
+
+    public LocalDate getFrom()
+    {
+        return from;
+    }
+
+    public void setFrom(LocalDate from)
+    {
+        this.from = from;
+    }
+
+    public LocalDate getTo()
+    {
+        return to;
+    }
+
+    public void setTo(LocalDate to)
+    {
+        this.to = to;
+    }
+
+    public int getSnapshots()
+    {
+        return snapshots;
+    }
+
+    public void setSnapshots(int snapshots)
+    {
+        this.snapshots = snapshots;
+    }
+
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics)
+    {
+        this.metrics = metrics;
+    }
+}
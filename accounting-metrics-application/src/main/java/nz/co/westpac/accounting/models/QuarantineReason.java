@@ -0,0 +1,58 @@
+package nz.co.westpac.accounting.models;
+
+/**
+ * Why an accounting record of a ledger file got quarantined. Quarantined records are left out of
+ * the partial sums, the metrics are calculated over the valid records only and the response
+ * reports how many records got quarantined for which reason.
+ */
+public enum QuarantineReason
+{
+    /**
+     * An element of the data array is not an accounting object.
+     */
+    MALFORMED_RECORD("malformedRecord"),
+    /**
+     * total_value is missing, null or empty.
+     */
+    MISSING_TOTAL_VALUE("missingTotalValue"),
+    /**
+     * total_value is neither a number nor a string holding one.
+     */
+    INVALID_TOTAL_VALUE("invalidTotalValue");
+
+    private final String name;
+
+    QuarantineReason(final String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Find why an accounting record has to be quarantined. A reason found while reading the record
+     * is kept on it, a record without total_value is quarantined whoever read it.
+     *
+     * @param account to check, null for a missing record.
+     * @return reason, or null when the record is valid.
+     */
+    public static QuarantineReason of(final Accounting account)
+    {
+        if (account == null) {
+            return MALFORMED_RECORD;
+        } else if (account.getQuarantine() != null) {
+            return account.getQuarantine();
+        } else if (account instanceof FixedPointAccounting && ((FixedPointAccounting) account).isFixedPoint()) {
+            return null;
+        }
+        return account.getTotal_value() == null ? MISSING_TOTAL_VALUE : null;
+    }
+
+    /**
+     * Name of the reason in the data quality summary of the response.
+     *
+     * @return camel case name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+}
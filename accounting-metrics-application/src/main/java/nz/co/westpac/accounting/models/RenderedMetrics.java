@@ -0,0 +1,63 @@
+package nz.co.westpac.accounting.models;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics response serialized once per ledger version, together with its strong entity tags. The
+ * gzip encoded body is only present when pre-compression is enabled in configuration. Binary
+ * encodings of the metrics are only rendered when a client asks for them, and kept along.
+ */
+public class RenderedMetrics
+{
+    private final Metrics metrics;
+    private final Map<MetricsEncoding, EncodedMetrics> encodings = new ConcurrentHashMap<>();
+    private final byte[] json;
+    private final String eTag;
+    private final byte[] gzippedJson;
+    private final String gzippedETag;
+
+    public RenderedMetrics(final Metrics metrics, final byte[] json, final String eTag, final byte[] gzippedJson, final String gzippedETag)
+    {
+        this.metrics = metrics;
+        this.json = json;
+        this.eTag = eTag;
+        this.gzippedJson = gzippedJson;
+        this.gzippedETag = gzippedETag;
+    }
+
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Binary encodings of the metrics rendered so far.
+     *
+     * @return encoded metrics, per encoding.
+     */
+    public Map<MetricsEncoding, EncodedMetrics> getEncodings()
+    {
+        return encodings;
+    }
+
+    public byte[] getJson()
+    {
+        return json;
+    }
+
+    public String getETag()
+    {
+        return eTag;
+    }
+
+    public byte[] getGzippedJson()
+    {
+        return gzippedJson;
+    }
+
+    public String getGzippedETag()
+    {
+        return gzippedETag;
+    }
+}
@@ -0,0 +1,35 @@
+package nz.co.westpac.accounting.models;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.std.NumberDeserializers;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Maps total_value like Jackson maps any {@code BigDecimal}, except that a value which is not a
+ * number does not fail mapping the whole ledger. total_value is left null then and the accounting
+ * record it belongs to is marked for quarantine, in the same pass over the file.
+ */
+public class TotalValueDeserializer extends JsonDeserializer<BigDecimal>
+{
+    @Override
+    public BigDecimal deserialize(final JsonParser parser, final DeserializationContext context) throws IOException
+    {
+        try {
+            return NumberDeserializers.BigDecimalDeserializer.instance.deserialize(parser, context);
+        } catch (MismatchedInputException mismatchedInput) {
+            // objects and arrays are still open, the record they belong to is one level up.
+            final JsonStreamContext record = parser.currentToken().isStructStart() ? parser.getParsingContext().getParent() : parser.getParsingContext();
+            if (record != null && record.getCurrentValue() instanceof Accounting) {
+                ((Accounting) record.getCurrentValue()).setQuarantine(QuarantineReason.INVALID_TOTAL_VALUE);
+            }
+            parser.skipChildren();
+            return null;
+        }
+    }
+}
@@ -19,6 +19,24 @@ public class AccountingMetricsProperties
 
     private PercentFormatter percentFormatter = new PercentFormatter();
 
+    private Ledger ledger = new Ledger();
+
+    private Response response = new Response();
+
+    private Tenants tenants = new Tenants();
+
+    private Batch batch = new Batch();
+
+    private Threads threads = new Threads();
+
+    private History history = new History();
+
+    private Fx fx = new Fx();
+
+    private Breakdown breakdown = new Breakdown();
+
+    private Stream stream = new Stream();
+
     public CurrencyFormatter getCurrencyFormatter()
     {
         return currencyFormatter;
@@ -34,6 +52,51 @@ public class AccountingMetricsProperties
         return locale;
     }
 
+    public Ledger getLedger()
+    {
+        return ledger;
+    }
+
+    public Response getResponse()
+    {
+        return response;
+    }
+
+    public Tenants getTenants()
+    {
+        return tenants;
+    }
+
+    public Batch getBatch()
+    {
+        return batch;
+    }
+
+    public Threads getThreads()
+    {
+        return threads;
+    }
+
+    public History getHistory()
+    {
+        return history;
+    }
+
+    public Fx getFx()
+    {
+        return fx;
+    }
+
+    public Breakdown getBreakdown()
+    {
+        return breakdown;
+    }
+
+    public Stream getStream()
+    {
+        return stream;
+    }
+
     /**
      * Configuration properties for the accounting metrics locale.
      */
@@ -108,4 +171,332 @@ public class AccountingMetricsProperties
         }
 
     }
+
+    /**
+     * Configuration properties for the ledger file the metrics are calculated from. Requests
+     * waiting for a load of a ledger already in flight give up after the load timeout, in
+     * milliseconds. The reactive endpoints decode ledger files of at most the maximum in memory
+     * size, in bytes, since their decoder holds the whole file in memory.
+     */
+    @Valid
+    public class Ledger
+    {
+        @NotNull
+        private String path = "src/main/resources/data.json";
+
+        @NotNull
+        private Boolean watch = true;
+
+        @NotNull
+        private IngestionMode mode = IngestionMode.TREE;
+
+        @NotNull
+        private Integer parallelism = Runtime.getRuntime().availableProcessors();
+
+        @NotNull
+        private Long loadTimeout = 30000L;
+
+        @NotNull
+        private Integer maximumInMemorySize = 256 * 1024 * 1024;
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public void setPath(String path)
+        {
+            this.path = path;
+        }
+
+        public Boolean getWatch()
+        {
+            return watch;
+        }
+
+        public void setWatch(Boolean watch)
+        {
+            this.watch = watch;
+        }
+
+        public IngestionMode getMode()
+        {
+            return mode;
+        }
+
+        public void setMode(IngestionMode mode)
+        {
+            this.mode = mode;
+        }
+
+        public Integer getParallelism()
+        {
+            return parallelism;
+        }
+
+        public void setParallelism(Integer parallelism)
+        {
+            this.parallelism = parallelism;
+        }
+
+        public Long getLoadTimeout()
+        {
+            return loadTimeout;
+        }
+
+        public void setLoadTimeout(Long loadTimeout)
+        {
+            this.loadTimeout = loadTimeout;
+        }
+
+        public Integer getMaximumInMemorySize()
+        {
+            return maximumInMemorySize;
+        }
+
+        public void setMaximumInMemorySize(Integer maximumInMemorySize)
+        {
+            this.maximumInMemorySize = maximumInMemorySize;
+        }
+
+    }
+
+    /**
+     * Configuration properties for the pre-rendered metrics responses.
+     */
+    @Valid
+    public class Response
+    {
+        @NotNull
+        private Boolean gzip = true;
+
+        public Boolean getGzip()
+        {
+            return gzip;
+        }
+
+        public void setGzip(Boolean gzip)
+        {
+            this.gzip = gzip;
+        }
+
+    }
+
+    /**
+     * Configuration properties for the ledgers of connected businesses, stored as one
+     * {@code <connection_id>.json} file per business.
+     */
+    @Valid
+    public class Tenants
+    {
+        @NotNull
+        private String directory = "src/main/resources/tenants";
+
+        @NotNull
+        private Long memoryBudget = 256L * 1024 * 1024;
+
+        public String getDirectory()
+        {
+            return directory;
+        }
+
+        public void setDirectory(String directory)
+        {
+            this.directory = directory;
+        }
+
+        public Long getMemoryBudget()
+        {
+            return memoryBudget;
+        }
+
+        public void setMemoryBudget(Long memoryBudget)
+        {
+            this.memoryBudget = memoryBudget;
+        }
+
+    }
+
+    /**
+     * Configuration properties for calculating the metrics information of many ledgers in one
+     * request.
+     */
+    @Valid
+    public class Batch
+    {
+        @NotNull
+        private Integer parallelism = Runtime.getRuntime().availableProcessors();
+
+        @NotNull
+        private Integer maximumLedgers = 10000;
+
+        public Integer getParallelism()
+        {
+            return parallelism;
+        }
+
+        public void setParallelism(Integer parallelism)
+        {
+            this.parallelism = parallelism;
+        }
+
+        public Integer getMaximumLedgers()
+        {
+            return maximumLedgers;
+        }
+
+        public void setMaximumLedgers(Integer maximumLedgers)
+        {
+            this.maximumLedgers = maximumLedgers;
+        }
+
+    }
+
+    /**
+     * Configuration properties for the threads serving requests and loading ledgers.
+     */
+    @Valid
+    public class Threads
+    {
+        @NotNull
+        private Boolean virtual = false;
+
+        public Boolean getVirtual()
+        {
+            return virtual;
+        }
+
+        public void setVirtual(Boolean virtual)
+        {
+            this.virtual = virtual;
+        }
+
+    }
+
+    /**
+     * Configuration properties for the ledger history, stored as one ledger file per balance_date
+     * in a directory. Requests for metrics of every period are limited to the maximum number of
+     * periods.
+     */
+    @Valid
+    public class History
+    {
+        @NotNull
+        private String directory = "src/main/resources/history";
+
+        @NotNull
+        private Integer maximumPeriods = 1000;
+
+        public String getDirectory()
+        {
+            return directory;
+        }
+
+        public void setDirectory(String directory)
+        {
+            this.directory = directory;
+        }
+
+        public Integer getMaximumPeriods()
+        {
+            return maximumPeriods;
+        }
+
+        public void setMaximumPeriods(Integer maximumPeriods)
+        {
+            this.maximumPeriods = maximumPeriods;
+        }
+
+    }
+
+    /**
+     * Configuration properties for the FX rate table metrics are converted into another currency
+     * with.
+     */
+    @Valid
+    public class Fx
+    {
+        @NotNull
+        private String path = "src/main/resources/fx-rates.json";
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        public void setPath(String path)
+        {
+            this.path = path;
+        }
+
+    }
+
+    /**
+     * Configuration properties for breaking the ledger down by a field of its accounting records.
+     */
+    @Valid
+    public class Breakdown
+    {
+        @NotNull
+        private Integer maximumPageSize = 1000;
+
+        public Integer getMaximumPageSize()
+        {
+            return maximumPageSize;
+        }
+
+        public void setMaximumPageSize(Integer maximumPageSize)
+        {
+            this.maximumPageSize = maximumPageSize;
+        }
+
+    }
+
+    /**
+     * Configuration properties for pushing metrics information to subscribers whenever it changes.
+     * The ledger file is checked every check interval besides being watched, and a subscription
+     * ends after the timeout, both in milliseconds.
+     */
+    @Valid
+    public class Stream
+    {
+        @NotNull
+        private Long checkInterval = 1000L;
+
+        @NotNull
+        private Long timeout = 1800000L;
+
+        public Long getCheckInterval()
+        {
+            return checkInterval;
+        }
+
+        public void setCheckInterval(Long checkInterval)
+        {
+            this.checkInterval = checkInterval;
+        }
+
+        public Long getTimeout()
+        {
+            return timeout;
+        }
+
+        public void setTimeout(Long timeout)
+        {
+            this.timeout = timeout;
+        }
+
+    }
+
+    /**
+     * How a ledger file gets read into memory. TREE maps the whole file into {@code BookKeeping},
+     * STREAMING folds every accounting record into the partial sums while parsing and keeps only
+     * the book keeping header, COLUMNAR streams the accounting records into a dictionary encoded
+     * {@code ColumnarLedger}, PARALLEL splits the data array of large files into chunks which are
+     * streamed into partial sums on several cores.
+     */
+    public enum IngestionMode
+    {
+        TREE, STREAMING, COLUMNAR, PARALLEL
+    }
 }
@@ -1,9 +1,21 @@
 package nz.co.westpac.accounting.services;
 
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BatchMetricsRequest;
+import nz.co.westpac.accounting.models.BatchMetricsResult;
+import nz.co.westpac.accounting.models.Breakdown;
+import nz.co.westpac.accounting.models.LedgerConsistency;
+import nz.co.westpac.accounting.models.LedgerStoreStatistics;
 import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.PeriodMetrics;
 
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 /**
  * Interface for Accounting Metrics Service which is responsible to read metrics information from
  * the external file and then calculate metrics: Revenue, Expenses, Gross Profit Margin, Net Profit
@@ -33,4 +45,137 @@ public interface AccountingMetricsInterface
      *         external file, or file structure is not correct, or mappig is corrupt.
      */
     public Metrics retrieveSpecificMetricsInformation(String fieldName);
+
+    /**
+     * Read Metrics Information from external file, calculate only the metrics information asked
+     * for in fields and then do formatting. Values shared between the requested metrics are
+     * calculated once.
+     * 
+     * @param fields comma separated metrics to calculate.
+     * @return only metrics which are asked for in fields.
+     * @throws ResponseStatusException in case invalid field is passed, or problem in reading
+     *         external file, or file structure is not correct, or mappig is corrupt.
+     */
+    public Metrics retrieveSelectedMetricsInformation(String fields);
+
+    /**
+     * Read Metrics Information from the ledger of a connected business, calculate all metrics
+     * information and then do formatting.
+     * 
+     * @param connectionId of the connected business.
+     * @return all metrics information.
+     * @throws ResponseStatusException in case the business is unknown, or problem in reading its
+     *         ledger file, or file structure is not correct, or mappig is corrupt.
+     */
+    public Metrics retrieveConnectionMetricsInformation(String connectionId);
+
+    /**
+     * Read Metrics Information from the ledger of a connected business, calculate fieldName
+     * specific metrics information and then do formatting.
+     * 
+     * @param connectionId of the connected business.
+     * @param fieldName to calculate metrics information.
+     * @return only metrics which is asked for in fieldName.
+     * @throws ResponseStatusException in case invalid field is passed, or the business is unknown,
+     *         or problem in reading its ledger file, or file structure is not correct, or mappig is
+     *         corrupt.
+     */
+    public Metrics retrieveConnectionSpecificMetricsInformation(String connectionId, String fieldName);
+
+    /**
+     * Report hit, miss and eviction counts of the connected business ledgers held in memory.
+     * 
+     * @return statistics of the connected business ledger store.
+     */
+    public LedgerStoreStatistics retrieveConnectionStatistics();
+
+    /**
+     * Calculate all metrics information of many ledgers in parallel. Every result is handed to the
+     * consumer as soon as its ledger is calculated, so the consumer is called concurrently and in
+     * no particular order.
+     * 
+     * @param request ledgers to calculate metrics information for.
+     * @param results consumer of the result of every ledger.
+     * @return future completed once the results of all ledgers are consumed.
+     * @throws ResponseStatusException in case more ledgers are requested than configured.
+     */
+    public CompletableFuture<Void> retrieveBatchMetricsInformation(BatchMetricsRequest request, Consumer<BatchMetricsResult> results);
+
+    /**
+     * Calculate all metrics information of the live ledger, which is the external file with all
+     * journal deltas applied since it last changed, and then do formatting.
+     * 
+     * @return all metrics information.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    public Metrics retrieveLiveMetricsInformation();
+
+    /**
+     * Apply journal deltas to the live ledger, recalculating only the accounts they change, and
+     * then calculate all metrics information and do formatting.
+     * 
+     * @param deltas changed fields of accounts, keyed by account_identifier. An account_status of
+     *        ARCHIVED removes the account.
+     * @return all metrics information after applying the deltas.
+     * @throws ResponseStatusException in case a delta is invalid, or problem in reading external
+     *         file, or file structure is not correct, or mappig is corrupt.
+     */
+    public Metrics applyLedgerDeltas(List<Accounting> deltas);
+
+    /**
+     * Check that the metrics information maintained from journal deltas is identical to a full
+     * recalculation over the accounts of the live ledger.
+     * 
+     * @return outcome of the check.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    public LedgerConsistency checkLiveConsistency();
+
+    /**
+     * Calculate metrics information over the ledger history, from the partial sums of all archived
+     * ledgers with a balance_date in the range, and then do formatting.
+     * 
+     * @param from first day of the range, the oldest balance date when null.
+     * @param to last day of the range, the newest balance date when null.
+     * @param fields comma separated metrics to calculate, all when null.
+     * @return metrics information of the range.
+     * @throws ResponseStatusException in case the range holds no archived ledger, or is invalid, or
+     *         invalid field is passed, or problem in reading an archived ledger file, or file
+     *         structure is not correct, or mappig is corrupt.
+     */
+    public Metrics retrieveHistoryMetricsInformation(LocalDate from, LocalDate to, String fields);
+
+    /**
+     * Calculate metrics information over the ledger history for every calendar period in the
+     * range, like every month, and then do formatting.
+     * 
+     * @param period name of the calendar period: day, month, quarter or year.
+     * @param from first day of the range, the oldest balance date when null.
+     * @param to last day of the range, the newest balance date when null.
+     * @param fields comma separated metrics to calculate, all when null.
+     * @return metrics information of every period in the range cut to the oldest and newest
+     *         balance dates, in order.
+     * @throws ResponseStatusException in case the period is unknown, or the history is empty, or
+     *         the range is invalid, or holds more periods than configured, or invalid field is
+     *         passed, or problem in reading an archived ledger file, or file structure is not
+     *         correct, or mappig is corrupt.
+     */
+    public List<PeriodMetrics> retrieveHistoryPeriodMetricsInformation(String period, LocalDate from, LocalDate to, String fields);
+
+    /**
+     * Break the ledger down by a field of its accounting records, like account_code, and get a
+     * page of the groups ranked by the sort.
+     * 
+     * @param dimension field to group by: account_category, account_type or account_code.
+     * @param sort key, rows, revenue, expenses or total.
+     * @param page number of the page, starting at zero.
+     * @param size number of groups per page.
+     * @return page of the groups.
+     * @throws ResponseStatusException in case the dimension or sort is unknown, or the page is
+     *         invalid, or problem in reading external file, or file structure is not correct, or
+     *         mappig is corrupt.
+     */
+    public Breakdown retrieveBreakdown(String dimension, String sort, int page, int size);
 }
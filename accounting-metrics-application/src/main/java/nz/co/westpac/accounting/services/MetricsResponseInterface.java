@@ -0,0 +1,132 @@
+package nz.co.westpac.accounting.services;
+
+import nz.co.westpac.accounting.models.EncodedMetrics;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.MetricsEncoding;
+import nz.co.westpac.accounting.models.RenderedMetrics;
+
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Interface for the metrics responses served by the controllers. Responses are rendered once per
+ * ledger version, serialized and optionally gzipped, so repeated requests neither calculate nor
+ * serialize the metrics information again.
+ */
+public interface MetricsResponseInterface
+{
+
+    /**
+     * Get all metrics information rendered from the current ledger.
+     *
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    public RenderedMetrics getMetricsInformation();
+
+    /**
+     * Get fieldName specific metrics information rendered from the current ledger.
+     *
+     * @param fieldName requested metrics information.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed, or problem in reading
+     *         external file, or file structure is not correct, or mappig is corrupt.
+     */
+    public RenderedMetrics getSpecificMetricsInformation(String fieldName);
+
+    /**
+     * Get the metrics information asked for in fields rendered from the current ledger.
+     *
+     * @param fields comma separated metrics requested.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed, or problem in reading
+     *         external file, or file structure is not correct, or mappig is corrupt.
+     */
+    public RenderedMetrics getSelectedMetricsInformation(String fields);
+
+    /**
+     * Get the metrics information asked for in fields rendered from the current ledger in a
+     * reporting currency.
+     *
+     * @param fields comma separated metrics requested, all when null.
+     * @param currency ISO 4217 code of the reporting currency.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field or currency is passed, or problem in
+     *         reading external file or FX rates file, or file structure is not correct, or mappig is
+     *         corrupt.
+     */
+    public RenderedMetrics getCurrencyMetricsInformation(String fields, String currency);
+
+    /**
+     * Get all metrics information rendered from the ledger of a connected business.
+     *
+     * @param connectionId of the connected business.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case the business is unknown, or problem in reading its
+     *         ledger file, or file structure is not correct, or mappig is corrupt.
+     */
+    public RenderedMetrics getConnectionMetricsInformation(String connectionId);
+
+    /**
+     * Get fieldName specific metrics information rendered from the ledger of a connected business.
+     *
+     * @param connectionId of the connected business.
+     * @param fieldName requested metrics information.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed, or the business is unknown,
+     *         or problem in reading its ledger file, or file structure is not correct, or mappig is
+     *         corrupt.
+     */
+    public RenderedMetrics getConnectionSpecificMetricsInformation(String connectionId, String fieldName);
+
+    /**
+     * Get all metrics information rendered from a ledger snapshot.
+     *
+     * @param snapshot of the ledger.
+     * @return rendered metrics response.
+     */
+    public RenderedMetrics getMetricsInformation(LedgerSnapshot snapshot);
+
+    /**
+     * Get fieldName specific metrics information rendered from a ledger snapshot.
+     *
+     * @param snapshot of the ledger.
+     * @param fieldName requested metrics information.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed.
+     */
+    public RenderedMetrics getSpecificMetricsInformation(LedgerSnapshot snapshot, String fieldName);
+
+    /**
+     * Get the metrics information asked for in fields rendered from a ledger snapshot.
+     *
+     * @param snapshot of the ledger.
+     * @param fields comma separated metrics requested.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed.
+     */
+    public RenderedMetrics getSelectedMetricsInformation(LedgerSnapshot snapshot, String fields);
+
+    /**
+     * Get the metrics information asked for in fields rendered from a ledger snapshot in a
+     * reporting currency.
+     *
+     * @param snapshot of the ledger.
+     * @param fields comma separated metrics requested, all when null.
+     * @param currency ISO 4217 code of the reporting currency.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field or currency is passed, or problem in
+     *         reading the FX rates file.
+     */
+    public RenderedMetrics getCurrencyMetricsInformation(LedgerSnapshot snapshot, String fields, String currency);
+
+    /**
+     * Get a rendered metrics response in a binary encoding.
+     *
+     * @param rendered metrics response.
+     * @param encoding binary encoding.
+     * @return encoded metrics response.
+     * @throws ResponseStatusException in case the metrics could not be encoded.
+     */
+    public EncodedMetrics getEncodedMetrics(RenderedMetrics rendered, MetricsEncoding encoding);
+}
@@ -0,0 +1,23 @@
+package nz.co.westpac.accounting.services;
+
+import nz.co.westpac.accounting.models.Metrics;
+
+import java.util.function.Consumer;
+
+/**
+ * Interface for streaming the metrics information of the current ledger, so clients are told about
+ * changed metrics instead of polling for them.
+ */
+public interface MetricsStreamInterface
+{
+
+    /**
+     * Subscribe to the metrics information of the current ledger. The subscriber gets the latest
+     * metrics first, then the metrics of every ledger change which changed them. A subscriber
+     * failing with an exception is unsubscribed.
+     *
+     * @param consumer of the metrics information.
+     * @return action unsubscribing the consumer, it may run more than once.
+     */
+    public Runnable subscribe(Consumer<Metrics> consumer);
+}
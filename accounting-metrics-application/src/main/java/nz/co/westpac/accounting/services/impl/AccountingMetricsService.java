@@ -1,26 +1,54 @@
 package nz.co.westpac.accounting.services.impl;
 
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BatchMetricsRequest;
+import nz.co.westpac.accounting.models.BatchMetricsResult;
 import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.Breakdown;
+import nz.co.westpac.accounting.models.BreakdownDimension;
+import nz.co.westpac.accounting.models.BreakdownGroup;
+import nz.co.westpac.accounting.models.FxRateTable;
+import nz.co.westpac.accounting.models.HistoryPeriod;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.LedgerBreakdown;
+import nz.co.westpac.accounting.models.LedgerConsistency;
+import nz.co.westpac.accounting.models.LedgerHistoryIndex;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.LedgerStoreStatistics;
+import nz.co.westpac.accounting.models.Metric;
 import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.PeriodMetrics;
+import nz.co.westpac.accounting.models.QuarantineReason;
 import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
 import nz.co.westpac.accounting.services.AccountingMetricsInterface;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import java.io.File;
-import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Implementation Service to calculate accounting metrics.
@@ -28,229 +56,494 @@ import java.util.Locale;
 @Service
 public class AccountingMetricsService implements AccountingMetricsInterface
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountingMetricsService.class);
+
     @Autowired
     private AccountingMetricsProperties properties;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private LedgerSnapshotCache ledgerSnapshotCache;
+
+    @Autowired
+    private TenantLedgerStore tenantLedgerStore;
+
+    @Autowired
+    private LiveLedger liveLedger;
+
+    @Autowired
+    private LedgerTelemetry telemetry;
+
+    @Autowired
+    private VirtualThreadExecutor virtualThreadExecutor;
+
+    @Autowired
+    private LedgerHistory ledgerHistory;
+
+    @Autowired
+    private LedgerLoader ledgerLoader;
+
+    private MetricsFormatter metricsFormatter;
+
+    private MetricsCalculator metricsCalculator;
+
+    private ForkJoinPool batchExecutor;
+
+    /**
+     * Set up the metrics formatter and the bounded executor of batch requests from configuration.
+     */
+    @PostConstruct
+    public void initialize()
+    {
+        metricsFormatter = new MetricsFormatter(properties);
+        metricsCalculator = new MetricsCalculator(properties, metricsFormatter);
+        batchExecutor = new ForkJoinPool(properties.getBatch().getParallelism());
+    }
+
+    /**
+     * Stop the executor of batch requests, abandoning ledgers not calculated yet.
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        batchExecutor.shutdownNow();
+    }
 
     @Override
     public Metrics retrieveMetricsInformation()
     {
-        final Metrics metrics = new Metrics();
-        final BookKeeping book = populateBook();
+        return calculateMetrics(ledgerSnapshotCache.getSnapshot().getAggregates());
+    }
 
-        metrics.setRevenue(getCurrencyFormatter().format(calculateRevenue(book)));
-        metrics.setExpenses(getCurrencyFormatter().format(calculateExpenses(book)));
-        metrics.setGrossProfitMargin(getPercentFormatter().format(calculateGrossProfitMargin(book)));
-        metrics.setNetProfitMargin(getPercentFormatter().format(calculateNetProfitMargin(book)));
-        metrics.setWorkingCapitalRatio(getPercentFormatter().format(calculateWorkingCapitalRatio(book)));
+    @Override
+    public Metrics retrieveSpecificMetricsInformation(final String fieldName)
+    {
+        return calculateSpecificMetrics(ledgerSnapshotCache.getSnapshot().getAggregates(), fieldName);
+    }
 
-        return metrics;
+    @Override
+    public Metrics retrieveSelectedMetricsInformation(final String fields)
+    {
+        return calculateMetrics(ledgerSnapshotCache.getSnapshot().getAggregates(), parseFields(fields));
     }
 
     @Override
-    public Metrics retrieveSpecificMetricsInformation(final String fieldName)
+    public Metrics retrieveConnectionMetricsInformation(final String connectionId)
+    {
+        return calculateMetrics(tenantLedgerStore.getSnapshot(connectionId).getAggregates());
+    }
+
+    @Override
+    public Metrics retrieveConnectionSpecificMetricsInformation(final String connectionId, final String fieldName)
+    {
+        return calculateSpecificMetrics(tenantLedgerStore.getSnapshot(connectionId).getAggregates(), fieldName);
+    }
+
+    @Override
+    public LedgerStoreStatistics retrieveConnectionStatistics()
+    {
+        return tenantLedgerStore.getStatistics();
+    }
+
+    @Override
+    public Metrics retrieveLiveMetricsInformation()
+    {
+        return liveLedger.calculate(this::calculateMetrics);
+    }
+
+    @Override
+    public Metrics applyLedgerDeltas(final List<Accounting> deltas)
+    {
+        return liveLedger.apply(deltas, this::calculateMetrics);
+    }
+
+    @Override
+    public LedgerConsistency checkLiveConsistency()
+    {
+        return liveLedger.checkConsistency(this::calculateMetrics);
+    }
+
+    @Override
+    public CompletableFuture<Void> retrieveBatchMetricsInformation(final BatchMetricsRequest request, final Consumer<BatchMetricsResult> results)
     {
-        final Metrics metrics = new Metrics();
-        final BookKeeping book = populateBook();
-
-        switch (fieldName) {
-            case "revenue":
-                metrics.setRevenue(getCurrencyFormatter().format(calculateRevenue(book)));
-                break;
-            case "expenses":
-                metrics.setExpenses(getCurrencyFormatter().format(calculateExpenses(book)));
-                break;
-            case "grossProfitMargin":
-                metrics.setGrossProfitMargin(getPercentFormatter().format(calculateGrossProfitMargin(book)));
-                break;
-            case "netProfitMargin":
-                metrics.setNetProfitMargin(getPercentFormatter().format(calculateNetProfitMargin(book)));
-                break;
-            case "workingCapitalRatio":
-                metrics.setWorkingCapitalRatio(getPercentFormatter().format(calculateWorkingCapitalRatio(book)));
-                break;
-            default:
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not a valid metrics information requested.");
+        final List<BookKeeping> ledgers = request.getLedgers() == null ? List.of() : request.getLedgers();
+        final List<String> connections = request.getConnections() == null ? List.of() : request.getConnections();
+        if (ledgers.size() + connections.size() > properties.getBatch().getMaximumLedgers()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Not more than " + properties.getBatch().getMaximumLedgers() + " ledgers can be requested at once.");
         }
 
-        return metrics;
+        final Set<Metric> fields = request.getFields() == null ? Metric.fields() : parseFields(request.getFields());
+
+        final List<CompletableFuture<Void>> tasks = new ArrayList<>(ledgers.size() + connections.size());
+        for (int index = 0; index < ledgers.size(); index++) {
+            final String ledger = "ledgers[" + index + "]";
+            final BookKeeping book = ledgers.get(index);
+            tasks.add(CompletableFuture.runAsync(() -> results.accept(calculateBatchResult(ledger, fields, () -> aggregate(book, fields))), batchExecutor));
+        }
+        // connections may wait for their ledger files, which virtual threads do without holding a platform thread.
+        final Executor connectionExecutor = virtualThreadExecutor.isEnabled() ? virtualThreadExecutor.getExecutor() : batchExecutor;
+        for (final String connectionId : connections) {
+            tasks.add(CompletableFuture.runAsync(
+                () -> results.accept(calculateBatchResult(connectionId, fields, () -> tenantLedgerStore.getSnapshot(connectionId).getAggregates())),
+                connectionExecutor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
+
+    @Override
+    public Metrics retrieveHistoryMetricsInformation(final LocalDate from, final LocalDate to, final String fields)
+    {
+        final LedgerHistoryIndex index = historyIndex();
+        final LocalDate first = from != null ? from : toLocalDate(index.getFirstBalanceDate());
+        final LocalDate last = to != null ? to : toLocalDate(index.getLastBalanceDate());
+        checkHistoryRange(first, last);
+        final Set<Metric> metrics = fields == null ? Metric.fields() : parseFields(fields);
+
+        final long start = toEpochMilli(first);
+        final long end = toEpochMilli(last.plusDays(1));
+        if (index.count(start, end) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No ledger history found from " + first + " to " + last + ".");
+        }
+        return calculateMetrics(index.sum(start, end), metrics);
+    }
+
+    @Override
+    public List<PeriodMetrics> retrieveHistoryPeriodMetricsInformation(final String period, final LocalDate from, final LocalDate to, final String fields)
+    {
+        final HistoryPeriod historyPeriod = HistoryPeriod.ofName(period);
+        if (historyPeriod == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not a valid period requested.");
+        }
+        final LedgerHistoryIndex index = historyIndex();
+        final LocalDate oldest = toLocalDate(index.getFirstBalanceDate());
+        final LocalDate newest = toLocalDate(index.getLastBalanceDate());
+        checkHistoryRange(from != null ? from : oldest, to != null ? to : newest);
+        final Set<Metric> metrics = fields == null ? Metric.fields() : parseFields(fields);
+
+        // periods before the oldest or after the newest balance date hold no archived ledger, the
+        // range is cut to the history so it cannot outgrow the history.
+        final LocalDate first = from == null || from.isBefore(oldest) ? oldest : from;
+        final LocalDate last = to == null || to.isAfter(newest) ? newest : to;
+        final List<PeriodMetrics> periods = new ArrayList<>();
+        if (first.isAfter(last)) {
+            return periods;
+        }
+        checkHistoryPeriods(historyPeriod, first, last);
+        for (LocalDate start = historyPeriod.start(first); !start.isAfter(last); start = historyPeriod.next(start)) {
+            // the first and last period are cut to the range.
+            final PeriodMetrics periodMetrics = new PeriodMetrics();
+            periodMetrics.setFrom(start.isBefore(first) ? first : start);
+            periodMetrics.setTo(historyPeriod.next(start).isAfter(last) ? last : historyPeriod.next(start).minusDays(1));
+            final long periodStart = toEpochMilli(periodMetrics.getFrom());
+            final long periodEnd = toEpochMilli(periodMetrics.getTo().plusDays(1));
+            periodMetrics.setSnapshots(index.count(periodStart, periodEnd));
+            if (periodMetrics.getSnapshots() > 0) {
+                periodMetrics.setMetrics(calculateMetrics(index.sum(periodStart, periodEnd), metrics));
+            }
+            periods.add(periodMetrics);
+        }
+        return periods;
+    }
+
+    @Override
+    public Breakdown retrieveBreakdown(final String dimension, final String sort, final int page, final int size)
+    {
+        final BreakdownDimension breakdownDimension = BreakdownDimension.ofFieldName(dimension);
+        if (breakdownDimension == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not a valid breakdown requested.");
+        }
+        final LedgerBreakdown.Sort breakdownSort = LedgerBreakdown.Sort.ofName(sort);
+        if (breakdownSort == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not a valid sort requested.");
+        }
+        final int maximumPageSize = properties.getBreakdown().getMaximumPageSize();
+        if (page < 0 || size < 1 || size > maximumPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must not be negative and size must be between 1 and " + maximumPageSize + ".");
+        }
+
+        final LedgerBreakdown ledgerBreakdown = breakdown(ledgerSnapshotCache.getSnapshot(), breakdownDimension);
+        final List<BreakdownGroup> items = new ArrayList<>();
+        for (final int group : ledgerBreakdown.top(breakdownSort, (int) Math.min(Integer.MAX_VALUE, (long) page * size), size)) {
+            final BreakdownGroup item = new BreakdownGroup();
+            item.setKey(ledgerBreakdown.getKey(group));
+            item.setRows(ledgerBreakdown.getRows(group));
+            item.setRevenue(metricsFormatter.formatCurrency(ledgerBreakdown.getRevenue(group)));
+            item.setExpenses(metricsFormatter.formatCurrency(ledgerBreakdown.getExpenses(group)));
+            item.setTotal(metricsFormatter.formatCurrency(ledgerBreakdown.getTotal(group)));
+            items.add(item);
+        }
+        final Breakdown breakdown = new Breakdown();
+        breakdown.setDimension(breakdownDimension.getFieldName());
+        breakdown.setSort(breakdownSort.name().toLowerCase());
+        breakdown.setGroups(ledgerBreakdown.getGroups());
+        breakdown.setPage(page);
+        breakdown.setSize(size);
+        breakdown.setItems(items);
+        return breakdown;
     }
 
     /**
-     * Get currency format based on locale defined in configuration.
+     * Calculate all metrics information from the partial sums of a ledger and then do formatting.
      * 
-     * @return numberformat with max fraction digits defined in configuration.
+     * @param aggregates partial sums collected from the book.
+     * @return all metrics information.
      */
-    private NumberFormat getCurrencyFormatter()
+    public Metrics calculateMetrics(final LedgerAggregates aggregates)
     {
-        final Locale locale = new Locale(properties.getLocale().getLanguage(), properties.getLocale().getCountry());
-        final NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(locale);
-        currencyFormatter.setMaximumFractionDigits(properties.getCurrencyFormatter().getMaximumFractionDigits());
-        return currencyFormatter;
+        return calculateMetrics(aggregates, Metric.fields());
     }
 
     /**
-     * Get percent format based on locale defined in configuration.
+     * Calculate fieldName specific metrics information from the partial sums of a ledger and then
+     * do formatting.
      * 
-     * @return numberformat with max fraction digits defined in configuration.
+     * @param aggregates partial sums collected from the book.
+     * @param fieldName to calculate metrics information.
+     * @return only metrics which is asked for in fieldName.
+     * @throws ResponseStatusException in case invalid field is passed.
      */
-    private NumberFormat getPercentFormatter()
+    public Metrics calculateSpecificMetrics(final LedgerAggregates aggregates, final String fieldName)
     {
-        final Locale locale = new Locale(properties.getLocale().getLanguage(), properties.getLocale().getCountry());
-        final NumberFormat percentFormatter = NumberFormat.getPercentInstance(locale);
-        percentFormatter.setMaximumFractionDigits(properties.getPercentFormatter().getMaximumFractionDigits());
-        return percentFormatter;
+        return calculateMetrics(aggregates, EnumSet.of(parseField(fieldName)));
     }
 
     /**
-     * Read external file and map it into {@code BookKeeping}
+     * Calculate the requested metrics information from the partial sums of a ledger and then do
+     * formatting. Only the values the requested metrics depend on are calculated, each of them
+     * once.
      * 
-     * @return book keeping information.
-     * @throws ResponseStatusException in case problem in reading external file, or file structure
-     *         is not correct, or mappig is corrupt.
+     * @param aggregates partial sums collected from the book.
+     * @param fields metrics to calculate.
+     * @return only metrics which are asked for in fields.
      */
-    private BookKeeping populateBook()
+    public Metrics calculateMetrics(final LedgerAggregates aggregates, final Set<Metric> fields)
     {
-        final File directory = new File("src/main/resources/data.json");
-        try {
-            return objectMapper.readValue(directory, BookKeeping.class);
-        } catch (JsonParseException parseException) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Data file contains invalid content", parseException);
-        } catch (JsonMappingException mappingException) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "data file JSON structure does not match structure expected", mappingException);
-        } catch (IOException ioException) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", ioException);
-        }
+        return calculateMetrics(aggregates, fields, null);
     }
 
     /**
-     * Calculate revenue - This should be calculated by adding up all the values under total_value
-     * where the account_category field is set to revenue
+     * Calculate the requested metrics information of a ledger in a reporting currency and then do
+     * formatting. The partial sums of every account_currency of the ledger are converted once,
+     * records without an account_currency are taken to be in the currency of the book.
      * 
-     * @param book to read all values based on above criteria.
-     * @return revenue metrics information.
+     * @param snapshot of the ledger.
+     * @param fields metrics to calculate.
+     * @param currency ISO 4217 code of the reporting currency.
+     * @param rates FX rate table to convert with.
+     * @return only metrics which are asked for in fields, together with the currency and the
+     *         version of the FX rate table.
+     * @throws ResponseStatusException in case the FX rate table has no rate for the reporting
+     *         currency, or for a currency of the ledger.
      */
-    private BigDecimal calculateRevenue(final BookKeeping book)
+    public Metrics calculateMetrics(final LedgerSnapshot snapshot, final Set<Metric> fields, final String currency, final FxRateTable rates)
     {
-        return book.getData().stream().filter(account -> "revenue".equals(account.getAccount_category())).map(account -> account.getTotal_value())
-            .reduce((x, y) -> x.add(y)).orElse(new BigDecimal(0));
+        if (rates.rate(currency) == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not a valid currency requested.");
+        }
+        final String bookCurrency = snapshot.getBook().getCurrency();
+        final LedgerAggregates converted = snapshot.getAggregates().convert(currency, accountCurrency -> {
+            final String from = accountCurrency != null ? accountCurrency : bookCurrency;
+            final BigDecimal factor = rates.factor(from, currency);
+            if (factor == null) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "FX rates " + rates.getVersion() + " have no rate for currency " + from + " of the ledger.");
+            }
+            return factor;
+        });
+        final Metrics metrics = calculateMetrics(converted, fields, currency);
+        metrics.setCurrency(currency);
+        metrics.setFxRates(rates.getVersion());
+        return metrics;
+    }
 
+    /**
+     * Calculate the requested metrics information and format currency values in the currency.
+     */
+    private Metrics calculateMetrics(final LedgerAggregates aggregates, final Set<Metric> fields, final String currency)
+    {
+        Timer.Sample sample = telemetry.start();
+        final Map<Metric, BigDecimal> values = metricsCalculator.calculate(aggregates, fields);
+        telemetry.stop(sample, LedgerTelemetry.STAGE_CALCULATE);
+
+        sample = telemetry.start();
+        final Metrics metrics = metricsCalculator.format(values, fields, currency);
+        metrics.setDataQuality(metricsCalculator.dataQuality(aggregates, values, fields));
+        telemetry.stop(sample, LedgerTelemetry.STAGE_FORMAT);
+        return metrics;
     }
 
     /**
-     * Calculate expenses - This should be calculated by adding up all the values under total_value
-     * where the account_category field is set to expense
+     * Parse comma separated metrics field names.
      * 
-     * @param book to read all values based on above criteria.
-     * @return expenses metrics information.
+     * @param fields comma separated field names.
+     * @return requested metrics.
+     * @throws ResponseStatusException in case invalid field is passed.
      */
-    private BigDecimal calculateExpenses(final BookKeeping book)
+    public Set<Metric> parseFields(final String fields)
     {
-        return book.getData().stream().filter(account -> "expense".equals(account.getAccount_category())).map(account -> account.getTotal_value())
-            .reduce((x, y) -> x.add(y)).orElse(new BigDecimal(0));
+        final Set<Metric> metrics = EnumSet.noneOf(Metric.class);
+        for (final String fieldName : fields.split(",")) {
+            metrics.add(parseField(fieldName.trim()));
+        }
+        return metrics;
     }
 
     /**
-     * Calculate gross profit margin - This is calculated in two steps: first by adding all the
-     * total_value fields where the account_type is set to sales and the value_type is set to debit
-     * ; then dividing that by the revenue value calculated earlier to generate a percentage value.
+     * Parse a single metrics field name.
      * 
-     * @param book to read all values based on above criteria.
-     * @return gross profit margin metrics information.
+     * @param fieldName field name of one metric.
+     * @return requested metric.
+     * @throws ResponseStatusException in case invalid field is passed.
      */
-    private BigDecimal calculateGrossProfitMargin(final BookKeeping book)
+    public Metric parseField(final String fieldName)
     {
-        final BigDecimal revenue = calculateRevenue(book);
-        final BigDecimal grossProfit =
-                book.getData().stream().filter(account -> "sales".equals(account.getAccount_type()) && "debit".equals(account.getValue_type()))
-                    .map(account -> account.getTotal_value()).reduce((x, y) -> x.add(y)).orElse(new BigDecimal(0));
+        final Metric metric = Metric.ofFieldName(fieldName);
+        if (metric == null || metric.getFieldName() == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Not a valid metrics information requested.");
+        }
+        return metric;
+    }
 
-        return grossProfit.divide(revenue, properties.getPercentFormatter().getMaximumFractionDigits(), RoundingMode.HALF_EVEN);
+    /**
+     * Get the breakdown of a ledger snapshot by a field, grouping its accounting records the first
+     * time it is asked for. Columnar ledgers are grouped by dictionary code when they keep the
+     * field, and ledgers read in a streaming mode keep no records, so their file is read again.
+     * Quarantined records are left out, like they are left out of the metrics, whichever mode the
+     * ledger is read in.
+     *
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt, or the file changed while reading it.
+     */
+    private LedgerBreakdown breakdown(final LedgerSnapshot snapshot, final BreakdownDimension dimension)
+    {
+        final LedgerBreakdown cached = snapshot.getBreakdowns().get(dimension);
+        if (cached != null) {
+            return cached;
+        }
+        // grouped outside of the map, so reading the file does not block other updates of it; a
+        // breakdown grouped concurrently for the same dimension is kept instead.
+        final LedgerBreakdown breakdown = group(snapshot, dimension);
+        final LedgerBreakdown concurrent = snapshot.getBreakdowns().putIfAbsent(dimension, breakdown);
+        return concurrent != null ? concurrent : breakdown;
     }
 
     /**
-     * Calculate net profit margin - This metric is calculated by subtracting the expenses value
-     * from the revenue value and dividing the remainder by revenue to calculate a percentage.
-     * 
-     * @param book to read all values based on above criteria.
-     * @return net profit margin metrics information.
+     * Group the accounting records of a ledger snapshot by a field.
+     *
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt, or the file changed while reading it.
      */
-    private BigDecimal calculateNetProfitMargin(final BookKeeping book)
+    private LedgerBreakdown group(final LedgerSnapshot snapshot, final BreakdownDimension dimension)
     {
-        final BigDecimal revenue = calculateRevenue(book);
-        final BigDecimal expenses = calculateExpenses(book);
-        final BigDecimal netProfit = revenue.subtract(expenses);
+        if (snapshot.getLedger() != null && dimension.column(snapshot.getLedger()) != null) {
+            return snapshot.getLedger().breakdown(dimension.column(snapshot.getLedger()));
+        }
+        final LedgerBreakdown breakdown = new LedgerBreakdown();
+        if (snapshot.getBook().getData() != null) {
+            for (final Accounting account : snapshot.getBook().getData()) {
+                if (QuarantineReason.of(account) == null) {
+                    breakdown.add(dimension.key(account), account);
+                }
+            }
+            return breakdown;
+        }
+        final File file = ledgerSnapshotCache.getLedgerFile();
+        ledgerLoader.readAccounts(file, account -> {
+            if (QuarantineReason.of(account) == null) {
+                breakdown.add(dimension.key(account), account);
+            }
+        });
+        if (!ledgerLoader.isCurrent(snapshot, file)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Data file changed while reading it, try again.");
+        }
+        return breakdown;
+    }
 
-        return netProfit.divide(revenue, properties.getPercentFormatter().getMaximumFractionDigits(), RoundingMode.HALF_EVEN);
+    /**
+     * Get the index of the ledger history.
+     *
+     * @throws ResponseStatusException in case the history holds no archived ledger.
+     */
+    private LedgerHistoryIndex historyIndex()
+    {
+        final LedgerHistoryIndex index = ledgerHistory.getIndex();
+        if (index.size() == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No ledger history found.");
+        }
+        return index;
     }
 
     /**
-     * Calculate total assets - 1. adding the total_value from all records where the
-     * account_category is set to assets , the value_type is set to debit , and the account_type is
-     * one of current , bank , or current_accounts_receivable 2. subtracting the total_value from
-     * all records where the account_category is set to assets , the value_type is set to credit ,
-     * and the account_type is one of current , bank , or current_accounts_receivable
-     * 
-     * @param book to read all values based on above criteria.
-     * @return total assets metrics information.
+     * @throws ResponseStatusException in case the range ends before it starts.
      */
-    private BigDecimal calculateTotalAssets(final BookKeeping book)
+    private static void checkHistoryRange(final LocalDate from, final LocalDate to)
     {
-        final List<String> accountTypes = List.of("current", "bank", "current_accounts_receivable");
-        final BigDecimal totalDebitAssets =
-                book.getData().stream()
-                    .filter(account -> "assets".equals(account.getAccount_category()) && "debit".equals(account.getValue_type())
-                            && accountTypes.contains(account.getAccount_type()))
-                    .map(account -> account.getTotal_value()).reduce((x, y) -> x.add(y)).orElse(new BigDecimal(0));
-        final BigDecimal totalCreditAssets =
-                book.getData().stream()
-                    .filter(account -> "assets".equals(account.getAccount_category()) && "credit".equals(account.getValue_type())
-                            && accountTypes.contains(account.getAccount_type()))
-                    .map(account -> account.getTotal_value()).reduce((x, y) -> x.add(y)).orElse(new BigDecimal(0));
-        return totalDebitAssets.subtract(totalCreditAssets);
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "History range from " + from + " to " + to + " ends before it starts.");
+        }
     }
 
     /**
-     * Calculate total liabilities - 1. adding the total_value from all records where the
-     * account_category is set to liability , the value_type is set to credit , and the account_type
-     * is one of current or current_accounts_payable 2. subtracting the total_value from all records
-     * where the account_category is set to liability , the value_type is set to debit , and the
-     * account_type is one current or current_accounts_payable
-     * 
-     * @param book to read all values based on above criteria.
-     * @return total liabilities metrics information.
+     * @throws ResponseStatusException in case the range holds more periods than configured.
      */
-    private BigDecimal calculateTotalLiabilities(final BookKeeping book)
+    private void checkHistoryPeriods(final HistoryPeriod historyPeriod, final LocalDate first, final LocalDate last)
     {
-        final List<String> accountTypes = List.of("current", "current_accounts_payable");
-        final BigDecimal totalCreditLiability =
-                book.getData().stream()
-                    .filter(account -> "liability".equals(account.getAccount_category()) && "credit".equals(account.getValue_type())
-                            && accountTypes.contains(account.getAccount_type()))
-                    .map(account -> account.getTotal_value()).reduce((x, y) -> x.add(y)).orElse(new BigDecimal(0));
-        final BigDecimal totalDebitLiability =
-                book.getData().stream()
-                    .filter(account -> "assets".equals(account.getAccount_category()) && "debit".equals(account.getValue_type())
-                            && accountTypes.contains(account.getAccount_type()))
-                    .map(account -> account.getTotal_value()).reduce((x, y) -> x.add(y)).orElse(new BigDecimal(0));
-        return totalCreditLiability.subtract(totalDebitLiability);
+        final int maximumPeriods = properties.getHistory().getMaximumPeriods();
+        int periods = 0;
+        for (LocalDate start = historyPeriod.start(first); !start.isAfter(last); start = historyPeriod.next(start)) {
+            if (++periods > maximumPeriods) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "History range from " + first + " to " + last + " holds more than " + maximumPeriods + " periods.");
+            }
+        }
     }
 
     /**
-     * Calculate working capital ratio - This is calculated dividing the assets by the liabilities
-     * creating a percentage value.
-     * 
-     * @param book to read all values based on above criteria.
-     * @return working capital ratio metrics information.
+     * Balance dates are compared as days in UTC, the time zone of the balance_date in ledger files.
      */
-    private BigDecimal calculateWorkingCapitalRatio(final BookKeeping book)
+    private static LocalDate toLocalDate(final Date date)
     {
-        final BigDecimal totalAssets = calculateTotalAssets(book);
-        final BigDecimal totalLiabilities = calculateTotalLiabilities(book);
+        return date.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+    }
 
-        return totalAssets.divide(totalLiabilities, properties.getPercentFormatter().getMaximumFractionDigits(), RoundingMode.HALF_EVEN);
+    private static long toEpochMilli(final LocalDate date)
+    {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
     }
 
+    /**
+     * Calculate all metrics information of one ledger of a batch. A failing ledger is reported in
+     * its result instead of failing the whole batch, with status 500 when it failed unexpectedly.
+     */
+    private BatchMetricsResult calculateBatchResult(final String ledger, final Set<Metric> fields, final Supplier<LedgerAggregates> aggregates)
+    {
+        final BatchMetricsResult result = new BatchMetricsResult();
+        result.setLedger(ledger);
+        try {
+            result.setMetrics(calculateMetrics(aggregates.get(), fields));
+            result.setStatus(HttpStatus.OK.value());
+        } catch (ResponseStatusException statusException) {
+            result.setStatus(statusException.getStatus().value());
+            result.setMessage(statusException.getReason());
+        } catch (RuntimeException unexpected) {
+            LOGGER.warn("Unable to calculate metrics information of batch ledger {}.", ledger, unexpected);
+            result.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            result.setMessage("Failed calculating metrics information of ledger " + ledger + ".");
+        }
+        return result;
+    }
+
+    /**
+     * Collect the partial sums the requested metrics need from a ledger passed in with a batch
+     * request.
+     *
+     * @throws ResponseStatusException in case the ledger has no accounting records.
+     */
+    private static LedgerAggregates aggregate(final BookKeeping book, final Set<Metric> fields)
+    {
+        if (book == null || book.getData() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "data file JSON structure does not match structure expected");
+        }
+        return LedgerAggregates.of(book, fields);
+    }
 }
@@ -0,0 +1,134 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.FxRateTable;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of the FX rate table read from the FX rates file defined in configuration. The table is
+ * only read again when the modification time or length of the file changes. A table without a
+ * version of its own is versioned by the hash of its content, so every table in use has a version
+ * which changes with its rates.
+ */
+@Component
+public class FxRateCache
+{
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile Loaded loaded;
+
+    /**
+     * Get the current FX rate table, reading the FX rates file when it changed since the last read.
+     *
+     * @return current FX rate table.
+     * @throws ResponseStatusException in case problem in reading the FX rates file, or its content
+     *         is not a valid rate table.
+     */
+    public FxRateTable getTable()
+    {
+        final File file = new File(properties.getFx().getPath());
+        final Loaded current = loaded;
+        if (current != null && current.matches(file)) {
+            return current.table;
+        }
+        reloadLock.lock();
+        try {
+            if (loaded == null || !loaded.matches(file)) {
+                final long lastModified = file.lastModified();
+                final long length = file.length();
+                loaded = new Loaded(read(file), lastModified, length);
+            }
+            return loaded.table;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private FxRateTable read(final File file)
+    {
+        final FxRateTable table;
+        try {
+            final byte[] content = Files.readAllBytes(file.toPath());
+            table = objectMapper.readValue(content, FxRateTable.class);
+            if (table.getVersion() == null) {
+                table.setVersion(DigestUtils.md5DigestAsHex(content));
+            }
+        } catch (JsonParseException | JsonMappingException invalidException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "FX rates file contains invalid content", invalidException);
+        } catch (IOException ioException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading FX rates file.", ioException);
+        }
+        validate(table);
+        return table;
+    }
+
+    /**
+     * @throws ResponseStatusException in case a currency is no ISO 4217 code, or a rate is not
+     *         positive.
+     */
+    private static void validate(final FxRateTable table)
+    {
+        if (table.getBase() == null || table.getRates() == null || !isCurrency(table.getBase())) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "FX rates file contains invalid content");
+        }
+        for (final Map.Entry<String, BigDecimal> rate : table.getRates().entrySet()) {
+            if (!isCurrency(rate.getKey()) || rate.getValue() == null || rate.getValue().signum() <= 0) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "FX rates file contains invalid content");
+            }
+        }
+    }
+
+    private static boolean isCurrency(final String code)
+    {
+        try {
+            return Currency.getInstance(code).getCurrencyCode().equals(code);
+        } catch (IllegalArgumentException unknown) {
+            return false;
+        }
+    }
+
+    /**
+     * FX rate table together with the file state it got read from.
+     */
+    private static class Loaded
+    {
+        private final FxRateTable table;
+        private final long lastModified;
+        private final long length;
+
+        Loaded(final FxRateTable table, final long lastModified, final long length)
+        {
+            this.table = table;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        boolean matches(final File file)
+        {
+            return lastModified == file.lastModified() && length == file.length();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.LedgerHistoryIndex;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * History of the ledger: archived ledger files, one per balance_date, kept in the directory defined
+ * in configuration. Only the balance date and partial sums of every file are held in memory, in a
+ * {@link LedgerHistoryIndex}. Archived ledgers are written once, so the index is only rebuilt when
+ * the directory changes as ledgers are added, replaced or removed; files whose modification time
+ * and length did not change are not read again.
+ */
+@Component
+public class LedgerHistory
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerHistory.class);
+
+    /**
+     * Directory changes within this many milliseconds before a rebuild may share the modification
+     * time of the directory with later changes, so the directory is checked again on next use.
+     */
+    private static final long MODIFICATION_TIME_GRANULARITY = 2000;
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private LedgerLoader ledgerLoader;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile Indexed indexed;
+
+    /**
+     * Get the index of the ledger history, rebuilding it when the directory changed.
+     *
+     * @return index of all archived ledgers with a balance_date.
+     * @throws ResponseStatusException in case problem in reading an archived ledger file, or file
+     *         structure is not correct, or mappig is corrupt.
+     */
+    public LedgerHistoryIndex getIndex()
+    {
+        final File directory = new File(properties.getHistory().getDirectory());
+        final Indexed current = indexed;
+        if (current != null && current.directoryModified == directory.lastModified()) {
+            return current.index;
+        }
+        rebuildLock.lock();
+        try {
+            final long directoryModified = directory.lastModified();
+            if (indexed != null && indexed.directoryModified == directoryModified) {
+                return indexed.index;
+            }
+            indexed = rebuild(directory, directoryModified, indexed);
+            return indexed.index;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Indexed rebuild(final File directory, final long directoryModified, final Indexed previous)
+    {
+        final File[] files = directory.listFiles((parent, name) -> name.endsWith(".json"));
+        final Map<String, Archived> archived = new HashMap<>();
+        for (final File file : files == null ? new File[0] : files) {
+            final Archived known = previous == null ? null : previous.archived.get(file.getName());
+            if (known != null && known.lastModified == file.lastModified() && known.length == file.length()) {
+                archived.put(file.getName(), known);
+                continue;
+            }
+            final LedgerSnapshot snapshot = ledgerLoader.load(file, null);
+            if (snapshot.getBook().getBalance_date() == null) {
+                LOGGER.warn("Archived ledger file {} has no balance_date, it is left out of the history.", file);
+                continue;
+            }
+            archived.put(file.getName(),
+                new Archived(file.getName(), snapshot.getLastModified(), snapshot.getLength(), snapshot.getBook().getBalance_date().getTime(),
+                    snapshot.getAggregates()));
+        }
+
+        final List<Archived> series = new ArrayList<>(archived.values());
+        series.sort(Comparator.comparingLong((Archived ledger) -> ledger.balanceDate).thenComparing(ledger -> ledger.name));
+        final long[] balanceDates = new long[series.size()];
+        final List<LedgerAggregates> aggregates = new ArrayList<>(series.size());
+        for (int ledger = 0; ledger < series.size(); ledger++) {
+            balanceDates[ledger] = series.get(ledger).balanceDate;
+            aggregates.add(series.get(ledger).aggregates);
+        }
+
+        final boolean settled = System.currentTimeMillis() - directoryModified > MODIFICATION_TIME_GRANULARITY;
+        return new Indexed(settled ? directoryModified : -1, archived, new LedgerHistoryIndex(balanceDates, aggregates));
+    }
+
+    /**
+     * Index together with the directory state and archived ledgers it got built from.
+     */
+    private static class Indexed
+    {
+        private final long directoryModified;
+        private final Map<String, Archived> archived;
+        private final LedgerHistoryIndex index;
+
+        Indexed(final long directoryModified, final Map<String, Archived> archived, final LedgerHistoryIndex index)
+        {
+            this.directoryModified = directoryModified;
+            this.archived = archived;
+            this.index = index;
+        }
+    }
+
+    /**
+     * What is kept of an archived ledger file.
+     */
+    private static class Archived
+    {
+        private final String name;
+        private final long lastModified;
+        private final long length;
+        private final long balanceDate;
+        private final LedgerAggregates aggregates;
+
+        Archived(final String name, final long lastModified, final long length, final long balanceDate, final LedgerAggregates aggregates)
+        {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.balanceDate = balanceDate;
+            this.aggregates = aggregates;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.ColumnarLedger;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties.IngestionMode;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Loads ledger files into snapshots, using the ingestion mode defined in configuration. A ledger is
+ * only parsed again when the modification time or length of its file changed and its content hash
+ * differs from the one of the current snapshot. Invalid accounting records are quarantined while
+ * the file is read, only content which is not JSON or not a book keeping object fails a load.
+ */
+@Component
+public class LedgerLoader
+{
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LedgerTelemetry telemetry;
+
+    @Autowired
+    private VirtualThreadExecutor virtualThreadExecutor;
+
+    /**
+     * Segments per worker of a file read in parallel, more than one so workers finishing early
+     * take over chunks of slower ones.
+     */
+    private static final int SEGMENTS_PER_WORKER = 4;
+
+    private static final long MINIMUM_SEGMENT_SIZE = 4L * 1024 * 1024;
+
+    /**
+     * Loads of a ledger file which changed while reading it, before giving up.
+     */
+    private static final int LOAD_ATTEMPTS = 3;
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private StreamingLedgerReader streamingLedgerReader;
+
+    private ForkJoinPool parallelReaderPool;
+
+    private ParallelLedgerReader parallelLedgerReader;
+
+    /**
+     * Set up the streaming ledger reader, and the parallel one with its workers in parallel mode.
+     */
+    @PostConstruct
+    public void initialize()
+    {
+        streamingLedgerReader = new StreamingLedgerReader(objectMapper);
+        if (properties.getLedger().getMode() == IngestionMode.PARALLEL) {
+            final int parallelism = properties.getLedger().getParallelism();
+            parallelReaderPool = new ForkJoinPool(parallelism);
+            parallelLedgerReader = new ParallelLedgerReader(streamingLedgerReader, parallelReaderPool, parallelism * SEGMENTS_PER_WORKER, MINIMUM_SEGMENT_SIZE);
+        }
+    }
+
+    /**
+     * Stop the workers of the parallel ledger reader.
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        if (parallelReaderPool != null) {
+            parallelReaderPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether a snapshot still reflects its ledger file, only comparing the file state.
+     *
+     * @param snapshot to check, may be null.
+     * @param file the snapshot got loaded from.
+     * @return true when the snapshot is current.
+     */
+    public boolean isCurrent(final LedgerSnapshot snapshot, final File file)
+    {
+        return snapshot != null && snapshot.matches(file.lastModified(), file.length());
+    }
+
+    /**
+     * Key of the state of a ledger file, its path together with the modification time and length
+     * snapshots are matched against. Concurrent loads of the same file state are coalesced.
+     *
+     * @param file of the ledger.
+     * @return file state key.
+     */
+    public String fileState(final File file)
+    {
+        return file.getPath() + '@' + file.lastModified() + ':' + file.length();
+    }
+
+    /**
+     * Load the ledger file unless the current snapshot still reflects it. The content hash and the
+     * parsed book come from separate reads of the file, so they only belong together when the
+     * file state is the same after both reads; otherwise the file is loaded again.
+     *
+     * @param file to load.
+     * @param current snapshot of the file, may be null.
+     * @return snapshot reflecting the file.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt, or the file kept changing while reading it.
+     */
+    public LedgerSnapshot load(final File file, final LedgerSnapshot current)
+    {
+        for (int attempt = 1; attempt <= LOAD_ATTEMPTS; attempt++) {
+            final long lastModified = file.lastModified();
+            final long length = file.length();
+            if (current != null && current.matches(lastModified, length)) {
+                return current;
+            }
+            final LedgerSnapshot loaded = load(file, current, lastModified, length);
+            if (file.lastModified() == lastModified && file.length() == length) {
+                return loaded;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Data file changed while reading it, try again.");
+    }
+
+    /**
+     * Create the snapshot of a book read elsewhere, like by the non-blocking reader, numbered in
+     * the same sequence as the snapshots loaded here.
+     *
+     * @param book read from the ledger file.
+     * @param lastModified modification time of the file.
+     * @param length length of the file.
+     * @param contentHash hex encoded md5 hash of the file content.
+     * @return ledger snapshot.
+     */
+    public LedgerSnapshot newSnapshot(final BookKeeping book, final long lastModified, final long length, final String contentHash)
+    {
+        final Timer.Sample sample = telemetry.start();
+        final LedgerAggregates aggregates = LedgerAggregates.of(book);
+        telemetry.stop(sample, LedgerTelemetry.STAGE_AGGREGATE, IngestionMode.TREE.name().toLowerCase());
+        telemetry.recordLedgerRead(aggregates.getRows() + aggregates.getQuarantinedRows(), length);
+        telemetry.recordQuarantined(aggregates);
+        return new LedgerSnapshot(book, aggregates, null, lastModified, length, contentHash, versions.incrementAndGet());
+    }
+
+    /**
+     * Load the ledger file in the given file state, or only take over the file state when its
+     * content hash is the one of the current snapshot.
+     */
+    private LedgerSnapshot load(final File file, final LedgerSnapshot current, final long lastModified, final long length)
+    {
+        if (current == null) {
+            // no content hash to compare with, so the file gets hashed next to parsing it.
+            final Future<String> contentHash = virtualThreadExecutor.fork(() -> hash(file));
+            try {
+                return load(file, lastModified, length, contentHash);
+            } finally {
+                contentHash.cancel(true);
+            }
+        }
+
+        final String contentHash = hash(file);
+        if (current.getContentHash().equals(contentHash)) {
+            return current.withFileState(lastModified, length);
+        }
+        return load(file, lastModified, length, CompletableFuture.completedFuture(contentHash));
+    }
+
+    /**
+     * Hash the content of the ledger file.
+     *
+     * @param file to hash.
+     * @return hex encoded hash of the file content.
+     */
+    private String hash(final File file)
+    {
+        final Timer.Sample sample = telemetry.start();
+        try (InputStream content = Files.newInputStream(file.toPath())) {
+            final String contentHash = DigestUtils.md5DigestAsHex(content);
+            telemetry.stop(sample, LedgerTelemetry.STAGE_HASH);
+            telemetry.recordLedgerRead(0, file.length());
+            return contentHash;
+        } catch (IOException ioException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", ioException);
+        }
+    }
+
+    /**
+     * Stream all accounting records of external file to the consumer, whatever the ingestion mode
+     * defined in configuration. The same {@code Accounting} instance is reused for every record, so
+     * the consumer must not retain it.
+     *
+     * @param file to read.
+     * @param accounts consumer of the accounting records.
+     * @return book keeping header information without data.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    public BookKeeping readAccounts(final File file, final Consumer<Accounting> accounts)
+    {
+        try {
+            return streamingLedgerReader.read(file, accounts);
+        } catch (JsonParseException parseException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Data file contains invalid content", parseException);
+        } catch (JsonMappingException mappingException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "data file JSON structure does not match structure expected", mappingException);
+        } catch (IOException ioException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", ioException);
+        }
+    }
+
+    /**
+     * Read external file into a new snapshot, using the ingestion mode defined in configuration.
+     *
+     * @param file to read.
+     * @param lastModified modification time of the file.
+     * @param length length of the file.
+     * @param contentHash hash of the file content, joined once the file is read.
+     * @return ledger snapshot.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    private LedgerSnapshot load(final File file, final long lastModified, final long length, final Future<String> contentHash)
+    {
+        final String mode = properties.getLedger().getMode().name().toLowerCase();
+        try {
+            final BookKeeping book;
+            LedgerAggregates aggregates = null;
+            ColumnarLedger ledger = null;
+            Timer.Sample sample = telemetry.start();
+            switch (properties.getLedger().getMode()) {
+                case STREAMING:
+                    // records are folded into the partial sums while parsing, so both are timed as parse.
+                    aggregates = new LedgerAggregates();
+                    book = streamingLedgerReader.read(file, aggregates::add);
+                    telemetry.stop(sample, LedgerTelemetry.STAGE_PARSE, mode);
+                    break;
+                case PARALLEL:
+                    // chunks are aggregated while they are parsed, so both are timed as parse.
+                    aggregates = new LedgerAggregates();
+                    book = parallelLedgerReader.read(file, aggregates);
+                    telemetry.stop(sample, LedgerTelemetry.STAGE_PARSE, mode);
+                    break;
+                case COLUMNAR:
+                    ledger = new ColumnarLedger();
+                    book = streamingLedgerReader.read(file, ledger::add);
+                    ledger.trim();
+                    telemetry.stop(sample, LedgerTelemetry.STAGE_PARSE, mode);
+                    sample = telemetry.start();
+                    aggregates = ledger.aggregate();
+                    telemetry.stop(sample, LedgerTelemetry.STAGE_AGGREGATE, mode);
+                    break;
+                default:
+                    book = objectMapper.readValue(file, BookKeeping.class);
+                    telemetry.stop(sample, LedgerTelemetry.STAGE_PARSE, mode);
+                    sample = telemetry.start();
+                    aggregates = LedgerAggregates.of(book);
+                    telemetry.stop(sample, LedgerTelemetry.STAGE_AGGREGATE, mode);
+                    break;
+            }
+            telemetry.recordLedgerRead(aggregates.getRows() + aggregates.getQuarantinedRows(), length);
+            telemetry.recordQuarantined(aggregates);
+            return new LedgerSnapshot(book, aggregates, ledger, lastModified, length, virtualThreadExecutor.join(contentHash), versions.incrementAndGet());
+        } catch (JsonParseException parseException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Data file contains invalid content", parseException);
+        } catch (JsonMappingException mappingException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "data file JSON structure does not match structure expected", mappingException);
+        } catch (IOException ioException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", ioException);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Cache of the parsed ledger file. The ledger is only parsed again when the modification time or
+ * length of the file changes and its content hash differs from the cached one. When watching is
+ * enabled, a file watcher reloads the ledger as soon as the file changes, so requests rarely pay
+ * for parsing. Requests arriving while the changed file is loaded wait for that load instead of
+ * loading the file again, so a burst of requests after a change costs a single parse. New snapshots
+ * are swapped in atomically, and listeners are told about every new ledger version cached.
+ */
+@Component
+public class LedgerSnapshotCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerSnapshotCache.class);
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private LedgerLoader ledgerLoader;
+
+    @Autowired
+    private LedgerTelemetry telemetry;
+
+    private final AtomicReference<LedgerSnapshot> snapshot = new AtomicReference<>();
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private final List<Consumer<LedgerSnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    private SingleFlight<String, LedgerSnapshot> loads;
+
+    private WatchService watchService;
+
+    /**
+     * Coalesce concurrent loads of the same ledger file state, and start a daemon thread reloading
+     * the ledger whenever the file changes, when enabled in configuration. Loads are set up first,
+     * since the watcher may reload right away.
+     */
+    @PostConstruct
+    public void startWatching()
+    {
+        loads = new SingleFlight<>(properties.getLedger().getLoadTimeout(), Counter.builder("accounting.metrics.ledger.loads.coalesced")
+            .description("Requests which waited for a ledger load already in flight instead of loading the ledger again")
+            .tag("ledger", "default")
+            .register(telemetry.getMeterRegistry()));
+
+        if (!properties.getLedger().getWatch()) {
+            return;
+        }
+        final Path file = ledgerFile().toPath().toAbsolutePath();
+        try {
+            final WatchService service = file.getFileSystem().newWatchService();
+            try {
+                file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException registerException) {
+                service.close();
+                throw registerException;
+            }
+            watchService = service;
+        } catch (IOException ioException) {
+            LOGGER.warn("Unable to watch ledger file {}, changes are picked up on request instead.", file, ioException);
+            return;
+        }
+        final Thread watcher = new Thread(() -> watch(file), "ledger-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Register gauges of the size of the current ledger. They read the current snapshot only and
+     * never load the ledger.
+     */
+    @PostConstruct
+    public void registerGauges()
+    {
+        Gauge.builder("accounting.metrics.ledger.size.rows", snapshot, current -> current.get() == null ? Double.NaN : current.get().getAggregates().getRows())
+            .description("Accounting records of the current ledger")
+            .register(telemetry.getMeterRegistry());
+        Gauge.builder("accounting.metrics.ledger.size.bytes", snapshot, current -> current.get() == null ? Double.NaN : current.get().getLength())
+            .description("Length of the current ledger file")
+            .baseUnit("bytes")
+            .register(telemetry.getMeterRegistry());
+    }
+
+    /**
+     * Stop watching the ledger file.
+     */
+    @PreDestroy
+    public void stopWatching() throws IOException
+    {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Get the snapshot of the current ledger file, loading it when the file has changed since the
+     * last load.
+     *
+     * @return current ledger snapshot.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    public LedgerSnapshot getSnapshot()
+    {
+        final LedgerSnapshot current = getCurrentSnapshot();
+        return current != null ? current : reload();
+    }
+
+    /**
+     * Get the cached snapshot without loading the ledger file.
+     *
+     * @return cached snapshot when it reflects the current ledger file, otherwise null.
+     */
+    public LedgerSnapshot getCurrentSnapshot()
+    {
+        final LedgerSnapshot current = snapshot.get();
+        final boolean hit = ledgerLoader.isCurrent(current, ledgerFile());
+        telemetry.recordCacheAccess(LedgerTelemetry.CACHE_SNAPSHOT, hit);
+        return hit ? current : null;
+    }
+
+    /**
+     * Get the cached snapshot, whether or not it still reflects the ledger file.
+     *
+     * @return cached snapshot, may be null.
+     */
+    public LedgerSnapshot getCachedSnapshot()
+    {
+        return snapshot.get();
+    }
+
+    /**
+     * Cache a snapshot loaded outside of this cache, unless a newer snapshot got cached meanwhile.
+     *
+     * @param loaded snapshot of the ledger file.
+     * @return the cached snapshot.
+     */
+    public LedgerSnapshot offer(final LedgerSnapshot loaded)
+    {
+        final LedgerSnapshot previous = snapshot.getAndAccumulate(loaded,
+            (current, offered) -> current != null && current.getVersion() > offered.getVersion() ? current : offered);
+        final LedgerSnapshot cached = previous != null && previous.getVersion() > loaded.getVersion() ? previous : loaded;
+        notifyListeners(previous, cached);
+        return cached;
+    }
+
+    /**
+     * Listen to new ledger versions being cached. Listeners are called on the thread which loaded
+     * the ledger, so they should hand longer work off to a thread of their own.
+     *
+     * @param listener called with every snapshot of a new ledger version.
+     */
+    public void addListener(final Consumer<LedgerSnapshot> listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Whether the ledger file is watched, so the cached snapshot is reloaded once the file changes
+     * and requests need not check the file themselves.
+     *
+     * @return true when a watcher reloads the ledger.
+     */
+    public boolean isWatching()
+    {
+        return watchService != null;
+    }
+
+    /**
+     * The ledger file defined in configuration.
+     *
+     * @return ledger file.
+     */
+    public File getLedgerFile()
+    {
+        return ledgerFile();
+    }
+
+    /**
+     * Drop the cached snapshot, so the next request loads the ledger file again.
+     */
+    public void invalidate()
+    {
+        snapshot.set(null);
+    }
+
+    /**
+     * Load the ledger file, or wait for the load of the same file state already in flight and
+     * share its snapshot or failure. Loads of different file states still run one at a time; they
+     * are guarded by a lock rather than a monitor, so a virtual thread reading the file does not
+     * pin its carrier thread.
+     *
+     * @return current ledger snapshot.
+     */
+    private LedgerSnapshot reload()
+    {
+        final File file = ledgerFile();
+        return loads.execute(ledgerLoader.fileState(file), () -> {
+            final LedgerSnapshot previous;
+            final LedgerSnapshot loaded;
+            reloadLock.lock();
+            try {
+                loaded = ledgerLoader.load(file, snapshot.get());
+                previous = snapshot.getAndSet(loaded);
+            } finally {
+                reloadLock.unlock();
+            }
+            notifyListeners(previous, loaded);
+            return loaded;
+        });
+    }
+
+    /**
+     * Tell the listeners about a cached snapshot, unless it holds the ledger version cached before.
+     */
+    private void notifyListeners(final LedgerSnapshot previous, final LedgerSnapshot cached)
+    {
+        if (previous != null && previous.getVersion() == cached.getVersion()) {
+            return;
+        }
+        for (final Consumer<LedgerSnapshot> listener : listeners) {
+            listener.accept(cached);
+        }
+    }
+
+    /**
+     * Reload the ledger whenever the watched file is created or modified.
+     *
+     * @param file to watch.
+     */
+    private void watch(final Path file)
+    {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        refresh();
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException closed) {
+            // watching stopped on shutdown.
+        }
+    }
+
+    /**
+     * Reload the ledger from the watcher, failures are left for the next request to report.
+     */
+    private void refresh()
+    {
+        try {
+            reload();
+        } catch (ResponseStatusException reloadException) {
+            LOGGER.warn("Unable to reload changed ledger file.", reloadException);
+        }
+    }
+
+    private File ledgerFile()
+    {
+        return new File(properties.getLedger().getPath());
+    }
+}
@@ -0,0 +1,145 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.QuarantineReason;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Micrometer instrumentation of the stages of serving metrics: hashing, parsing and aggregating
+ * the ledger file, calculating and formatting metrics, and rendering responses. Every stage gets a
+ * latency histogram. Tags are limited to fixed sets of stage, ingestion mode, cache, result and
+ * quarantine reason names, so the number of time series stays small.
+ */
+@Component
+public class LedgerTelemetry
+{
+    public static final String STAGE_HASH = "hash";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_AGGREGATE = "aggregate";
+    public static final String STAGE_CALCULATE = "calculate";
+    public static final String STAGE_FORMAT = "format";
+    public static final String STAGE_RENDER = "render";
+
+    public static final String CACHE_SNAPSHOT = "snapshot";
+    public static final String CACHE_RESPONSE = "response";
+    public static final String CACHE_CONNECTION = "connection";
+
+    private static final String NO_MODE = "none";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Start timing a stage.
+     *
+     * @return running sample, to be stopped at the end of the stage.
+     */
+    public Timer.Sample start()
+    {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Stop timing a stage which does not depend on the ingestion mode.
+     *
+     * @param sample started at the beginning of the stage.
+     * @param stage name.
+     */
+    public void stop(final Timer.Sample sample, final String stage)
+    {
+        stop(sample, stage, NO_MODE);
+    }
+
+    /**
+     * Stop timing a stage of reading the ledger file.
+     *
+     * @param sample started at the beginning of the stage.
+     * @param stage name.
+     * @param mode ingestion mode of the ledger file.
+     */
+    public void stop(final Timer.Sample sample, final String stage, final String mode)
+    {
+        sample.stop(timers.computeIfAbsent(stage + ':' + mode, key -> Timer.builder("accounting.metrics.stage")
+            .description("Time spent in a stage of serving accounting metrics")
+            .tag("stage", stage)
+            .tag("mode", mode)
+            .publishPercentileHistogram()
+            .register(meterRegistry)));
+    }
+
+    /**
+     * Count a ledger file read.
+     *
+     * @param rows accounting records read.
+     * @param bytes read from the file.
+     */
+    public void recordLedgerRead(final long rows, final long bytes)
+    {
+        counter("accounting.metrics.ledger.rows", "Accounting records read from ledger files").increment(rows);
+        counter("accounting.metrics.ledger.bytes", "Bytes read from ledger files").increment(bytes);
+    }
+
+    /**
+     * Count the accounting records of a ledger file quarantined instead of aggregated, by reason.
+     *
+     * @param aggregates partial sums of the ledger file.
+     */
+    public void recordQuarantined(final LedgerAggregates aggregates)
+    {
+        for (final QuarantineReason reason : QuarantineReason.values()) {
+            final long rows = aggregates.getQuarantinedRows(reason);
+            if (rows != 0) {
+                counters.computeIfAbsent("quarantined:" + reason.getName(), key -> Counter.builder("accounting.metrics.ledger.rows.quarantined")
+                    .description("Accounting records quarantined by reason")
+                    .tag("reason", reason.getName())
+                    .register(meterRegistry))
+                    .increment(rows);
+            }
+        }
+    }
+
+    /**
+     * Count a cache lookup.
+     *
+     * @param cache name.
+     * @param hit whether the lookup was answered from the cache.
+     */
+    public void recordCacheAccess(final String cache, final boolean hit)
+    {
+        final String result = hit ? "hit" : "miss";
+        counters.computeIfAbsent(cache + ':' + result, key -> Counter.builder("accounting.metrics.cache.requests")
+            .description("Cache lookups by cache and result")
+            .tag("cache", cache)
+            .tag("result", result)
+            .register(meterRegistry))
+            .increment();
+    }
+
+    /**
+     * Registry the gauges of the caches are registered in.
+     *
+     * @return meter registry.
+     */
+    public MeterRegistry getMeterRegistry()
+    {
+        return meterRegistry;
+    }
+
+    private Counter counter(final String name, final String description)
+    {
+        return counters.computeIfAbsent(name, key -> Counter.builder(name).description(description).register(meterRegistry));
+    }
+}
@@ -0,0 +1,282 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.LedgerConsistency;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Ledger kept up to date by journal deltas. It is seeded with the accounting records of the ledger
+ * file, keyed by account_identifier, together with their partial sums. Every delta takes the old
+ * record of its account out of the partial sums and adds the new one, so metrics follow the deltas
+ * at the cost of the changed records only. Once the ledger file itself changes, the deltas are
+ * considered part of it and the ledger is seeded again.
+ */
+@Component
+public class LiveLedger
+{
+    private static final String ARCHIVED = "ARCHIVED";
+
+    @Autowired
+    private LedgerSnapshotCache ledgerSnapshotCache;
+
+    @Autowired
+    private LedgerLoader ledgerLoader;
+
+    private final Map<String, Accounting> accounts = new LinkedHashMap<>();
+
+    /**
+     * Accounting records without account_identifier, or repeating one. No delta can address them,
+     * they only count in the partial sums.
+     */
+    private final List<Accounting> unaddressable = new ArrayList<>();
+
+    /**
+     * Guards the live ledger. A lock rather than a monitor, so a virtual thread seeding the ledger
+     * from its file does not pin its carrier thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private LedgerAggregates aggregates;
+
+    private long baseVersion;
+
+    private long deltas;
+
+    /**
+     * Calculate metrics from the partial sums of the live ledger.
+     *
+     * @param metrics calculation of the metrics from partial sums.
+     * @return calculated metrics.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    public Metrics calculate(final Function<LedgerAggregates, Metrics> metrics)
+    {
+        lock.lock();
+        try {
+            seed();
+            return metrics.apply(aggregates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply journal deltas to the live ledger, in order. A delta carries the account_identifier of
+     * the account it changes and only the fields which changed; an unknown account_identifier adds
+     * a new account, and account_status ARCHIVED removes the account. Either all deltas are applied
+     * or, when one of them is invalid, none.
+     *
+     * @param journal deltas to apply.
+     * @param metrics calculation of the metrics from partial sums.
+     * @return metrics calculated after applying the deltas.
+     * @throws ResponseStatusException in case a delta is invalid, or problem in reading external
+     *         file, or file structure is not correct, or mappig is corrupt.
+     */
+    public Metrics apply(final List<Accounting> journal, final Function<LedgerAggregates, Metrics> metrics)
+    {
+        lock.lock();
+        try {
+            seed();
+            final Map<String, Accounting> changes = new LinkedHashMap<>();
+            for (final Accounting delta : journal) {
+                final String identifier = delta.getAccount_identifier();
+                if (identifier == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ledger delta without account_identifier.");
+                } else if (delta.getQuarantine() != null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ledger delta of account " + identifier + " with invalid total_value.");
+                }
+                final Accounting previous = changes.containsKey(identifier) ? changes.get(identifier) : accounts.get(identifier);
+                final Accounting merged = merge(previous, delta);
+                if (ARCHIVED.equalsIgnoreCase(merged.getAccount_status())) {
+                    changes.put(identifier, null);
+                } else if (merged.getTotal_value() == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ledger delta of new account " + identifier + " without total_value.");
+                } else {
+                    changes.put(identifier, merged);
+                }
+            }
+
+            for (final Map.Entry<String, Accounting> change : changes.entrySet()) {
+                final Accounting previous = change.getValue() == null ? accounts.remove(change.getKey()) : accounts.put(change.getKey(), change.getValue());
+                if (previous != null) {
+                    aggregates.subtract(previous);
+                }
+                if (change.getValue() != null) {
+                    aggregates.add(change.getValue());
+                }
+            }
+            deltas += journal.size();
+            return metrics.apply(aggregates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compare the metrics of the maintained partial sums with the metrics of partial sums
+     * recalculated from all accounts of the live ledger. The calculated values are compared, not
+     * their formatted text, which hides differences below its rounding.
+     *
+     * @param metrics calculation of the metrics from partial sums.
+     * @return outcome of the comparison.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    public LedgerConsistency checkConsistency(final Function<LedgerAggregates, Metrics> metrics)
+    {
+        lock.lock();
+        try {
+            seed();
+            final LedgerAggregates recalculated = new LedgerAggregates();
+            for (final Accounting account : accounts.values()) {
+                recalculated.add(account);
+            }
+            for (final Accounting account : unaddressable) {
+                recalculated.add(account);
+            }
+
+            final LedgerConsistency consistency = new LedgerConsistency();
+            consistency.setAccounts(accounts.size() + unaddressable.size());
+            consistency.setDeltas(deltas);
+            consistency.setMaintained(metrics.apply(aggregates));
+            consistency.setRecalculated(metrics.apply(recalculated));
+            consistency.setConsistent(isSame(consistency.getMaintained(), consistency.getRecalculated()));
+            return consistency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seed the live ledger from the current ledger snapshot, unless it is seeded from that version
+     * already. The partial sums are those of the snapshot, whatever the ingestion mode. Ledgers
+     * ingested in a streaming mode keep no accounting records, so their records are streamed from
+     * the file, and only used while the file is still the one of the snapshot. Accounting records
+     * without account_identifier, or repeating one, are kept apart from the accounts deltas address.
+     *
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt, or the file changed while reading it.
+     */
+    private void seed()
+    {
+        final LedgerSnapshot snapshot = ledgerSnapshotCache.getSnapshot();
+        if (aggregates != null && snapshot.getVersion() == baseVersion) {
+            return;
+        }
+        aggregates = null;
+        accounts.clear();
+        unaddressable.clear();
+        if (snapshot.getBook().getData() != null) {
+            for (final Accounting account : snapshot.getBook().getData()) {
+                put(account);
+            }
+        } else {
+            final File file = ledgerSnapshotCache.getLedgerFile();
+            // the reader reuses one record for all accounting records.
+            ledgerLoader.readAccounts(file, account -> put(copy(account)));
+            if (!ledgerLoader.isCurrent(snapshot, file)) {
+                accounts.clear();
+                unaddressable.clear();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Data file changed while reading it, try again.");
+            }
+        }
+        aggregates = new LedgerAggregates();
+        aggregates.add(snapshot.getAggregates());
+        baseVersion = snapshot.getVersion();
+        deltas = 0;
+    }
+
+    private void put(final Accounting account)
+    {
+        final String identifier = account.getAccount_identifier();
+        if (identifier == null || accounts.containsKey(identifier)) {
+            unaddressable.add(account);
+        } else {
+            accounts.put(identifier, account);
+        }
+    }
+
+    /**
+     * Compare the calculated values of two metrics numerically, so values of different scale but
+     * equal amount are the same, together with their data quality.
+     */
+    private static boolean isSame(final Metrics maintained, final Metrics recalculated)
+    {
+        final Map<Metric, BigDecimal> maintainedValues = maintained.getValues();
+        final Map<Metric, BigDecimal> recalculatedValues = recalculated.getValues();
+        if (maintainedValues == null || recalculatedValues == null) {
+            return maintained.equals(recalculated);
+        } else if (!maintainedValues.keySet().equals(recalculatedValues.keySet())
+            || !Objects.equals(maintained.getDataQuality(), recalculated.getDataQuality())) {
+            return false;
+        }
+        for (final Map.Entry<Metric, BigDecimal> value : maintainedValues.entrySet()) {
+            final BigDecimal other = recalculatedValues.get(value.getKey());
+            if (value.getValue() == null || other == null ? value.getValue() != other : value.getValue().compareTo(other) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Accounting copy(final Accounting account)
+    {
+        final Accounting copy = new Accounting();
+        copy.setAccount_identifier(account.getAccount_identifier());
+        copy.setAccount_category(account.getAccount_category());
+        copy.setAccount_code(account.getAccount_code());
+        copy.setAccount_currency(account.getAccount_currency());
+        copy.setAccount_status(account.getAccount_status());
+        copy.setValue_type(account.getValue_type());
+        copy.setAccount_name(account.getAccount_name());
+        copy.setAccount_type(account.getAccount_type());
+        copy.setAccount_type_bank(account.getAccount_type_bank());
+        copy.setSystem_account(account.getSystem_account());
+        copy.setTotal_value(account.getTotal_value());
+        copy.setQuarantine(account.getQuarantine());
+        return copy;
+    }
+
+    /**
+     * Overlay the fields a delta carries on the previous state of its account. Records of the
+     * ledger are never modified, the merged state is a new record.
+     */
+    private static Accounting merge(final Accounting previous, final Accounting delta)
+    {
+        if (previous == null) {
+            return delta;
+        }
+        final Accounting merged = new Accounting();
+        merged.setAccount_identifier(delta.getAccount_identifier());
+        merged.setAccount_category(delta.getAccount_category() != null ? delta.getAccount_category() : previous.getAccount_category());
+        merged.setAccount_code(delta.getAccount_code() != null ? delta.getAccount_code() : previous.getAccount_code());
+        merged.setAccount_currency(delta.getAccount_currency() != null ? delta.getAccount_currency() : previous.getAccount_currency());
+        merged.setAccount_status(delta.getAccount_status() != null ? delta.getAccount_status() : previous.getAccount_status());
+        merged.setValue_type(delta.getValue_type() != null ? delta.getValue_type() : previous.getValue_type());
+        merged.setAccount_name(delta.getAccount_name() != null ? delta.getAccount_name() : previous.getAccount_name());
+        merged.setAccount_type(delta.getAccount_type() != null ? delta.getAccount_type() : previous.getAccount_type());
+        merged.setAccount_type_bank(delta.getAccount_type_bank() != null ? delta.getAccount_type_bank() : previous.getAccount_type_bank());
+        merged.setSystem_account(delta.getSystem_account() != null ? delta.getSystem_account() : previous.getSystem_account());
+        merged.setTotal_value(delta.getTotal_value() != null ? delta.getTotal_value() : previous.getTotal_value());
+        return merged;
+    }
+}
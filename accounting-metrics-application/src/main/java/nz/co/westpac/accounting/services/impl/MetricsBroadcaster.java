@@ -0,0 +1,259 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.MetricsStreamInterface;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Pushes all metrics information of the current ledger to its subscribers whenever it changes. The
+ * metrics are calculated once per new ledger version on a single publisher thread, for all
+ * subscribers together, and only pushed when they differ from the metrics pushed last. A new ledger
+ * version is noticed from the ledger snapshot cache, and from checking the ledger file every check
+ * interval while there are subscribers, so changes get noticed without watching too.
+ *
+ * <p>
+ * Every subscriber holds at most one pending metrics. A subscriber which is still busy with earlier
+ * metrics when newer ones arrive skips the pending ones, so a slow subscriber always gets the latest
+ * metrics next and never holds up the others.
+ */
+@Component
+public class MetricsBroadcaster implements MetricsStreamInterface
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsBroadcaster.class);
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private LedgerSnapshotCache ledgerSnapshotCache;
+
+    @Autowired
+    private AccountingMetricsService accountingMetricsService;
+
+    @Autowired
+    private VirtualThreadExecutor virtualThreadExecutor;
+
+    @Autowired
+    private LedgerTelemetry telemetry;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Guards pushing to all subscribers against subscribing, so a new subscriber never gets older
+     * metrics after newer ones.
+     */
+    private final ReentrantLock fanOutLock = new ReentrantLock();
+
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService publisher;
+
+    private ExecutorService deliveryExecutor;
+
+    private Counter skipped;
+
+    private long publishedVersion = -1;
+
+    private volatile Metrics latest;
+
+    /**
+     * Start the publisher thread, and listen to new ledger versions.
+     */
+    @PostConstruct
+    public void initialize()
+    {
+        publisher = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "metrics-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deliveryExecutor = virtualThreadExecutor.isEnabled() ? virtualThreadExecutor.getExecutor() : Executors.newCachedThreadPool(task -> {
+            final Thread thread = new Thread(task, "metrics-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long checkInterval = properties.getStream().getCheckInterval();
+        publisher.scheduleWithFixedDelay(this::check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        ledgerSnapshotCache.addListener(snapshot -> schedulePublish());
+
+        skipped = Counter.builder("accounting.metrics.stream.skipped")
+            .description("Metrics skipped by subscribers still busy with earlier metrics")
+            .register(telemetry.getMeterRegistry());
+        Gauge.builder("accounting.metrics.stream.subscribers", subscribers, Set::size)
+            .description("Subscribers of metrics changes")
+            .register(telemetry.getMeterRegistry());
+    }
+
+    /**
+     * Stop publishing, abandoning metrics not delivered yet.
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        publisher.shutdownNow();
+        if (!virtualThreadExecutor.isEnabled()) {
+            deliveryExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Subscribe to the metrics information of the current ledger. The subscriber gets the latest
+     * metrics first, then the metrics of every ledger change which changed them. Subscribers are
+     * called from one delivery thread at a time, which may be another thread for every call. A
+     * subscriber failing with an exception is unsubscribed.
+     *
+     * @param consumer of the metrics information.
+     * @return action unsubscribing the consumer, it may run more than once.
+     */
+    @Override
+    public Runnable subscribe(final Consumer<Metrics> consumer)
+    {
+        final Subscriber subscriber = new Subscriber(consumer);
+        fanOutLock.lock();
+        try {
+            subscribers.add(subscriber);
+            if (latest != null) {
+                subscriber.offer(latest);
+            }
+        } finally {
+            fanOutLock.unlock();
+        }
+        schedulePublish();
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Publish on the publisher thread, unless a publish is waiting to run there already.
+     */
+    private void schedulePublish()
+    {
+        if (publishScheduled.compareAndSet(false, true)) {
+            publisher.execute(this::publish);
+        }
+    }
+
+    /**
+     * Check the ledger for changes while there are subscribers, it may have been loaded by a
+     * request or changed without the watcher noticing.
+     */
+    private void check()
+    {
+        if (!subscribers.isEmpty()) {
+            schedulePublish();
+        }
+    }
+
+    /**
+     * Calculate the metrics of the current ledger when its version was not published yet, and push
+     * them to all subscribers when they changed. Only runs on the publisher thread.
+     */
+    private void publish()
+    {
+        publishScheduled.set(false);
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        final Metrics metrics;
+        try {
+            final LedgerSnapshot snapshot = ledgerSnapshotCache.getSnapshot();
+            if (snapshot.getVersion() == publishedVersion) {
+                return;
+            }
+            metrics = accountingMetricsService.calculateMetrics(snapshot.getAggregates());
+            publishedVersion = snapshot.getVersion();
+        } catch (ResponseStatusException loadException) {
+            LOGGER.warn("Unable to calculate metrics information for subscribers.", loadException);
+            return;
+        } catch (RuntimeException calculationException) {
+            // the version stays unpublished, so the next check calculates its metrics again.
+            LOGGER.error("Failed calculating metrics information for subscribers.", calculationException);
+            return;
+        }
+        if (metrics.equals(latest)) {
+            return;
+        }
+        fanOutLock.lock();
+        try {
+            latest = metrics;
+            for (final Subscriber subscriber : subscribers) {
+                subscriber.offer(metrics);
+            }
+        } finally {
+            fanOutLock.unlock();
+        }
+    }
+
+    /**
+     * Subscriber with a single slot of pending metrics, delivered by one task at a time.
+     */
+    private class Subscriber
+    {
+        private final Consumer<Metrics> consumer;
+        private final AtomicReference<Metrics> pending = new AtomicReference<>();
+        private final AtomicBoolean delivering = new AtomicBoolean();
+
+        Subscriber(final Consumer<Metrics> consumer)
+        {
+            this.consumer = consumer;
+        }
+
+        /**
+         * Make metrics the next to deliver, replacing pending metrics not delivered yet.
+         */
+        void offer(final Metrics metrics)
+        {
+            if (pending.getAndSet(metrics) != null) {
+                skipped.increment();
+            }
+            if (delivering.compareAndSet(false, true)) {
+                deliveryExecutor.execute(this::deliver);
+            }
+        }
+
+        private void deliver()
+        {
+            while (true) {
+                final Metrics metrics = pending.getAndSet(null);
+                if (metrics == null) {
+                    delivering.set(false);
+                    // metrics offered after the slot got emptied, but before delivering was reset.
+                    if (pending.get() == null || !delivering.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    consumer.accept(metrics);
+                } catch (RuntimeException deliveryException) {
+                    LOGGER.debug("Unsubscribing failed subscriber.", deliveryException);
+                    subscribers.remove(this);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.DataQuality;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.QuarantineReason;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Calculation and formatting of the metrics information from the partial sums of a ledger. It
+ * depends on the configuration properties only, so the command line interface calculates the
+ * metrics with it the same way the service does, without starting a Spring context. A ratio whose
+ * divisor is zero has no value, it is left out of the metrics and reported in their data quality
+ * summary instead of failing the request.
+ */
+public class MetricsCalculator
+{
+    private final AccountingMetricsProperties properties;
+
+    private final MetricsFormatter metricsFormatter;
+
+    public MetricsCalculator(final AccountingMetricsProperties properties, final MetricsFormatter metricsFormatter)
+    {
+        this.properties = properties;
+        this.metricsFormatter = metricsFormatter;
+    }
+
+    /**
+     * Calculate the values the requested metrics depend on from the partial sums of a ledger, each
+     * of them once.
+     *
+     * @param aggregates partial sums collected from the book.
+     * @param fields metrics to calculate.
+     * @return values of the requested metrics and of the intermediate values they depend on, null
+     *         for ratios which divide by zero.
+     */
+    public Map<Metric, BigDecimal> calculate(final LedgerAggregates aggregates, final Set<Metric> fields)
+    {
+        final Map<Metric, BigDecimal> values = new EnumMap<>(Metric.class);
+        for (final Metric metric : Metric.required(fields)) {
+            values.put(metric, calculate(metric, aggregates, values));
+        }
+        return values;
+    }
+
+    /**
+     * Format the calculated values of the requested metrics.
+     *
+     * @param values calculated for the fields.
+     * @param fields metrics to format.
+     * @param currency ISO 4217 code of the reporting currency, the currency of the locale when null.
+     * @return only metrics which are asked for in fields and have a value, holding the values they
+     *         got formatted from.
+     */
+    public Metrics format(final Map<Metric, BigDecimal> values, final Set<Metric> fields, final String currency)
+    {
+        final Metrics metrics = new Metrics();
+        metrics.setValues(values);
+        for (final Metric field : fields) {
+            final BigDecimal value = values.get(field);
+            if (value == null) {
+                continue;
+            }
+            field.set(metrics,
+                field.getUnit() == Metric.Unit.CURRENCY ? metricsFormatter.formatCurrency(value, currency) : metricsFormatter.formatPercent(value));
+        }
+        return metrics;
+    }
+
+    /**
+     * Summarise the data quality of the ledger the metrics got calculated from.
+     *
+     * @param aggregates partial sums collected from the book.
+     * @param values calculated for the fields.
+     * @param fields requested metrics.
+     * @return data quality summary, or null when all accounting records are valid and all
+     *         requested metrics have a value.
+     */
+    public DataQuality dataQuality(final LedgerAggregates aggregates, final Map<Metric, BigDecimal> values, final Set<Metric> fields)
+    {
+        final List<String> undefinedMetrics = new ArrayList<>();
+        for (final Metric field : fields) {
+            if (values.get(field) == null) {
+                undefinedMetrics.add(field.getFieldName());
+            }
+        }
+        final long quarantinedRows = aggregates.getQuarantinedRows();
+        if (quarantinedRows == 0 && undefinedMetrics.isEmpty()) {
+            return null;
+        }
+
+        final Map<String, Long> quarantined = new LinkedHashMap<>();
+        for (final QuarantineReason reason : QuarantineReason.values()) {
+            if (aggregates.getQuarantinedRows(reason) != 0) {
+                quarantined.put(reason.getName(), aggregates.getQuarantinedRows(reason));
+            }
+        }
+        final DataQuality dataQuality = new DataQuality();
+        dataQuality.setValidRows(aggregates.getRows());
+        dataQuality.setQuarantinedRows(quarantinedRows);
+        dataQuality.setQuarantined(quarantined);
+        dataQuality.setUndefinedMetrics(undefinedMetrics);
+        return dataQuality;
+    }
+
+    /**
+     * Calculate a single value of the metrics dependency graph from the partial sums and the values
+     * it depends on, which are calculated before.
+     */
+    private BigDecimal calculate(final Metric metric, final LedgerAggregates aggregates, final Map<Metric, BigDecimal> values)
+    {
+        switch (metric) {
+            case REVENUE:
+                return calculateRevenue(aggregates);
+            case EXPENSES:
+                return calculateExpenses(aggregates);
+            case GROSS_PROFIT:
+                return aggregates.getGrossProfit();
+            case TOTAL_ASSETS:
+                return calculateTotalAssets(aggregates);
+            case TOTAL_LIABILITIES:
+                return calculateTotalLiabilities(aggregates);
+            case GROSS_PROFIT_MARGIN:
+                return calculateGrossProfitMargin(values.get(Metric.GROSS_PROFIT), values.get(Metric.REVENUE));
+            case NET_PROFIT_MARGIN:
+                return calculateNetProfitMargin(values.get(Metric.REVENUE), values.get(Metric.EXPENSES));
+            default:
+                return calculateWorkingCapitalRatio(values.get(Metric.TOTAL_ASSETS), values.get(Metric.TOTAL_LIABILITIES));
+        }
+    }
+
+    /**
+     * Calculate revenue - This should be calculated by adding up all the values under total_value
+     * where the account_category field is set to revenue
+     * 
+     * @param aggregates partial sums collected from the book.
+     * @return revenue metrics information.
+     */
+    private BigDecimal calculateRevenue(final LedgerAggregates aggregates)
+    {
+        return aggregates.getRevenue();
+    }
+
+    /**
+     * Calculate expenses - This should be calculated by adding up all the values under total_value
+     * where the account_category field is set to expense
+     * 
+     * @param aggregates partial sums collected from the book.
+     * @return expenses metrics information.
+     */
+    private BigDecimal calculateExpenses(final LedgerAggregates aggregates)
+    {
+        return aggregates.getExpenses();
+    }
+
+    /**
+     * Calculate gross profit margin - This is calculated in two steps: first by adding all the
+     * total_value fields where the account_type is set to sales and the value_type is set to debit
+     * ; then dividing that by the revenue value calculated earlier to generate a percentage value.
+     * 
+     * @param grossProfit partial sum of the book.
+     * @param revenue metrics information.
+     * @return gross profit margin metrics information, null when revenue is zero.
+     */
+    private BigDecimal calculateGrossProfitMargin(final BigDecimal grossProfit, final BigDecimal revenue)
+    {
+        if (revenue.signum() == 0) {
+            return null;
+        }
+        return grossProfit.divide(revenue, properties.getPercentFormatter().getMaximumFractionDigits(), RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Calculate net profit margin - This metric is calculated by subtracting the expenses value
+     * from the revenue value and dividing the remainder by revenue to calculate a percentage.
+     * 
+     * @param revenue metrics information.
+     * @param expenses metrics information.
+     * @return net profit margin metrics information, null when revenue is zero.
+     */
+    private BigDecimal calculateNetProfitMargin(final BigDecimal revenue, final BigDecimal expenses)
+    {
+        if (revenue.signum() == 0) {
+            return null;
+        }
+        final BigDecimal netProfit = revenue.subtract(expenses);
+
+        return netProfit.divide(revenue, properties.getPercentFormatter().getMaximumFractionDigits(), RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Calculate total assets - 1. adding the total_value from all records where the
+     * account_category is set to assets , the value_type is set to debit , and the account_type is
+     * one of current , bank , or current_accounts_receivable 2. subtracting the total_value from
+     * all records where the account_category is set to assets , the value_type is set to credit ,
+     * and the account_type is one of current , bank , or current_accounts_receivable
+     * 
+     * @param aggregates partial sums collected from the book.
+     * @return total assets metrics information.
+     */
+    private BigDecimal calculateTotalAssets(final LedgerAggregates aggregates)
+    {
+        return aggregates.getDebitAssets().subtract(aggregates.getCreditAssets());
+    }
+
+    /**
+     * Calculate total liabilities - 1. adding the total_value from all records where the
+     * account_category is set to liability , the value_type is set to credit , and the account_type
+     * is one of current or current_accounts_payable 2. subtracting the total_value from all records
+     * where the account_category is set to liability , the value_type is set to debit , and the
+     * account_type is one current or current_accounts_payable
+     * 
+     * @param aggregates partial sums collected from the book.
+     * @return total liabilities metrics information.
+     */
+    private BigDecimal calculateTotalLiabilities(final LedgerAggregates aggregates)
+    {
+        return aggregates.getCreditLiabilities().subtract(aggregates.getDebitLiabilities());
+    }
+
+    /**
+     * Calculate working capital ratio - This is calculated dividing the assets by the liabilities
+     * creating a percentage value.
+     * 
+     * @param totalAssets calculated from the book.
+     * @param totalLiabilities calculated from the book.
+     * @return working capital ratio metrics information, null when total liabilities are zero.
+     */
+    private BigDecimal calculateWorkingCapitalRatio(final BigDecimal totalAssets, final BigDecimal totalLiabilities)
+    {
+        if (totalLiabilities.signum() == 0) {
+            return null;
+        }
+        return totalAssets.divide(totalLiabilities, properties.getPercentFormatter().getMaximumFractionDigits(), RoundingMode.HALF_EVEN);
+    }
+}
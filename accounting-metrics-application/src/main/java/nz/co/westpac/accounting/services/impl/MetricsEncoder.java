@@ -0,0 +1,307 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.DataQuality;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.MetricsEncoding;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Binary encodings of the metrics information. Every metric is encoded with its calculated value
+ * and scale next to its formatted text. CBOR and Smile are written with a streaming generator, as
+ * an object per metric holding its value as a native decimal and its text:
+ *
+ * <pre>
+ * {"revenue": {"value": 32431.00, "text": "$32,431"}, ..., "currency": "USD", "fxRates": "...",
+ *  "dataQuality": {"validRows": 24, "quarantinedRows": 1, ...}}
+ * </pre>
+ *
+ * Protocol buffers are written after the schema of {@code src/main/proto/metrics.proto}, where a
+ * value is its unscaled value and scale, and a metric without value has no unscaled value. The
+ * encoder writes the few fields of that schema itself, instead of depending on generated message
+ * classes and the protobuf runtime.
+ *
+ * <p>
+ * Every thread writes into a buffer of its own which is kept between calls, so only the encoded
+ * body is allocated per call.
+ */
+@Component
+public class MetricsEncoder
+{
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /**
+     * Unscaled values of protocol buffers are 64 bit, the precision of a long.
+     */
+    private static final MathContext PROTOBUF_PRECISION = new MathContext(18);
+
+    private static final int WIRE_TYPE_VARINT = 0;
+
+    private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+
+    /**
+     * Field numbers of the metrics in the Metrics message.
+     */
+    private static final Map<Metric, Integer> PROTOBUF_FIELDS = new EnumMap<>(Metric.class);
+
+    private static final int PROTOBUF_CURRENCY = 6;
+
+    private static final int PROTOBUF_FX_RATES = 7;
+
+    private static final int PROTOBUF_DATA_QUALITY = 8;
+
+    private static final int PROTOBUF_UNSCALED = 1;
+
+    private static final int PROTOBUF_SCALE = 2;
+
+    private static final int PROTOBUF_TEXT = 3;
+
+    private static final int PROTOBUF_VALID_ROWS = 1;
+
+    private static final int PROTOBUF_QUARANTINED_ROWS = 2;
+
+    private static final int PROTOBUF_QUARANTINED = 3;
+
+    private static final int PROTOBUF_UNDEFINED_METRICS = 4;
+
+    private static final int PROTOBUF_MAP_KEY = 1;
+
+    private static final int PROTOBUF_MAP_VALUE = 2;
+
+    static {
+        PROTOBUF_FIELDS.put(Metric.REVENUE, 1);
+        PROTOBUF_FIELDS.put(Metric.EXPENSES, 2);
+        PROTOBUF_FIELDS.put(Metric.GROSS_PROFIT_MARGIN, 3);
+        PROTOBUF_FIELDS.put(Metric.NET_PROFIT_MARGIN, 4);
+        PROTOBUF_FIELDS.put(Metric.WORKING_CAPITAL_RATIO, 5);
+    }
+
+    private final JsonFactory cborFactory = new CBORFactory();
+
+    private final JsonFactory smileFactory = new SmileFactory();
+
+    private final ThreadLocal<ByteArrayOutputStream> buffers = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(INITIAL_BUFFER_SIZE));
+
+    /**
+     * Encode metrics information.
+     *
+     * @param metrics to encode, only its non null fields are encoded.
+     * @param encoding binary encoding.
+     * @return encoded metrics.
+     * @throws ResponseStatusException in case the metrics could not be encoded.
+     */
+    public byte[] encode(final Metrics metrics, final MetricsEncoding encoding)
+    {
+        final ByteArrayOutputStream buffer = buffers.get();
+        buffer.reset();
+        try {
+            if (encoding == MetricsEncoding.PROTOBUF) {
+                writeProtobuf(metrics, buffer);
+            } else {
+                try (JsonGenerator generator = (encoding == MetricsEncoding.CBOR ? cborFactory : smileFactory).createGenerator(buffer)) {
+                    write(metrics, generator);
+                }
+            }
+        } catch (IOException ioException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed rendering metrics information.", ioException);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Write metrics with a generator of any format, in the order of their declaration.
+     *
+     * @param metrics to write.
+     * @param generator to write with.
+     * @throws IOException in case the generator failed writing.
+     */
+    private static void write(final Metrics metrics, final JsonGenerator generator) throws IOException
+    {
+        generator.writeStartObject();
+        for (final Metric field : Metric.fields()) {
+            final String text = field.get(metrics);
+            if (text == null) {
+                continue;
+            }
+            generator.writeObjectFieldStart(field.getFieldName());
+            final BigDecimal value = value(metrics, field);
+            if (value != null) {
+                generator.writeNumberField("value", value);
+            }
+            generator.writeStringField("text", text);
+            generator.writeEndObject();
+        }
+        if (metrics.getCurrency() != null) {
+            generator.writeStringField("currency", metrics.getCurrency());
+        }
+        if (metrics.getFxRates() != null) {
+            generator.writeStringField("fxRates", metrics.getFxRates());
+        }
+        if (metrics.getDataQuality() != null) {
+            write(metrics.getDataQuality(), generator);
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the data quality summary like the JSON response has it.
+     */
+    private static void write(final DataQuality dataQuality, final JsonGenerator generator) throws IOException
+    {
+        generator.writeObjectFieldStart("dataQuality");
+        generator.writeNumberField("validRows", dataQuality.getValidRows());
+        generator.writeNumberField("quarantinedRows", dataQuality.getQuarantinedRows());
+        if (dataQuality.getQuarantined() != null && !dataQuality.getQuarantined().isEmpty()) {
+            generator.writeObjectFieldStart("quarantined");
+            for (final Map.Entry<String, Long> reason : dataQuality.getQuarantined().entrySet()) {
+                generator.writeNumberField(reason.getKey(), reason.getValue());
+            }
+            generator.writeEndObject();
+        }
+        if (dataQuality.getUndefinedMetrics() != null && !dataQuality.getUndefinedMetrics().isEmpty()) {
+            generator.writeArrayFieldStart("undefinedMetrics");
+            for (final String fieldName : dataQuality.getUndefinedMetrics()) {
+                generator.writeString(fieldName);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write metrics as a Metrics message of the protocol buffers schema. Fields holding their
+     * default value are left out, like protocol buffers do, except for the unscaled value of a
+     * metric: it has explicit presence, so a value of zero is told apart from a metric without
+     * value.
+     */
+    private static void writeProtobuf(final Metrics metrics, final ByteArrayOutputStream buffer)
+    {
+        for (final Metric field : Metric.fields()) {
+            final String text = field.get(metrics);
+            if (text == null) {
+                continue;
+            }
+            final byte[] encodedText = text.getBytes(StandardCharsets.UTF_8);
+            BigDecimal value = value(metrics, field);
+            long unscaled = 0;
+            int scale = 0;
+            if (value != null) {
+                if (value.unscaledValue().bitLength() > Long.SIZE - 1) {
+                    value = value.round(PROTOBUF_PRECISION);
+                }
+                unscaled = value.unscaledValue().longValueExact();
+                scale = value.scale();
+            }
+            final int length = (value == null ? 0 : 1 + varintSize(zigZag(unscaled))) + (scale == 0 ? 0 : 1 + varintSize(zigZag(scale)))
+                    + 1 + varintSize(encodedText.length) + encodedText.length;
+            writeTag(buffer, PROTOBUF_FIELDS.get(field), WIRE_TYPE_LENGTH_DELIMITED);
+            writeVarint(buffer, length);
+            if (value != null) {
+                writeTag(buffer, PROTOBUF_UNSCALED, WIRE_TYPE_VARINT);
+                writeVarint(buffer, zigZag(unscaled));
+            }
+            if (scale != 0) {
+                writeTag(buffer, PROTOBUF_SCALE, WIRE_TYPE_VARINT);
+                writeVarint(buffer, zigZag(scale));
+            }
+            writeBytes(buffer, PROTOBUF_TEXT, encodedText);
+        }
+        if (metrics.getCurrency() != null) {
+            writeBytes(buffer, PROTOBUF_CURRENCY, metrics.getCurrency().getBytes(StandardCharsets.UTF_8));
+        }
+        if (metrics.getFxRates() != null) {
+            writeBytes(buffer, PROTOBUF_FX_RATES, metrics.getFxRates().getBytes(StandardCharsets.UTF_8));
+        }
+        if (metrics.getDataQuality() != null) {
+            writeBytes(buffer, PROTOBUF_DATA_QUALITY, protobuf(metrics.getDataQuality()));
+        }
+    }
+
+    /**
+     * Encode the data quality summary as a DataQuality message. It is only there when something is
+     * wrong with the ledger, so it is written into a buffer of its own to know its length.
+     */
+    private static byte[] protobuf(final DataQuality dataQuality)
+    {
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        if (dataQuality.getValidRows() != 0) {
+            writeTag(message, PROTOBUF_VALID_ROWS, WIRE_TYPE_VARINT);
+            writeVarint(message, dataQuality.getValidRows());
+        }
+        if (dataQuality.getQuarantinedRows() != 0) {
+            writeTag(message, PROTOBUF_QUARANTINED_ROWS, WIRE_TYPE_VARINT);
+            writeVarint(message, dataQuality.getQuarantinedRows());
+        }
+        if (dataQuality.getQuarantined() != null) {
+            for (final Map.Entry<String, Long> reason : dataQuality.getQuarantined().entrySet()) {
+                final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+                writeBytes(entry, PROTOBUF_MAP_KEY, reason.getKey().getBytes(StandardCharsets.UTF_8));
+                writeTag(entry, PROTOBUF_MAP_VALUE, WIRE_TYPE_VARINT);
+                writeVarint(entry, reason.getValue());
+                writeBytes(message, PROTOBUF_QUARANTINED, entry.toByteArray());
+            }
+        }
+        if (dataQuality.getUndefinedMetrics() != null) {
+            for (final String fieldName : dataQuality.getUndefinedMetrics()) {
+                writeBytes(message, PROTOBUF_UNDEFINED_METRICS, fieldName.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return message.toByteArray();
+    }
+
+    private static BigDecimal value(final Metrics metrics, final Metric field)
+    {
+        return metrics.getValues() == null ? null : metrics.getValues().get(field);
+    }
+
+    private static void writeBytes(final ByteArrayOutputStream buffer, final int fieldNumber, final byte[] bytes)
+    {
+        writeTag(buffer, fieldNumber, WIRE_TYPE_LENGTH_DELIMITED);
+        writeVarint(buffer, bytes.length);
+        buffer.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeTag(final ByteArrayOutputStream buffer, final int fieldNumber, final int wireType)
+    {
+        writeVarint(buffer, fieldNumber << 3 | wireType);
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream buffer, final long value)
+    {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.write((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buffer.write((int) remaining);
+    }
+
+    private static int varintSize(final long value)
+    {
+        return value == 0 ? 1 : (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7;
+    }
+
+    /**
+     * ZigZag encoding of the signed sint64 and sint32 types, keeping small negative values short.
+     */
+    private static long zigZag(final long value)
+    {
+        return value << 1 ^ value >> (Long.SIZE - 1);
+    }
+}
@@ -0,0 +1,91 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Currency and percent formatting of metrics based on the locale defined in configuration. The
+ * number formats are created once per thread, since {@code NumberFormat} is not thread safe.
+ */
+public class MetricsFormatter
+{
+    private final Locale locale;
+
+    private final int currencyFractionDigits;
+
+    private final ThreadLocal<NumberFormat> currencyFormatter;
+
+    private final ThreadLocal<NumberFormat> percentFormatter;
+
+    /**
+     * Currency formats of reporting currencies other than the one of the locale, per currency code.
+     */
+    private final ConcurrentMap<String, ThreadLocal<NumberFormat>> reportingCurrencyFormatters = new ConcurrentHashMap<>();
+
+    public MetricsFormatter(final AccountingMetricsProperties properties)
+    {
+        locale = new Locale(properties.getLocale().getLanguage(), properties.getLocale().getCountry());
+        currencyFractionDigits = properties.getCurrencyFormatter().getMaximumFractionDigits();
+        final int percentFractionDigits = properties.getPercentFormatter().getMaximumFractionDigits();
+
+        currencyFormatter = ThreadLocal.withInitial(() -> {
+            final NumberFormat formatter = NumberFormat.getCurrencyInstance(locale);
+            formatter.setMaximumFractionDigits(currencyFractionDigits);
+            return formatter;
+        });
+        percentFormatter = ThreadLocal.withInitial(() -> {
+            final NumberFormat formatter = NumberFormat.getPercentInstance(locale);
+            formatter.setMaximumFractionDigits(percentFractionDigits);
+            return formatter;
+        });
+    }
+
+    /**
+     * Format a currency value with max fraction digits defined in configuration.
+     *
+     * @param value to format.
+     * @return formatted currency value.
+     */
+    public String formatCurrency(final BigDecimal value)
+    {
+        return currencyFormatter.get().format(value);
+    }
+
+    /**
+     * Format a value of a reporting currency with max fraction digits defined in configuration. The
+     * value is formatted after the locale, only its currency symbol is the one of the currency.
+     *
+     * @param value to format.
+     * @param currency ISO 4217 code of the reporting currency, the currency of the locale when null.
+     * @return formatted currency value.
+     */
+    public String formatCurrency(final BigDecimal value, final String currency)
+    {
+        if (currency == null) {
+            return formatCurrency(value);
+        }
+        return reportingCurrencyFormatters.computeIfAbsent(currency, code -> ThreadLocal.withInitial(() -> {
+            final NumberFormat formatter = NumberFormat.getCurrencyInstance(locale);
+            formatter.setCurrency(Currency.getInstance(code));
+            formatter.setMaximumFractionDigits(currencyFractionDigits);
+            return formatter;
+        })).get().format(value);
+    }
+
+    /**
+     * Format a ratio as percentage with max fraction digits defined in configuration.
+     *
+     * @param value to format.
+     * @return formatted percent value.
+     */
+    public String formatPercent(final BigDecimal value)
+    {
+        return percentFormatter.get().format(value);
+    }
+}
@@ -0,0 +1,315 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.EncodedMetrics;
+import nz.co.westpac.accounting.models.FxRateTable;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.MetricsEncoding;
+import nz.co.westpac.accounting.models.RenderedMetrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.MetricsResponseInterface;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of serialized metrics responses. Every response is rendered once per ledger version and
+ * kept on its snapshot, so repeated requests neither calculate nor serialize the metrics again.
+ * This holds for the default ledger as well as for the ledgers of connected businesses.
+ */
+@Component
+public class MetricsResponseCache implements MetricsResponseInterface
+{
+    /**
+     * Key of the response holding all metrics information.
+     */
+    private static final String ALL_METRICS = "*";
+
+    /**
+     * Prefix of the keys of responses holding a single metric, which keeps them apart from the keys
+     * of responses holding selected metrics.
+     */
+    private static final String SPECIFIC_METRIC = "field:";
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LedgerSnapshotCache ledgerSnapshotCache;
+
+    @Autowired
+    private TenantLedgerStore tenantLedgerStore;
+
+    @Autowired
+    private AccountingMetricsService accountingMetricsService;
+
+    @Autowired
+    private LedgerTelemetry telemetry;
+
+    @Autowired
+    private FxRateCache fxRateCache;
+
+    @Autowired
+    private MetricsEncoder metricsEncoder;
+
+    /**
+     * Get all metrics information rendered from the current ledger.
+     *
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case problem in reading external file, or file structure
+     *         is not correct, or mappig is corrupt.
+     */
+    @Override
+    public RenderedMetrics getMetricsInformation()
+    {
+        return getMetricsInformation(ledgerSnapshotCache.getSnapshot());
+    }
+
+    /**
+     * Get fieldName specific metrics information rendered from the current ledger.
+     *
+     * @param fieldName requested metrics information.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed, or problem in reading
+     *         external file, or file structure is not correct, or mappig is corrupt.
+     */
+    @Override
+    public RenderedMetrics getSpecificMetricsInformation(final String fieldName)
+    {
+        return getSpecificMetricsInformation(ledgerSnapshotCache.getSnapshot(), fieldName);
+    }
+
+    /**
+     * Get the metrics information asked for in fields rendered from the current ledger.
+     *
+     * @param fields comma separated metrics requested.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed, or problem in reading
+     *         external file, or file structure is not correct, or mappig is corrupt.
+     */
+    @Override
+    public RenderedMetrics getSelectedMetricsInformation(final String fields)
+    {
+        return getSelectedMetricsInformation(ledgerSnapshotCache.getSnapshot(), fields);
+    }
+
+    /**
+     * Get the metrics information asked for in fields rendered from the current ledger in a
+     * reporting currency.
+     *
+     * @param fields comma separated metrics requested, all when null.
+     * @param currency ISO 4217 code of the reporting currency.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field or currency is passed, or problem in
+     *         reading external file or FX rates file, or file structure is not correct, or mappig is
+     *         corrupt.
+     */
+    @Override
+    public RenderedMetrics getCurrencyMetricsInformation(final String fields, final String currency)
+    {
+        return getCurrencyMetricsInformation(ledgerSnapshotCache.getSnapshot(), fields, currency);
+    }
+
+    /**
+     * Get all metrics information rendered from the ledger of a connected business.
+     *
+     * @param connectionId of the connected business.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case the business is unknown, or problem in reading its
+     *         ledger file, or file structure is not correct, or mappig is corrupt.
+     */
+    @Override
+    public RenderedMetrics getConnectionMetricsInformation(final String connectionId)
+    {
+        return getMetricsInformation(tenantLedgerStore.getSnapshot(connectionId));
+    }
+
+    /**
+     * Get fieldName specific metrics information rendered from the ledger of a connected business.
+     *
+     * @param connectionId of the connected business.
+     * @param fieldName requested metrics information.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed, or the business is unknown,
+     *         or problem in reading its ledger file, or file structure is not correct, or mappig is
+     *         corrupt.
+     */
+    @Override
+    public RenderedMetrics getConnectionSpecificMetricsInformation(final String connectionId, final String fieldName)
+    {
+        return getSpecificMetricsInformation(tenantLedgerStore.getSnapshot(connectionId), fieldName);
+    }
+
+    /**
+     * Get all metrics information rendered from a ledger snapshot.
+     *
+     * @param snapshot of the ledger.
+     * @return rendered metrics response.
+     */
+    @Override
+    public RenderedMetrics getMetricsInformation(final LedgerSnapshot snapshot)
+    {
+        return rendered(snapshot, ALL_METRICS, () -> accountingMetricsService.calculateMetrics(snapshot.getAggregates()));
+    }
+
+    /**
+     * Get fieldName specific metrics information rendered from a ledger snapshot.
+     *
+     * @param snapshot of the ledger.
+     * @param fieldName requested metrics information.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed.
+     */
+    @Override
+    public RenderedMetrics getSpecificMetricsInformation(final LedgerSnapshot snapshot, final String fieldName)
+    {
+        final Metric metric = accountingMetricsService.parseField(fieldName);
+        return rendered(snapshot, SPECIFIC_METRIC + metric.getFieldName(),
+            () -> accountingMetricsService.calculateMetrics(snapshot.getAggregates(), EnumSet.of(metric)));
+    }
+
+    /**
+     * Get the metrics information asked for in fields rendered from a ledger snapshot. Responses
+     * are cached per set of fields, whatever order the fields are requested in.
+     *
+     * @param snapshot of the ledger.
+     * @param fields comma separated metrics requested.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field is passed.
+     */
+    @Override
+    public RenderedMetrics getSelectedMetricsInformation(final LedgerSnapshot snapshot, final String fields)
+    {
+        final Set<Metric> metrics = accountingMetricsService.parseFields(fields);
+        final StringJoiner key = new StringJoiner(",");
+        for (final Metric metric : metrics) {
+            key.add(metric.getFieldName());
+        }
+        return rendered(snapshot, key.toString(), () -> accountingMetricsService.calculateMetrics(snapshot.getAggregates(), metrics));
+    }
+
+    /**
+     * Get the metrics information asked for in fields rendered from a ledger snapshot in a
+     * reporting currency. Responses are cached per set of fields, currency and version of the FX
+     * rate table, so a new rate table is picked up without reloading the ledger.
+     *
+     * @param snapshot of the ledger.
+     * @param fields comma separated metrics requested, all when null.
+     * @param currency ISO 4217 code of the reporting currency.
+     * @return rendered metrics response.
+     * @throws ResponseStatusException in case invalid field or currency is passed, or problem in
+     *         reading the FX rates file.
+     */
+    @Override
+    public RenderedMetrics getCurrencyMetricsInformation(final LedgerSnapshot snapshot, final String fields, final String currency)
+    {
+        final Set<Metric> metrics = fields == null ? Metric.fields() : accountingMetricsService.parseFields(fields);
+        final String reportingCurrency = currency.trim().toUpperCase(Locale.ROOT);
+        final FxRateTable rates = fxRateCache.getTable();
+        final StringJoiner key = new StringJoiner(",", "", ";" + reportingCurrency + "@" + rates.getVersion());
+        for (final Metric metric : metrics) {
+            key.add(metric.getFieldName());
+        }
+        return rendered(snapshot, key.toString(), () -> accountingMetricsService.calculateMetrics(snapshot, metrics, reportingCurrency, rates));
+    }
+
+    /**
+     * Get a rendered metrics response in a binary encoding. Like the JSON body, it is encoded once
+     * per ledger version, the first time a client asks for that encoding.
+     *
+     * @param rendered metrics response.
+     * @param encoding binary encoding.
+     * @return encoded metrics response.
+     * @throws ResponseStatusException in case the metrics could not be encoded.
+     */
+    @Override
+    public EncodedMetrics getEncodedMetrics(final RenderedMetrics rendered, final MetricsEncoding encoding)
+    {
+        final EncodedMetrics cached = rendered.getEncodings().get(encoding);
+        telemetry.recordCacheAccess(LedgerTelemetry.CACHE_RESPONSE, cached != null);
+        if (cached != null) {
+            return cached;
+        }
+        return rendered.getEncodings().computeIfAbsent(encoding, missing -> encode(rendered.getMetrics(), encoding));
+    }
+
+    /**
+     * Get a response rendered for the snapshot already, or calculate and render it now.
+     */
+    private RenderedMetrics rendered(final LedgerSnapshot snapshot, final String key, final Supplier<Metrics> metrics)
+    {
+        final RenderedMetrics cached = snapshot.getRenderedMetrics().get(key);
+        telemetry.recordCacheAccess(LedgerTelemetry.CACHE_RESPONSE, cached != null);
+        if (cached != null) {
+            return cached;
+        }
+        return snapshot.getRenderedMetrics().computeIfAbsent(key, missing -> render(metrics.get()));
+    }
+
+    /**
+     * Serialize metrics, optionally gzip them, and tag both encodings with a strong entity tag
+     * derived from their content.
+     */
+    private RenderedMetrics render(final Metrics metrics)
+    {
+        final Timer.Sample sample = telemetry.start();
+        try {
+            final byte[] json = objectMapper.writeValueAsBytes(metrics);
+            final String digest = DigestUtils.md5DigestAsHex(json);
+            if (!properties.getResponse().getGzip()) {
+                return new RenderedMetrics(metrics, json, "\"" + digest + "\"", null, null);
+            }
+            return new RenderedMetrics(metrics, json, "\"" + digest + "\"", gzip(json), "\"" + digest + "-gzip\"");
+        } catch (JsonProcessingException processingException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed rendering metrics information.", processingException);
+        } finally {
+            telemetry.stop(sample, LedgerTelemetry.STAGE_RENDER);
+        }
+    }
+
+    /**
+     * Encode metrics in a binary encoding, tagged with a strong entity tag derived from its content.
+     */
+    private EncodedMetrics encode(final Metrics metrics, final MetricsEncoding encoding)
+    {
+        final Timer.Sample sample = telemetry.start();
+        try {
+            final byte[] body = metricsEncoder.encode(metrics, encoding);
+            return new EncodedMetrics(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        } finally {
+            telemetry.stop(sample, LedgerTelemetry.STAGE_RENDER);
+        }
+    }
+
+    private static byte[] gzip(final byte[] content)
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        } catch (IOException ioException) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed rendering metrics information.", ioException);
+        }
+        return compressed.toByteArray();
+    }
+}
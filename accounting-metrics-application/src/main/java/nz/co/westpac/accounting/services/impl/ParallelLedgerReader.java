@@ -0,0 +1,469 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads large ledger files on several cores. The file is memory-mapped and split into segments,
+ * which are scanned in parallel for the separators between the elements of the data array. The
+ * data array is then parsed and aggregated in chunks between those separators, one worker per
+ * chunk, and the partial sums of all chunks are merged. Sums are exact, so the result is the same as
+ * reading the file sequentially with {@link StreamingLedgerReader}.
+ *
+ * <p>
+ * Scanning needs to know whether a segment starts inside a string, and at which nesting depth.
+ * Outside of strings JSON has no backslashes, so whether a quote is escaped only depends on the
+ * backslashes right before it. Every segment is therefore scanned once for both cases, tracking
+ * its nesting depth relative to its start. Going through the segments in order then tells the
+ * actual string state and depth at the start of each. Files too small to gain from splitting, and
+ * files whose structure the scan does not recognise, are read sequentially, so errors are the same
+ * as in streaming mode.
+ */
+public class ParallelLedgerReader
+{
+    private static final byte[] DATA_KEY = {'d', 'a', 't', 'a'};
+
+    /**
+     * Nesting depth inside the data array: the book keeping object and the array itself.
+     */
+    private static final int DATA_DEPTH = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Characters a segment scan needs to look at, all others are skipped right away.
+     */
+    private static final boolean[] STRUCTURAL = new boolean[256];
+
+    static {
+        for (final char character : "\"\\{}[],".toCharArray()) {
+            STRUCTURAL[character] = true;
+        }
+    }
+
+    private final StreamingLedgerReader streamingLedgerReader;
+
+    private final ExecutorService executor;
+
+    private final int segments;
+
+    private final long minimumSegmentSize;
+
+    /**
+     * @param streamingLedgerReader reader of the chunks, and of files read sequentially.
+     * @param executor running the scans and chunks.
+     * @param segments number of segments and chunks a large file is split into.
+     * @param minimumSegmentSize in bytes, smaller files are split into fewer segments.
+     */
+    public ParallelLedgerReader(final StreamingLedgerReader streamingLedgerReader, final ExecutorService executor, final int segments,
+            final long minimumSegmentSize)
+    {
+        this.streamingLedgerReader = streamingLedgerReader;
+        this.executor = executor;
+        this.segments = segments;
+        this.minimumSegmentSize = minimumSegmentSize;
+    }
+
+    /**
+     * Read the ledger file and add all its accounting records to the partial sums.
+     *
+     * @param file to read.
+     * @param aggregates partial sums to add the accounting records to.
+     * @return book keeping header information without data.
+     * @throws IOException in case problem in reading the file, or file structure is not correct.
+     */
+    public BookKeeping read(final File file, final LedgerAggregates aggregates) throws IOException
+    {
+        final MappedContent content;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            content = new MappedContent(channel);
+        }
+        final long dataStart = findData(content);
+        final int count = dataStart < 0 ? 0 : (int) Math.min(segments, (content.length - dataStart) / minimumSegmentSize);
+        final long[] chunks = count < 2 ? null : split(content, dataStart, count);
+        if (chunks == null) {
+            return streamingLedgerReader.read(file, aggregates::add);
+        }
+
+        final List<Callable<LedgerAggregates>> parts = new ArrayList<>(chunks.length - 1);
+        for (int chunk = 0; chunk + 1 < chunks.length; chunk++) {
+            final long start = chunks[chunk] + 1;
+            final long end = chunks[chunk + 1];
+            parts.add(() -> {
+                final LedgerAggregates part = new LedgerAggregates();
+                streamingLedgerReader.readData(array(content.stream(start, end)), part::add);
+                return part;
+            });
+        }
+        final List<Future<LedgerAggregates>> running = submit(parts);
+
+        // the book keeping header is the file with an empty data array.
+        final long dataEnd = chunks[chunks.length - 1];
+        final BookKeeping book = streamingLedgerReader.read(
+            new SequenceInputStream(content.stream(0, dataStart + 1), content.stream(dataEnd, content.length)), account -> {
+            });
+        for (final LedgerAggregates part : join(running)) {
+            aggregates.add(part);
+        }
+        return book;
+    }
+
+    /**
+     * Split the data array at separators between its elements, at most one in each segment.
+     *
+     * @return positions of the opening bracket of the data array, the separators and the closing
+     *         bracket, or null when the structure of the file is not recognised.
+     */
+    private long[] split(final MappedContent content, final long dataStart, final int count) throws IOException
+    {
+        final long[] bounds = new long[count + 1];
+        for (int segment = 0; segment <= count; segment++) {
+            bounds[segment] = dataStart + 1 + (content.length - dataStart - 1) * segment / count;
+        }
+
+        final List<Callable<SegmentScan>> segmentScans = new ArrayList<>(count);
+        for (int segment = 0; segment < count; segment++) {
+            final long start = bounds[segment];
+            final long end = bounds[segment + 1];
+            segmentScans.add(() -> scan(content, start, end));
+        }
+        final List<SegmentScan> scans = join(submit(segmentScans));
+
+        final List<Long> separators = new ArrayList<>();
+        separators.add(dataStart);
+        boolean inString = false;
+        int depth = DATA_DEPTH;
+        for (final SegmentScan scan : scans) {
+            final Structure structure = inString ? scan.insideString : scan.outsideString;
+            final long separator = structure.separator(DATA_DEPTH - depth);
+            final long dataEnd = structure.dataEnd(DATA_DEPTH - depth);
+            if (separator >= 0 && (dataEnd < 0 || separator < dataEnd)) {
+                separators.add(separator);
+            }
+            if (dataEnd >= 0) {
+                separators.add(dataEnd);
+                return separators.stream().mapToLong(Long::longValue).toArray();
+            }
+            depth += structure.depth;
+            inString ^= scan.oddQuotes;
+        }
+        return null;
+    }
+
+    /**
+     * Find the opening bracket of the data array of the book keeping object, reading from the start
+     * of the file.
+     *
+     * @return position of the bracket, or -1 when there is none.
+     */
+    private static long findData(final MappedContent content)
+    {
+        int depth = 0;
+        boolean inString = false;
+        long keyStart = -1;
+        long keyEnd = -1;
+        for (long position = 0; position < content.length; position++) {
+            final byte character = content.get(position);
+            if (inString) {
+                if (character == '\\') {
+                    position++;
+                } else if (character == '"') {
+                    inString = false;
+                    if (depth == 1) {
+                        keyEnd = position;
+                    }
+                }
+            } else if (character == '"') {
+                inString = true;
+                if (depth == 1) {
+                    keyStart = position + 1;
+                }
+            } else if (character == '{' || character == '[') {
+                if (character == '[' && depth == 1 && isDataKey(content, keyStart, keyEnd)) {
+                    return position;
+                }
+                depth++;
+            } else if (character == '}' || character == ']') {
+                depth--;
+                if (depth <= 0) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDataKey(final MappedContent content, final long keyStart, final long keyEnd)
+    {
+        if (keyStart < 0 || keyEnd - keyStart != DATA_KEY.length) {
+            return false;
+        }
+        for (int index = 0; index < DATA_KEY.length; index++) {
+            if (content.get(keyStart + index) != DATA_KEY[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the character at the position is escaped, by an odd number of backslashes before it.
+     */
+    private static boolean isEscaped(final MappedContent content, final long position)
+    {
+        long backslash = position - 1;
+        while (backslash >= 0 && content.get(backslash) == '\\') {
+            backslash--;
+        }
+        return ((position - 1 - backslash) & 1) != 0;
+    }
+
+    /**
+     * Scan a segment for nesting depth changes and separators outside of strings, both for the
+     * segment starting outside and inside of a string. Quotes toggle strings the same way in both
+     * cases, so a single pass tells both apart.
+     */
+    private static SegmentScan scan(final MappedContent content, final long start, final long end)
+    {
+        final SegmentScan scan = new SegmentScan();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        boolean escaped = isEscaped(content, start);
+        boolean quoted = false;
+        for (long position = start; position < end;) {
+            final int size = content.read(position, buffer, (int) Math.min(BUFFER_SIZE, end - position));
+            for (int index = 0; index < size; index++) {
+                final byte character = buffer[index];
+                if (escaped || !STRUCTURAL[character & 0xFF]) {
+                    escaped = false;
+                } else if (character == '\\') {
+                    escaped = true;
+                } else if (character == '"') {
+                    quoted = !quoted;
+                } else {
+                    (quoted ? scan.insideString : scan.outsideString).add(character, position + index);
+                }
+            }
+            position += size;
+        }
+        scan.oddQuotes = quoted;
+        return scan;
+    }
+
+    private <T> List<Future<T>> submit(final List<Callable<T>> tasks)
+    {
+        final List<Future<T>> running = new ArrayList<>(tasks.size());
+        for (final Callable<T> task : tasks) {
+            running.add(executor.submit(task));
+        }
+        return running;
+    }
+
+    /**
+     * Wait for all tasks. When one of them fails, the others are cancelled and its failure is
+     * rethrown.
+     */
+    private static <T> List<T> join(final List<Future<T>> running) throws IOException
+    {
+        final List<T> results = new ArrayList<>(running.size());
+        try {
+            for (final Future<T> task : running) {
+                results.add(task.get());
+            }
+            return results;
+        } catch (ExecutionException failed) {
+            running.forEach(task -> task.cancel(true));
+            if (failed.getCause() instanceof IOException) {
+                throw (IOException) failed.getCause();
+            } else if (failed.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failed.getCause()).getCause();
+            } else if (failed.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) failed.getCause();
+            }
+            throw new IOException("Failed reading ledger chunk.", failed.getCause());
+        } catch (InterruptedException interrupted) {
+            running.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading ledger.", interrupted);
+        }
+    }
+
+    private static InputStream array(final InputStream elements)
+    {
+        return new SequenceInputStream(Collections.enumeration(
+            List.of(new ByteArrayInputStream(new byte[] {'['}), elements, new ByteArrayInputStream(new byte[] {']'}))));
+    }
+
+    /**
+     * Scans of a segment for it starting outside and inside of a string, and whether its number of
+     * unescaped quotes is odd, so the next segment starts in the other string state.
+     */
+    private static class SegmentScan
+    {
+        private final Structure outsideString = new Structure();
+
+        private final Structure insideString = new Structure();
+
+        private boolean oddQuotes;
+    }
+
+    /**
+     * Nesting depth changes and separators of a segment, at depths relative to its start. Only the
+     * first separator and the first closing bracket leaving each depth are kept, which is all
+     * splitting needs: the data array spans many segments and holds elements of small depth.
+     */
+    private static class Structure
+    {
+        /**
+         * Depths from -8 to +7 relative to the start of the segment are tracked; deeper nesting
+         * does not matter for the data array.
+         */
+        private static final int DEPTHS = 16;
+
+        private final long[] separators = new long[DEPTHS];
+
+        private final long[] closings = new long[DEPTHS];
+
+        private int depth;
+
+        Structure()
+        {
+            Arrays.fill(separators, -1);
+            Arrays.fill(closings, -1);
+        }
+
+        void add(final byte character, final long position)
+        {
+            if (character == '{' || character == '[') {
+                depth++;
+            } else if (character == '}' || character == ']') {
+                depth--;
+                first(closings, position);
+            } else {
+                first(separators, position);
+            }
+        }
+
+        private void first(final long[] positions, final long position)
+        {
+            final int index = depth + DEPTHS / 2;
+            if (index >= 0 && index < DEPTHS && positions[index] < 0) {
+                positions[index] = position;
+            }
+        }
+
+        /**
+         * First separator at the relative depth of the data array elements.
+         */
+        long separator(final int dataDepth)
+        {
+            final int index = dataDepth + DEPTHS / 2;
+            return index >= 0 && index < DEPTHS ? separators[index] : -1;
+        }
+
+        /**
+         * First bracket closing the data array, found when the depth drops below the one of its
+         * elements.
+         */
+        long dataEnd(final int dataDepth)
+        {
+            final int index = dataDepth - 1 + DEPTHS / 2;
+            return index >= 0 && index < DEPTHS ? closings[index] : -1;
+        }
+    }
+
+    /**
+     * The ledger file mapped into memory, in regions of at most 1 GiB.
+     */
+    private static class MappedContent
+    {
+        private static final int REGION_BITS = 30;
+
+        private static final long REGION_MASK = (1L << REGION_BITS) - 1;
+
+        private final MappedByteBuffer[] regions;
+
+        private final long length;
+
+        MappedContent(final FileChannel channel) throws IOException
+        {
+            length = channel.size();
+            regions = new MappedByteBuffer[(int) ((length + REGION_MASK) >>> REGION_BITS)];
+            for (int region = 0; region < regions.length; region++) {
+                final long start = (long) region << REGION_BITS;
+                regions[region] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_MASK + 1, length - start));
+            }
+        }
+
+        byte get(final long position)
+        {
+            return regions[(int) (position >>> REGION_BITS)].get((int) (position & REGION_MASK));
+        }
+
+        /**
+         * Copy bytes from the position on, up to the end of its region.
+         *
+         * @return number of bytes copied.
+         */
+        int read(final long position, final byte[] buffer, final int size)
+        {
+            return read(position, buffer, 0, size);
+        }
+
+        int read(final long position, final byte[] buffer, final int offset, final int size)
+        {
+            final int index = (int) (position & REGION_MASK);
+            final ByteBuffer region = regions[(int) (position >>> REGION_BITS)].duplicate();
+            final int count = Math.min(size, region.capacity() - index);
+            region.position(index);
+            region.get(buffer, offset, count);
+            return count;
+        }
+
+        InputStream stream(final long start, final long end)
+        {
+            if (start >= end) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            return new InputStream()
+            {
+                private long position = start;
+
+                @Override
+                public int read()
+                {
+                    return position < end ? get(position++) & 0xFF : -1;
+                }
+
+                @Override
+                public int read(final byte[] buffer, final int offset, final int size)
+                {
+                    if (position >= end) {
+                        return -1;
+                    }
+                    final int count = MappedContent.this.read(position, buffer, offset, (int) Math.min(size, end - position));
+                    position += count;
+                    return count;
+                }
+            };
+        }
+    }
+}
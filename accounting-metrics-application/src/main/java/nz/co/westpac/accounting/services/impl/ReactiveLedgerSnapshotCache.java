@@ -0,0 +1,169 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Non-blocking access to the cached ledger snapshot for the reactive endpoints. While the ledger
+ * file is watched, the cached snapshot is answered right away, since the watcher reloads it once
+ * the file changes. Otherwise checking whether the file changed is blocking file I/O, so it runs on
+ * a bounded elastic thread instead of the event loop. A changed ledger file is read with
+ * asynchronous file I/O and hashed while its buffers arrive; the buffers are then joined and
+ * decoded by the Jackson decoder at once, so files beyond the maximum in memory size defined in
+ * configuration are rejected. When the content did not change, the cached snapshot is kept.
+ * Decoding always builds the book keeping tree, whatever the ingestion mode. Requests arriving
+ * while the changed file is read share that read instead of reading the file again.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveLedgerSnapshotCache
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LedgerSnapshotCache ledgerSnapshotCache;
+
+    @Autowired
+    private LedgerLoader ledgerLoader;
+
+    @Autowired
+    private LedgerTelemetry telemetry;
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private Jackson2JsonDecoder decoder;
+
+    private SingleFlight<String, LedgerSnapshot> loads;
+
+    /**
+     * Set up the decoder limited to the maximum in memory size, and coalescing of concurrent reads
+     * of the same ledger file state.
+     */
+    @PostConstruct
+    public void initialize()
+    {
+        decoder = new Jackson2JsonDecoder(objectMapper);
+        decoder.setMaxInMemorySize(properties.getLedger().getMaximumInMemorySize());
+        loads = new SingleFlight<>(properties.getLedger().getLoadTimeout(), Counter.builder("accounting.metrics.ledger.loads.coalesced")
+            .description("Requests which waited for a ledger load already in flight instead of loading the ledger again")
+            .tag("ledger", "reactive")
+            .register(telemetry.getMeterRegistry()));
+    }
+
+    /**
+     * Get the snapshot of the current ledger file, reading it without blocking when the file has
+     * changed since the last load.
+     *
+     * @return current ledger snapshot, or an error with ResponseStatusException in case problem in
+     *         reading external file, or file structure is not correct, or mappig is corrupt, or the
+     *         file exceeds the maximum in memory size.
+     */
+    public Mono<LedgerSnapshot> getSnapshot()
+    {
+        final LedgerSnapshot cached = ledgerSnapshotCache.getCachedSnapshot();
+        if (cached != null && ledgerSnapshotCache.isWatching()) {
+            telemetry.recordCacheAccess(LedgerTelemetry.CACHE_SNAPSHOT, true);
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(ledgerSnapshotCache::getCurrentSnapshot)
+            .switchIfEmpty(Mono.defer(() -> {
+                final File file = ledgerSnapshotCache.getLedgerFile();
+                return Mono.fromFuture(loads.submit(ledgerLoader.fileState(file),
+                    () -> load(file, ledgerSnapshotCache.getCachedSnapshot()).map(ledgerSnapshotCache::offer).toFuture()));
+            }))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<LedgerSnapshot> load(final File file, final LedgerSnapshot cached)
+    {
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        if (length > properties.getLedger().getMaximumInMemorySize()) {
+            return Mono.error(tooLarge(null));
+        }
+        final MessageDigest digest = md5();
+        final Timer.Sample sample = telemetry.start();
+
+        final Flux<DataBuffer> content = DataBufferUtils.read(file.toPath(), bufferFactory, BUFFER_SIZE)
+            .doOnNext(buffer -> digest.update(buffer.asByteBuffer()));
+        return decoder.decodeToMono(content, ResolvableType.forClass(BookKeeping.class), null, null)
+            .cast(BookKeeping.class)
+            .map(book -> {
+                telemetry.stop(sample, LedgerTelemetry.STAGE_PARSE, "reactive");
+                final String contentHash = String.format("%032x", new BigInteger(1, digest.digest()));
+                if (cached != null && cached.getContentHash().equals(contentHash)) {
+                    return cached.withFileState(lastModified, length);
+                }
+                return ledgerLoader.newSnapshot(book, lastModified, length, contentHash);
+            })
+            .onErrorMap(failure -> !(failure instanceof ResponseStatusException), ReactiveLedgerSnapshotCache::toStatusException);
+    }
+
+    /**
+     * Map failures of reading and decoding the ledger file to the errors of the blocking loader.
+     */
+    private static ResponseStatusException toStatusException(final Throwable failure)
+    {
+        final Throwable cause = failure instanceof DecodingException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof DataBufferLimitException) {
+            return tooLarge(cause);
+        } else if (cause instanceof JsonParseException) {
+            return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Data file contains invalid content", cause);
+        } else if (cause instanceof JsonMappingException || failure instanceof DecodingException) {
+            return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "data file JSON structure does not match structure expected", cause);
+        }
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", cause);
+    }
+
+    private static ResponseStatusException tooLarge(final Throwable cause)
+    {
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Data file exceeds the maximum in memory size.", cause);
+    }
+
+    private static MessageDigest md5()
+    {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException noSuchAlgorithm) {
+            throw new IllegalStateException("MD5 is not supported by this JVM.", noSuchAlgorithm);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package nz.co.westpac.accounting.services.impl;
+
+import io.micrometer.core.instrument.Counter;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into a single load in flight. The first caller of a
+ * key runs the load, every caller arriving while it runs waits for that load and shares its result
+ * or its failure, instead of running the same load again. A key only joins a load in flight, the
+ * result is not kept once the load completed.
+ *
+ * <p>
+ * A load in flight has a deadline. When it passes, the load fails for everybody waiting for it
+ * with status 503, and the next caller starts a new load. The caller running the load still gets
+ * its result once it completes.
+ *
+ * @param <K> key of a load, like a version of a ledger file.
+ * @param <V> result of a load.
+ */
+public class SingleFlight<K, V>
+{
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    private final long timeout;
+
+    private final Counter coalesced;
+
+    /**
+     * @param timeout of a load in flight, in milliseconds.
+     * @param coalesced counter of callers which joined a load in flight.
+     */
+    public SingleFlight(final long timeout, final Counter coalesced)
+    {
+        this.timeout = timeout;
+        this.coalesced = coalesced;
+    }
+
+    /**
+     * Run a load on the calling thread, or wait for the load of the same key already in flight.
+     *
+     * @param key of the load.
+     * @param load to run when no load of the key is in flight.
+     * @return result of the load.
+     * @throws ResponseStatusException in case the load failed, or timed out while waiting for it.
+     */
+    public V execute(final K key, final Supplier<V> load)
+    {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> joined = flights.putIfAbsent(key, flight);
+        if (joined != null) {
+            coalesced.increment();
+            return await(joined);
+        }
+        start(key, flight);
+        try {
+            final V value = load.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error failure) {
+            flight.completeExceptionally(failure);
+            throw failure;
+        }
+    }
+
+    /**
+     * Start an asynchronous load, or join the load of the same key already in flight. Cancelling
+     * the returned future only stops waiting for the load, it does not cancel the load.
+     *
+     * @param key of the load.
+     * @param load to start when no load of the key is in flight.
+     * @return future result of the load, failing with ResponseStatusException in case the load
+     *         failed or timed out.
+     */
+    public CompletableFuture<V> submit(final K key, final Supplier<CompletableFuture<V>> load)
+    {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> joined = flights.putIfAbsent(key, flight);
+        if (joined != null) {
+            coalesced.increment();
+            return share(joined);
+        }
+        start(key, flight);
+        try {
+            load.get().whenComplete((value, failure) -> {
+                if (failure == null) {
+                    flight.complete(value);
+                } else {
+                    flight.completeExceptionally(unwrap(failure));
+                }
+            });
+        } catch (RuntimeException | Error failure) {
+            flight.completeExceptionally(failure);
+        }
+        return share(flight);
+    }
+
+    /**
+     * Put the deadline on a load just put in flight, and take it out of flight once it completes.
+     */
+    private void start(final K key, final CompletableFuture<V> flight)
+    {
+        flight.orTimeout(timeout, TimeUnit.MILLISECONDS).whenComplete((value, failure) -> flights.remove(key, flight));
+    }
+
+    private V await(final CompletableFuture<V> flight)
+    {
+        try {
+            return flight.get();
+        } catch (ExecutionException failure) {
+            throw toStatusException(failure.getCause());
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for data file.", interrupted);
+        }
+    }
+
+    /**
+     * A future of the load for one caller, so a caller cancelling it does not cancel the load for
+     * the others.
+     */
+    private CompletableFuture<V> share(final CompletableFuture<V> flight)
+    {
+        return flight.handle((value, failure) -> {
+            if (failure != null) {
+                throw toStatusException(unwrap(failure));
+            }
+            return value;
+        });
+    }
+
+    private static Throwable unwrap(final Throwable failure)
+    {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * Fail like the load failed, so every caller sees the same error.
+     */
+    private static RuntimeException toStatusException(final Throwable failure)
+    {
+        if (failure instanceof TimeoutException) {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Timed out waiting for data file.", failure);
+        } else if (failure instanceof RuntimeException && !(failure instanceof CancellationException)) {
+            return (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", failure);
+    }
+}
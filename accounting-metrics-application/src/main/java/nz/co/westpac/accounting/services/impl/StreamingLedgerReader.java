@@ -0,0 +1,290 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.FixedPointAccounting;
+import nz.co.westpac.accounting.models.QuarantineReason;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.function.Consumer;
+
+/**
+ * Reads a ledger file token by token with Jackson's {@code JsonParser}. Every element of the data
+ * array is handed straight to a consumer, for example the partial sums, and then discarded, so
+ * memory use does not depend on the size of the file. Only the header fields of the book are kept,
+ * its data stays {@code null}. Elements which are not valid accounting records do not fail reading
+ * the file, they are handed to the consumer marked for quarantine.
+ */
+public class StreamingLedgerReader
+{
+    private final JsonFactory jsonFactory;
+
+    private final ObjectMapper objectMapper;
+
+    public StreamingLedgerReader(final ObjectMapper objectMapper)
+    {
+        this.jsonFactory = objectMapper.getFactory();
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Reader without an object mapper, for callers which only need the accounting records and
+     * would rather not pay for setting up a mapper. The dates of the book keeping header are
+     * skipped, they stay {@code null}.
+     *
+     * @param jsonFactory to create parsers with.
+     */
+    public StreamingLedgerReader(final JsonFactory jsonFactory)
+    {
+        this.jsonFactory = jsonFactory;
+        this.objectMapper = null;
+    }
+
+    /**
+     * Read the ledger file and hand all its accounting records to the consumer. The same
+     * {@code Accounting} instance is reused for every record, so consumers must not retain it.
+     *
+     * @param file to read.
+     * @param accounts consumer of the accounting records.
+     * @return book keeping header information without data.
+     * @throws IOException in case problem in reading the file, or file structure is not correct.
+     */
+    public BookKeeping read(final File file, final Consumer<Accounting> accounts) throws IOException
+    {
+        try (JsonParser parser = jsonFactory.createParser(file)) {
+            return read(parser, accounts);
+        }
+    }
+
+    /**
+     * Read the ledger content and hand all its accounting records to the consumer. The same
+     * {@code Accounting} instance is reused for every record, so consumers must not retain it.
+     *
+     * @param content to read.
+     * @param accounts consumer of the accounting records.
+     * @return book keeping header information without data.
+     * @throws IOException in case problem in reading the content, or its structure is not correct.
+     */
+    public BookKeeping read(final InputStream content, final Consumer<Accounting> accounts) throws IOException
+    {
+        try (JsonParser parser = jsonFactory.createParser(content)) {
+            return read(parser, accounts);
+        }
+    }
+
+    /**
+     * Read a JSON array of accounting records, like a part of the data array of a ledger file, and
+     * hand them to the consumer. The same {@code Accounting} instance is reused for every record, so
+     * consumers must not retain it.
+     *
+     * @param content array to read.
+     * @param accounts consumer of the accounting records.
+     * @throws IOException in case problem in reading the content, or its structure is not correct.
+     */
+    public void readData(final InputStream content, final Consumer<Accounting> accounts) throws IOException
+    {
+        try (JsonParser parser = jsonFactory.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw MismatchedInputException.from(parser, BookKeeping.class, "Expected the data array");
+            }
+            readData(parser, accounts);
+        }
+    }
+
+    private BookKeeping read(final JsonParser parser, final Consumer<Accounting> accounts) throws IOException
+    {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw MismatchedInputException.from(parser, BookKeeping.class, "Expected a book keeping object");
+        }
+
+        final BookKeeping book = new BookKeeping();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "object_category":
+                    book.setCategory(parser.getValueAsString());
+                    break;
+                case "connection_id":
+                    book.setConnection_id(parser.getValueAsString());
+                    break;
+                case "user":
+                    book.setUser(parser.getValueAsString());
+                    break;
+                case "object_creation_date":
+                    book.setObject_creation_date(readDate(parser));
+                    break;
+                case "currency":
+                    book.setCurrency(parser.getValueAsString());
+                    break;
+                case "object_origin_type":
+                    book.setObject_origin_type(parser.getValueAsString());
+                    break;
+                case "object_origin_category":
+                    book.setObject_origin_category(parser.getValueAsString());
+                    break;
+                case "object_type":
+                    book.setObject_type(parser.getValueAsString());
+                    break;
+                case "object_class":
+                    book.setObject_class(parser.getValueAsString());
+                    break;
+                case "balance_date":
+                    book.setBalance_date(readDate(parser));
+                    break;
+                case "data":
+                    readData(parser, accounts);
+                    break;
+                default:
+                    break;
+            }
+            parser.skipChildren();
+        }
+        return book;
+    }
+
+    /**
+     * Hand every element of the data array to the consumer. A single {@code FixedPointAccounting} is
+     * reused for all elements, elements which are not objects are handed over as an empty record
+     * marked for quarantine.
+     */
+    private void readData(final JsonParser parser, final Consumer<Accounting> accounts) throws IOException
+    {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return;
+        }
+
+        final FixedPointAccounting account = new FixedPointAccounting();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            clear(account);
+            if (token == JsonToken.START_OBJECT) {
+                readAccounting(parser, account);
+            } else {
+                parser.skipChildren();
+                account.setQuarantine(QuarantineReason.MALFORMED_RECORD);
+            }
+            accounts.accept(account);
+        }
+    }
+
+    private static void clear(final FixedPointAccounting account)
+    {
+        account.setAccount_category(null);
+        account.setAccount_code(null);
+        account.setAccount_currency(null);
+        account.setAccount_identifier(null);
+        account.setAccount_status(null);
+        account.setValue_type(null);
+        account.setAccount_name(null);
+        account.setAccount_type(null);
+        account.setAccount_type_bank(null);
+        account.setSystem_account(null);
+        account.setTotal_value(null);
+        account.setQuarantine(null);
+    }
+
+    private void readAccounting(final JsonParser parser, final FixedPointAccounting account) throws IOException
+    {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "account_category":
+                    account.setAccount_category(parser.getValueAsString());
+                    break;
+                case "account_code":
+                    account.setAccount_code(parser.getValueAsString());
+                    break;
+                case "account_currency":
+                    account.setAccount_currency(parser.getValueAsString());
+                    break;
+                case "account_identifier":
+                    account.setAccount_identifier(parser.getValueAsString());
+                    break;
+                case "account_status":
+                    account.setAccount_status(parser.getValueAsString());
+                    break;
+                case "value_type":
+                    account.setValue_type(parser.getValueAsString());
+                    break;
+                case "account_name":
+                    account.setAccount_name(parser.getValueAsString());
+                    break;
+                case "account_type":
+                    account.setAccount_type(parser.getValueAsString());
+                    break;
+                case "account_type_bank":
+                    account.setAccount_type_bank(parser.getValueAsString());
+                    break;
+                case "system_account":
+                    account.setSystem_account(parser.getValueAsString());
+                    break;
+                case "total_value":
+                    readTotalValue(parser, account);
+                    break;
+                default:
+                    break;
+            }
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Read total_value straight from the number text into a fixed point value, falling back to a
+     * {@code BigDecimal} for strings and numbers which do not fit a long. A value which is not a
+     * number marks the record for quarantine.
+     */
+    private void readTotalValue(final JsonParser parser, final FixedPointAccounting account) throws IOException
+    {
+        final JsonToken token = parser.currentToken();
+        if ((token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT)
+                && account.setTotal_value(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())) {
+            return;
+        }
+        try {
+            account.setTotal_value(readDecimal(parser));
+        } catch (NumberFormatException numberFormatException) {
+            account.setQuarantine(QuarantineReason.INVALID_TOTAL_VALUE);
+        }
+    }
+
+    /**
+     * Read a decimal the same way Jackson maps a {@code BigDecimal} field.
+     *
+     * @throws NumberFormatException in case the value is not a number.
+     */
+    private BigDecimal readDecimal(final JsonParser parser) throws IOException
+    {
+        switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue();
+            case VALUE_STRING:
+                final String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                return new BigDecimal(text);
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new NumberFormatException("Expected a number for total_value");
+        }
+    }
+
+    private Date readDate(final JsonParser parser) throws IOException
+    {
+        return objectMapper != null ? objectMapper.readValue(parser, Date.class) : null;
+    }
+}
@@ -0,0 +1,170 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.LedgerStoreStatistics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Store of the ledgers of connected businesses, keyed by connection_id. Ledgers are loaded lazily
+ * on the first request for a business and kept in least recently used order. Once the estimated
+ * size of all cached ledgers exceeds the memory budget defined in configuration, the least
+ * recently used ledgers are evicted. Concurrent requests for a business whose ledger is being loaded
+ * wait for that load instead of loading the same ledger file again.
+ */
+@Component
+public class TenantLedgerStore
+{
+    private static final Pattern CONNECTION_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    @Autowired
+    private LedgerLoader ledgerLoader;
+
+    @Autowired
+    private LedgerTelemetry telemetry;
+
+    private final LinkedHashMap<String, LedgerSnapshot> ledgers = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private long retainedSize;
+
+    private long evictions;
+
+    private SingleFlight<String, LedgerSnapshot> loads;
+
+    /**
+     * Register gauges of the number and estimated size of cached ledgers, and a counter of
+     * evictions. Set up coalescing of concurrent loads of the same ledger file state.
+     */
+    @PostConstruct
+    public void registerGauges()
+    {
+        loads = new SingleFlight<>(properties.getLedger().getLoadTimeout(), Counter.builder("accounting.metrics.ledger.loads.coalesced")
+            .description("Requests which waited for a ledger load already in flight instead of loading the ledger again")
+            .tag("ledger", "connection")
+            .register(telemetry.getMeterRegistry()));
+        Gauge.builder("accounting.metrics.connections.ledgers", this, store -> store.getStatistics().getLedgers())
+            .description("Ledgers of connected businesses held in memory")
+            .register(telemetry.getMeterRegistry());
+        Gauge.builder("accounting.metrics.connections.retained", this, store -> store.getStatistics().getRetainedSize())
+            .description("Estimated memory held by ledgers of connected businesses")
+            .baseUnit("bytes")
+            .register(telemetry.getMeterRegistry());
+        Gauge.builder("accounting.metrics.connections.budget", properties, configured -> configured.getTenants().getMemoryBudget())
+            .description("Memory budget of ledgers of connected businesses")
+            .baseUnit("bytes")
+            .register(telemetry.getMeterRegistry());
+        FunctionCounter.builder("accounting.metrics.connections.evictions", this, store -> store.getStatistics().getEvictions())
+            .description("Ledgers of connected businesses evicted to fit the memory budget")
+            .register(telemetry.getMeterRegistry());
+    }
+
+    /**
+     * Get the snapshot of a connected business ledger, loading it when it is not cached or its file
+     * has changed since the last load.
+     *
+     * @param connectionId of the connected business.
+     * @return current ledger snapshot of the business.
+     * @throws ResponseStatusException in case the business is unknown, or problem in reading its
+     *         ledger file, or file structure is not correct, or mappig is corrupt.
+     */
+    public LedgerSnapshot getSnapshot(final String connectionId)
+    {
+        final File file = ledgerFile(connectionId);
+        final LedgerSnapshot cached;
+        synchronized (this) {
+            cached = ledgers.get(connectionId);
+        }
+        if (ledgerLoader.isCurrent(cached, file)) {
+            hits.incrementAndGet();
+            telemetry.recordCacheAccess(LedgerTelemetry.CACHE_CONNECTION, true);
+            return cached;
+        }
+        misses.incrementAndGet();
+        telemetry.recordCacheAccess(LedgerTelemetry.CACHE_CONNECTION, false);
+
+        return loads.execute(ledgerLoader.fileState(file), () -> {
+            final LedgerSnapshot loaded = ledgerLoader.load(file, cached);
+            synchronized (this) {
+                final LedgerSnapshot replaced = ledgers.put(connectionId, loaded);
+                if (replaced != null) {
+                    retainedSize -= replaced.getRetainedSize();
+                }
+                retainedSize += loaded.getRetainedSize();
+                evict(connectionId);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Get the statistics of the store.
+     *
+     * @return hit, miss and eviction counts together with the size of the store.
+     */
+    public synchronized LedgerStoreStatistics getStatistics()
+    {
+        final LedgerStoreStatistics statistics = new LedgerStoreStatistics();
+        statistics.setHits(hits.get());
+        statistics.setMisses(misses.get());
+        statistics.setEvictions(evictions);
+        statistics.setLedgers(ledgers.size());
+        statistics.setRetainedSize(retainedSize);
+        statistics.setMemoryBudget(properties.getTenants().getMemoryBudget());
+        return statistics;
+    }
+
+    /**
+     * Evict least recently used ledgers until the store fits its memory budget again. The ledger
+     * just loaded is never evicted, even when it exceeds the budget on its own.
+     */
+    private void evict(final String loadedConnectionId)
+    {
+        final Iterator<Map.Entry<String, LedgerSnapshot>> eldest = ledgers.entrySet().iterator();
+        while (retainedSize > properties.getTenants().getMemoryBudget() && eldest.hasNext()) {
+            final Map.Entry<String, LedgerSnapshot> entry = eldest.next();
+            if (!entry.getKey().equals(loadedConnectionId)) {
+                retainedSize -= entry.getValue().getRetainedSize();
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Resolve the ledger file of a connected business.
+     *
+     * @throws ResponseStatusException in case the business is unknown.
+     */
+    private File ledgerFile(final String connectionId)
+    {
+        final File file = new File(properties.getTenants().getDirectory(), connectionId + ".json");
+        if (!CONNECTION_ID.matcher(connectionId).matches() || !file.isFile()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No ledger found for connection " + connectionId + ".");
+        }
+        return file;
+    }
+}
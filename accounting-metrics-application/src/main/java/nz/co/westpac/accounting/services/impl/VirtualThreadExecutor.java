@@ -0,0 +1,148 @@
+package nz.co.westpac.accounting.services.impl;
+
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Virtual threads for request handling and ledger loading, when enabled in configuration. A
+ * virtual thread blocked on reading a ledger file releases its carrier thread, so many requests can
+ * wait for ledger files without holding as many platform threads. Virtual threads need Java 21;
+ * they are looked up at runtime, and on older runtimes everything keeps running on platform
+ * threads.
+ *
+ * <p>
+ * Subtasks are forked and joined by the task that needs their results, which never returns before
+ * its subtasks finished or got cancelled.
+ */
+@Component
+public class VirtualThreadExecutor
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+    @Autowired
+    private AccountingMetricsProperties properties;
+
+    private ExecutorService executor;
+
+    /**
+     * Create the executor starting a virtual thread per task, when enabled in configuration and
+     * supported by the runtime.
+     */
+    @PostConstruct
+    public void initialize()
+    {
+        if (!properties.getThreads().getVirtual()) {
+            return;
+        }
+        executor = newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            LOGGER.warn("Virtual threads are not supported by Java {}, running on platform threads instead.", Runtime.version());
+        }
+    }
+
+    /**
+     * Stop the executor, interrupting tasks still running.
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Create an executor starting a virtual thread per task.
+     *
+     * @return executor, or null when the runtime has no virtual threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException unsupported) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether tasks run on virtual threads.
+     *
+     * @return true when virtual threads are enabled and supported.
+     */
+    public boolean isEnabled()
+    {
+        return executor != null;
+    }
+
+    /**
+     * The executor starting a virtual thread per task.
+     *
+     * @return executor, or null when virtual threads are not enabled or supported.
+     */
+    public ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Fork a subtask on its own virtual thread. Without virtual threads the subtask runs right away
+     * on the calling thread, so a task never waits for a subtask queued behind it on a bounded pool.
+     *
+     * @param subtask to run.
+     * @param <T> result type of the subtask.
+     * @return result of the subtask, to be joined.
+     */
+    public <T> Future<T> fork(final Callable<T> subtask)
+    {
+        if (executor != null) {
+            return executor.submit(subtask);
+        }
+        try {
+            return CompletableFuture.completedFuture(subtask.call());
+        } catch (Exception failure) {
+            return CompletableFuture.failedFuture(failure);
+        }
+    }
+
+    /**
+     * Wait for the result of a forked subtask. Its failure is rethrown as is when it is unchecked.
+     *
+     * @param subtask forked before.
+     * @param <T> result type of the subtask.
+     * @return result of the subtask.
+     * @throws ResponseStatusException in case the subtask failed with a checked exception, or the
+     *         waiting thread got interrupted.
+     */
+    public <T> T join(final Future<T> subtask)
+    {
+        try {
+            return subtask.get();
+        } catch (ExecutionException failed) {
+            if (failed.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) failed.getCause();
+            }
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", failed.getCause());
+        } catch (InterruptedException interrupted) {
+            subtask.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed reading data file.", interrupted);
+        }
+    }
+}
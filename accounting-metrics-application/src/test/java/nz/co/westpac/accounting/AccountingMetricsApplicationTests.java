@@ -4,13 +4,28 @@ import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -19,6 +34,9 @@ public class AccountingMetricsApplicationTests
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     public void testAllMetricsInformation() throws Exception
     {
@@ -76,4 +94,167 @@ public class AccountingMetricsApplicationTests
             .andExpect(status().isNotFound())
             .andExpect(status().reason(containsString("Not a valid metrics information requested.")));
     }
+
+    @Test
+    public void testInvalidFieldNotServedFromCachedResponses() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge")).andExpect(status().isOk());
+        this.mockMvc.perform(get("/challenge").param("fields", "revenue,expenses")).andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/challenge/*")).andDo(print())
+            .andExpect(status().isNotFound())
+            .andExpect(status().reason(containsString("Not a valid metrics information requested.")));
+        this.mockMvc.perform(get("/challenge/revenue,expenses")).andDo(print())
+            .andExpect(status().isNotFound())
+            .andExpect(status().reason(containsString("Not a valid metrics information requested.")));
+    }
+
+    @Test
+    public void testNotModifiedMetricsInformation() throws Exception
+    {
+        final String eTag = this.mockMvc.perform(get("/challenge"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get("/challenge").header(HttpHeaders.IF_NONE_MATCH, eTag)).andDo(print())
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void testGzippedMetricsInformation() throws Exception
+    {
+        for (final String acceptEncoding : new String[] {"gzip", "deflate, GZIP;q=0.5", "x-gzip", "*", "br;q=1.0, *;q=0.1"}) {
+            this.mockMvc.perform(get("/challenge/revenue").header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        }
+        for (final String acceptEncoding : new String[] {"gzip;q=0", "gzip; q=0.000", "x-gzip-foo", "identity", "*;q=0", "*, gzip;q=0", "gzip;q=abc"}) {
+            this.mockMvc.perform(get("/challenge/revenue").header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string("{\"revenue\":\"$32,431\"}"));
+        }
+    }
+
+    @Test
+    public void testUnknownConnectionMetricsInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/connections/unknown")).andDo(print())
+            .andExpect(status().isNotFound())
+            .andExpect(status().reason(containsString("No ledger found for connection unknown.")));
+    }
+
+    @Test
+    public void testSelectedMetricsInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge").param("fields", "netProfitMargin,revenue")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"revenue\":\"$32,431\",\"netProfitMargin\":\"-12.6%\"}"));
+    }
+
+    @Test
+    public void testCurrencyMetricsInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge").param("fields", "revenue,netProfitMargin").param("currency", "usd")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"revenue\":\"US$21,550\",\"netProfitMargin\":\"-12.6%\",\"currency\":\"USD\",\"fxRates\":\"1\"}"));
+        this.mockMvc.perform(get("/challenge/expenses").param("currency", "AUD")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"expenses\":\"A$36,530\",\"currency\":\"AUD\",\"fxRates\":\"1\"}"));
+    }
+
+    @Test
+    public void testInvalidCurrencyMetricsInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge").param("currency", "XYZ")).andDo(print())
+            .andExpect(status().isNotFound())
+            .andExpect(status().reason(containsString("Not a valid currency requested.")));
+    }
+
+    @Test
+    public void testCborMetricsInformation() throws Exception
+    {
+        final byte[] body = this.mockMvc.perform(get("/challenge/expenses").header(HttpHeaders.ACCEPT, "application/cbor")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/cbor"))
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn().getResponse().getContentAsByteArray();
+        final JsonNode expenses = new ObjectMapper(new CBORFactory()).readTree(body).get("expenses");
+        Assertions.assertEquals("$36,530", expenses.get("text").asText());
+        Assertions.assertEquals(0, new BigDecimal("36529.68").compareTo(expenses.get("value").decimalValue()));
+    }
+
+    @Test
+    public void testProtobufMetricsInformation() throws Exception
+    {
+        final byte[] body = this.mockMvc.perform(get("/challenge/revenue").header(HttpHeaders.ACCEPT, "application/x-protobuf")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-protobuf"))
+            .andReturn().getResponse().getContentAsByteArray();
+        // revenue is field 1 of the Metrics message, a length delimited MetricValue.
+        Assertions.assertEquals(0x0A, body[0]);
+        Assertions.assertEquals(body.length - 2, body[1]);
+        Assertions.assertTrue(new String(body, StandardCharsets.ISO_8859_1).endsWith("$32,431"));
+
+        this.mockMvc.perform(get("/challenge/live").header(HttpHeaders.ACCEPT, "application/x-protobuf"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-protobuf"));
+    }
+
+    @Test
+    public void testJsonPreferredMetricsInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/revenue").header(HttpHeaders.ACCEPT, "application/json, application/cbor;q=0.5")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"revenue\":\"$32,431\"}"));
+    }
+
+    @Test
+    public void testStreamedMetricsInformation() throws Exception
+    {
+        final MvcResult result = this.mockMvc.perform(get("/challenge/stream")).andExpect(request().asyncStarted()).andReturn();
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!result.getResponse().getContentAsString().contains("data:") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertTrue(result.getResponse().getContentAsString().startsWith("event:metrics\ndata:{\"revenue\":\"$32,431\""));
+            Assertions.assertEquals(1.0, meterRegistry.get("accounting.metrics.stream.subscribers").gauge().value());
+        } finally {
+            // the client going away completes the request, which unsubscribes it.
+            result.getRequest().getAsyncContext().complete();
+        }
+        Assertions.assertEquals(0.0, meterRegistry.get("accounting.metrics.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    public void testBreakdownInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/breakdown/account_category").param("size", "2")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"dimension\":\"account_category\",\"sort\":\"revenue\",\"groups\":4,\"page\":0,\"size\":2,\"items\":["
+                + "{\"key\":\"revenue\",\"rows\":1,\"revenue\":\"$32,431\",\"expenses\":\"$0\",\"total\":\"$32,431\"},"
+                + "{\"key\":\"expense\",\"rows\":14,\"revenue\":\"$0\",\"expenses\":\"$36,530\",\"total\":\"$36,530\"}]}"));
+    }
+
+    @Test
+    public void testInvalidBreakdownInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/breakdown/account_name")).andDo(print())
+            .andExpect(status().isNotFound())
+            .andExpect(status().reason(containsString("Not a valid breakdown requested.")));
+        this.mockMvc.perform(get("/challenge/breakdown/account_code").param("size", "0")).andDo(print())
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStageTimersRecorded() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge")).andExpect(status().isOk());
+
+        Assertions.assertTrue(meterRegistry.get("accounting.metrics.stage").tag("stage", "calculate").timer().count() > 0);
+        Assertions.assertTrue(meterRegistry.get("accounting.metrics.stage").tag("stage", "render").timer().count() > 0);
+        Assertions.assertTrue(meterRegistry.get("accounting.metrics.cache.requests").tag("cache", "response").counters().size() > 0);
+    }
 }
@@ -0,0 +1,113 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.cli.AccountingMetricsCli;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+public class AccountingMetricsCliTests
+{
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private final AccountingMetricsCli cli = new AccountingMetricsCli(new Properties());
+
+    @Test
+    public void testMetricsPrinted()
+    {
+        Assertions.assertEquals(0, run("src/main/resources/data.json"));
+        Assertions.assertEquals(String.format("Revenue: $32,431%nExpenses: $36,530%nGross Profit Margin: 0%%%nNet Profit Margin: -12.6%%%n"
+            + "Working Capital Ratio: 118.8%%%n"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMetricsPrintedAsResponse()
+    {
+        Assertions.assertEquals(0, run("--json", "--fields=netProfitMargin,revenue", "src/main/resources/data.json"));
+        Assertions.assertEquals(String.format("{\"revenue\":\"$32,431\",\"netProfitMargin\":\"-12.6%%\"}%n"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFailingLedgerReported()
+    {
+        Assertions.assertEquals(AccountingMetricsCli.EXIT_FAILURE, run("--json", "unknown.json", "src/main/resources/data.json"));
+        Assertions.assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("{\"revenue\":\"$32,431\""));
+        Assertions.assertEquals(String.format("unknown.json: Failed reading data file.%n"), err.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInvalidRecordsQuarantined(@TempDir final Path directory) throws IOException
+    {
+        final Path ledger = directory.resolve("ledger.json");
+        Files.write(ledger, ("{\"data\": [{\"account_category\": \"expense\", \"total_value\": 100}, 42,"
+            + " {\"account_category\": \"expense\", \"total_value\": null}, {\"account_category\": \"expense\", \"total_value\": \"n/a\"},"
+            + " {\"account_category\": \"expense\", \"total_value\": {\"amount\": 100}}]}").getBytes(StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(0, run("--json", "--fields=expenses,netProfitMargin", ledger.toString()));
+        Assertions.assertEquals(String.format("{\"expenses\":\"$100\",\"dataQuality\":{\"validRows\":1,\"quarantinedRows\":4,"
+            + "\"quarantined\":{\"malformedRecord\":1,\"missingTotalValue\":1,\"invalidTotalValue\":2},\"undefinedMetrics\":[\"netProfitMargin\"]}}%n"),
+            out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInvalidField()
+    {
+        Assertions.assertEquals(AccountingMetricsCli.EXIT_USAGE, run("--fields=profit"));
+        Assertions.assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testDirectoryReported(@TempDir final Path directory) throws IOException
+    {
+        Files.copy(Paths.get("src/main/resources/data.json"), directory.resolve("connection-1.json"));
+        Files.write(directory.resolve("connection-2.json"), "{\"data\": [".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("notes.txt"), "not a ledger".getBytes(StandardCharsets.UTF_8));
+        final Path report = directory.resolve("report.csv");
+
+        Assertions.assertEquals(AccountingMetricsCli.EXIT_FAILURE,
+            run("--directory=" + directory, "--output=" + report, "--format=csv", "--parallelism=2", "--fields=revenue,expenses"));
+        final List<String> records = Files.readAllLines(report, StandardCharsets.UTF_8);
+        Assertions.assertEquals(3, records.size());
+        Assertions.assertEquals("ledger,status,revenue,expenses,message", records.get(0));
+        final String[] ledgers = {records.get(1), records.get(2)};
+        Arrays.sort(ledgers);
+        Assertions.assertEquals("connection-1,200,\"$32,431\",\"$36,530\",", ledgers[0]);
+        Assertions.assertTrue(ledgers[1].startsWith("connection-2,500,,,"));
+        Assertions.assertTrue(err.toString(StandardCharsets.UTF_8).startsWith("2 ledgers, 1 failed"));
+    }
+
+    @Test
+    public void testDirectoryReportedAsResponses(@TempDir final Path directory) throws IOException
+    {
+        Files.copy(Paths.get("src/main/resources/data.json"), directory.resolve("connection-1.json"));
+
+        Assertions.assertEquals(0, run("--directory=" + directory, "--fields=revenue"));
+        Assertions.assertEquals("{\"ledger\":\"connection-1\",\"status\":200,\"metrics\":{\"revenue\":\"$32,431\"}}\n",
+            out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDirectoryWithLedgerFiles()
+    {
+        Assertions.assertEquals(AccountingMetricsCli.EXIT_USAGE, run("--directory=.", "src/main/resources/data.json"));
+        Assertions.assertEquals(AccountingMetricsCli.EXIT_USAGE, run("--directory=.", "--format=xml"));
+    }
+
+    private int run(final String... args)
+    {
+        return cli.run(args, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+}
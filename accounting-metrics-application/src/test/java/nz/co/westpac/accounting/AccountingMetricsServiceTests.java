@@ -1,13 +1,19 @@
 package nz.co.westpac.accounting;
 
 import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BatchMetricsRequest;
+import nz.co.westpac.accounting.models.BatchMetricsResult;
 import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.LedgerConsistency;
+import nz.co.westpac.accounting.models.Metric;
 import nz.co.westpac.accounting.models.Metrics;
 import nz.co.westpac.accounting.services.impl.AccountingMetricsService;
+import nz.co.westpac.accounting.services.impl.LedgerSnapshotCache;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +23,8 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import java.io.File;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @SpringBootTest
 public class AccountingMetricsServiceTests
@@ -24,9 +32,18 @@ public class AccountingMetricsServiceTests
     @Autowired
     private AccountingMetricsService accountingMetricsService;
 
+    @Autowired
+    private LedgerSnapshotCache ledgerSnapshotCache;
+
     @MockBean
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    public void invalidateLedger()
+    {
+        ledgerSnapshotCache.invalidate();
+    }
+
     @Test
     public void testCurrencyFormatting() throws Exception
     {
@@ -64,4 +81,161 @@ public class AccountingMetricsServiceTests
             "Percent Format - percentage value formatted to one decimal digit and prefixed with a % sign.");
     }
 
+    @Test
+    public void testLedgerParsedOnceWhileUnchanged() throws Exception
+    {
+        final BookKeeping book = new BookKeeping();
+        final Accounting revenue = new Accounting();
+        revenue.setAccount_category("revenue");
+        revenue.setTotal_value(new BigDecimal(100));
+        book.setData(List.of(revenue));
+
+        Mockito.doReturn(book).when(objectMapper).readValue(Mockito.any(File.class), Mockito.eq(BookKeeping.class));
+
+        accountingMetricsService.retrieveSpecificMetricsInformation("revenue");
+        final Metrics metrics = accountingMetricsService.retrieveSpecificMetricsInformation("revenue");
+
+        Assertions.assertEquals("$100", metrics.getRevenue());
+        Mockito.verify(objectMapper, Mockito.times(1)).readValue(Mockito.any(File.class), Mockito.eq(BookKeeping.class));
+    }
+
+    @Test
+    public void testBatchMetricsInformation() throws Exception
+    {
+        final BookKeeping book = new BookKeeping();
+        final Accounting revenue = new Accounting();
+        revenue.setAccount_category("revenue");
+        revenue.setTotal_value(new BigDecimal(100));
+        final Accounting asset = new Accounting();
+        asset.setAccount_category("assets");
+        asset.setValue_type("debit");
+        asset.setAccount_type("bank");
+        asset.setTotal_value(new BigDecimal(500));
+        final Accounting liability = new Accounting();
+        liability.setAccount_category("liability");
+        liability.setValue_type("credit");
+        liability.setAccount_type("current_accounts_payable");
+        liability.setTotal_value(new BigDecimal(200));
+        book.setData(List.of(revenue, asset, liability));
+        final Accounting broken = new Accounting()
+        {
+            @Override
+            public String getAccount_category()
+            {
+                throw new IllegalStateException("Broken accounting record.");
+            }
+        };
+        broken.setTotal_value(BigDecimal.ONE);
+        final BookKeeping brokenBook = new BookKeeping();
+        brokenBook.setData(List.of(broken));
+        final BatchMetricsRequest request = new BatchMetricsRequest();
+        request.setLedgers(List.of(book, new BookKeeping(), brokenBook));
+        request.setConnections(List.of("unknown"));
+
+        final Map<String, BatchMetricsResult> results = new ConcurrentHashMap<>();
+        accountingMetricsService.retrieveBatchMetricsInformation(request, result -> results.put(result.getLedger(), result)).get();
+
+        Assertions.assertEquals(4, results.size());
+        Assertions.assertEquals(200, results.get("ledgers[0]").getStatus());
+        Assertions.assertEquals("$100", results.get("ledgers[0]").getMetrics().getRevenue());
+        Assertions.assertEquals("250%", results.get("ledgers[0]").getMetrics().getWorkingCapitalRatio());
+        Assertions.assertEquals(400, results.get("ledgers[1]").getStatus());
+        Assertions.assertEquals(500, results.get("ledgers[2]").getStatus());
+        Assertions.assertEquals("Failed calculating metrics information of ledger ledgers[2].", results.get("ledgers[2]").getMessage());
+        Assertions.assertEquals(404, results.get("unknown").getStatus());
+    }
+
+    @Test
+    public void testLedgerDeltasMatchFullRecalculation() throws Exception
+    {
+        final BookKeeping book = new BookKeeping();
+        final Accounting revenue = new Accounting();
+        revenue.setAccount_identifier("revenue");
+        revenue.setAccount_category("revenue");
+        revenue.setTotal_value(new BigDecimal(100));
+        final Accounting expense = new Accounting();
+        expense.setAccount_identifier("expense");
+        expense.setAccount_category("expense");
+        expense.setTotal_value(new BigDecimal(40));
+        final Accounting bank = new Accounting();
+        bank.setAccount_identifier("bank");
+        bank.setAccount_category("assets");
+        bank.setValue_type("debit");
+        bank.setAccount_type("bank");
+        bank.setTotal_value(new BigDecimal(500));
+        final Accounting payable = new Accounting();
+        payable.setAccount_identifier("payable");
+        payable.setAccount_category("liability");
+        payable.setValue_type("credit");
+        payable.setAccount_type("current_accounts_payable");
+        payable.setTotal_value(new BigDecimal(200));
+        book.setData(List.of(revenue, expense, bank, payable));
+
+        Mockito.doReturn(book).when(objectMapper).readValue(Mockito.any(File.class), Mockito.eq(BookKeeping.class));
+
+        final Accounting changedBank = new Accounting();
+        changedBank.setAccount_identifier("bank");
+        changedBank.setTotal_value(new BigDecimal(600));
+        final Accounting changedPayable = new Accounting();
+        changedPayable.setAccount_identifier("payable");
+        changedPayable.setTotal_value(new BigDecimal(300));
+        final Accounting changedRevenue = new Accounting();
+        changedRevenue.setAccount_identifier("revenue");
+        changedRevenue.setTotal_value(new BigDecimal("250.75"));
+        final Accounting archivedExpense = new Accounting();
+        archivedExpense.setAccount_identifier("expense");
+        archivedExpense.setAccount_status("ARCHIVED");
+        final Accounting addedExpense = new Accounting();
+        addedExpense.setAccount_identifier("rent");
+        addedExpense.setAccount_category("expense");
+        addedExpense.setTotal_value(new BigDecimal(70));
+
+        final Metrics metrics = accountingMetricsService.applyLedgerDeltas(List.of(changedRevenue, archivedExpense, addedExpense, changedBank, changedPayable));
+        final LedgerConsistency consistency = accountingMetricsService.checkLiveConsistency();
+
+        Assertions.assertEquals("$251", metrics.getRevenue());
+        Assertions.assertEquals("$70", metrics.getExpenses());
+        Assertions.assertEquals("200%", metrics.getWorkingCapitalRatio());
+        Assertions.assertTrue(consistency.isConsistent());
+        Assertions.assertEquals(4, consistency.getAccounts());
+    }
+
+    @Test
+    public void testLedgerDeltasNeverAddressUnidentifiedRecords() throws Exception
+    {
+        final BookKeeping book = new BookKeeping();
+        final Accounting revenue = new Accounting();
+        revenue.setAccount_identifier("revenue");
+        revenue.setAccount_category("revenue");
+        revenue.setTotal_value(new BigDecimal(100));
+        final Accounting unidentified = new Accounting();
+        unidentified.setAccount_category("revenue");
+        unidentified.setTotal_value(new BigDecimal(50));
+        final Accounting repeated = new Accounting();
+        repeated.setAccount_identifier("revenue");
+        repeated.setAccount_category("revenue");
+        repeated.setTotal_value(new BigDecimal(25));
+        book.setData(List.of(revenue, unidentified, repeated));
+
+        Mockito.doReturn(book).when(objectMapper).readValue(Mockito.any(File.class), Mockito.eq(BookKeeping.class));
+
+        // identifiers a ledger record without identifier might otherwise have been filed under.
+        final Accounting addedRevenue = new Accounting();
+        addedRevenue.setAccount_identifier("#1");
+        addedRevenue.setAccount_category("revenue");
+        addedRevenue.setTotal_value(new BigDecimal("10.50"));
+        final Accounting otherRevenue = new Accounting();
+        otherRevenue.setAccount_identifier("#2");
+        otherRevenue.setAccount_category("revenue");
+        otherRevenue.setTotal_value(new BigDecimal("0.20"));
+
+        final Metrics metrics = accountingMetricsService.applyLedgerDeltas(List.of(addedRevenue, otherRevenue));
+        final LedgerConsistency consistency = accountingMetricsService.checkLiveConsistency();
+
+        Assertions.assertEquals("$186", metrics.getRevenue());
+        Assertions.assertEquals(0, new BigDecimal("185.70").compareTo(consistency.getRecalculated().getValues().get(Metric.REVENUE)));
+        Assertions.assertTrue(consistency.isConsistent());
+        Assertions.assertEquals(5, consistency.getAccounts());
+    }
+
 }
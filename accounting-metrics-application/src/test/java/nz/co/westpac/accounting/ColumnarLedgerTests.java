@@ -0,0 +1,108 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.ColumnarLedger;
+import nz.co.westpac.accounting.models.DictionaryColumn;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ColumnarLedgerTests
+{
+    private static final String[] CATEGORIES = {"revenue", "expense", "assets", "liability", null};
+
+    private static final String[] VALUE_TYPES = {"debit", "credit", null};
+
+    private static final String[] ACCOUNT_TYPES = {"current", "bank", "current_accounts_receivable", "current_accounts_payable", "sales", null};
+
+    @Test
+    public void testDictionaryWidensPastByteCodes()
+    {
+        final DictionaryColumn column = new DictionaryColumn(1000);
+        for (int row = 0; row < 1000; row++) {
+            column.set(row, row % 7 == 0 ? null : "value-" + row % 300);
+        }
+
+        Assertions.assertEquals(301, column.cardinality());
+        for (int row = 0; row < 1000; row++) {
+            Assertions.assertEquals(row % 7 == 0 ? null : "value-" + row % 300, column.value(column.code(row)));
+        }
+    }
+
+    @Test
+    public void testNullValuesShareOneCode()
+    {
+        final DictionaryColumn column = new DictionaryColumn(4);
+        column.set(0, null);
+        column.set(1, "bank");
+        column.set(2, null);
+
+        Assertions.assertEquals(2, column.cardinality());
+        Assertions.assertEquals(column.code(0), column.code(2));
+        Assertions.assertEquals(null, column.value(column.code(0)));
+        Assertions.assertEquals("bank", column.value(column.code(1)));
+    }
+
+    @Test
+    public void testAggregatesMatchRecords()
+    {
+        final Random random = new Random(11);
+        final List<Accounting> accounts = new ArrayList<>();
+        for (int row = 0; row < 3000; row++) {
+            final Accounting account = new Accounting();
+            account.setAccount_category(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            account.setValue_type(VALUE_TYPES[random.nextInt(VALUE_TYPES.length)]);
+            account.setAccount_type(ACCOUNT_TYPES[random.nextInt(ACCOUNT_TYPES.length)]);
+            // more distinct statuses than byte codes, so the column widens while appending.
+            account.setAccount_status(row % 5 == 0 ? null : "status-" + random.nextInt(400));
+            account.setAccount_currency(row % 3 == 0 ? "AUD" : "NZD");
+            account.setTotal_value(value(random, row));
+            accounts.add(account);
+        }
+        final BookKeeping book = new BookKeeping();
+        book.setData(accounts);
+
+        final ColumnarLedger ledger = ColumnarLedger.of(book);
+        final LedgerAggregates expected = LedgerAggregates.of(book);
+        final LedgerAggregates aggregates = ledger.aggregate();
+
+        Assertions.assertTrue(ledger.getStatuses().cardinality() > 256);
+        Assertions.assertEquals(accounts.size(), ledger.size());
+        for (int row = 0; row < accounts.size(); row++) {
+            Assertions.assertEquals(accounts.get(row).getTotal_value(), ledger.getValue(row));
+            Assertions.assertEquals(accounts.get(row).getAccount_status(), ledger.getStatuses().value(ledger.getStatuses().code(row)));
+        }
+        Assertions.assertEquals(expected.getRows(), aggregates.getRows());
+        Assertions.assertEquals(expected.getCurrencies(), aggregates.getCurrencies());
+        Assertions.assertEquals(expected.getRevenue(), aggregates.getRevenue());
+        Assertions.assertEquals(expected.getExpenses(), aggregates.getExpenses());
+        Assertions.assertEquals(expected.getGrossProfit(), aggregates.getGrossProfit());
+        Assertions.assertEquals(expected.getDebitAssets(), aggregates.getDebitAssets());
+        Assertions.assertEquals(expected.getCreditAssets(), aggregates.getCreditAssets());
+        Assertions.assertEquals(expected.getCreditLiabilities(), aggregates.getCreditLiabilities());
+        Assertions.assertEquals(expected.getDebitLiabilities(), aggregates.getDebitLiabilities());
+    }
+
+    /**
+     * Mostly values of a few cents, with some values which only fit the oversized column: beyond a
+     * long, or with a scale beyond a byte.
+     */
+    private static BigDecimal value(final Random random, final int row)
+    {
+        if (row % 97 == 0) {
+            return new BigDecimal("123456789012345678901234567890.25").negate();
+        } else if (row % 89 == 0) {
+            return new BigDecimal("1E-200");
+        } else if (row % 83 == 0) {
+            return new BigDecimal("5E+130");
+        }
+        return BigDecimal.valueOf(random.nextInt(2000000) - 1000000, 2);
+    }
+}
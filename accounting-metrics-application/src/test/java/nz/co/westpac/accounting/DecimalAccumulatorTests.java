@@ -0,0 +1,116 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.DecimalAccumulator;
+import nz.co.westpac.accounting.models.DecimalAccumulators;
+import nz.co.westpac.accounting.models.FixedPointAccounting;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+public class DecimalAccumulatorTests
+{
+    @Test
+    public void testNumberTextParsedLikeBigDecimal()
+    {
+        for (final String text : new String[] {"0", "-0.00", "1234.50", "-1234.50", "+7", "1.5E+3", "1.5e3", "-2.50e-2", "5E+3", "12E-10",
+                "922337203685477579", "-922337203685477579", "0.000000000000000001"}) {
+            final FixedPointAccounting account = new FixedPointAccounting();
+            Assertions.assertTrue(account.setTotal_value(text.toCharArray(), 0, text.length()));
+            Assertions.assertTrue(account.isFixedPoint());
+            Assertions.assertEquals(new BigDecimal(text), account.getTotal_value());
+        }
+    }
+
+    @Test
+    public void testNumberTextBeyondLongLeftUnset()
+    {
+        // digits close to the range of a long are left to BigDecimal as well.
+        for (final String text : new String[] {"9223372036854775807", "9223372036854775808", "-9223372036854775809", "123456789012345678901234567890.5",
+                "1E+9999999999", "E5", "-"}) {
+            final FixedPointAccounting account = new FixedPointAccounting();
+            Assertions.assertEquals(false, account.setTotal_value(text.toCharArray(), 0, text.length()));
+            Assertions.assertEquals(false, account.isFixedPoint());
+        }
+    }
+
+    @Test
+    public void testScalesAligned()
+    {
+        final DecimalAccumulator sum = new DecimalAccumulator();
+        sum.add(15, 1);
+        sum.add(25, 2);
+        sum.add(10, 0);
+        // a negative scale, 5E+3.
+        sum.add(5, -3);
+
+        Assertions.assertEquals(new BigDecimal("1.5").add(new BigDecimal("0.25")).add(BigDecimal.TEN).add(new BigDecimal("5E+3")), sum.toBigDecimal());
+        Assertions.assertEquals(new BigDecimal("5011.75"), sum.toBigDecimal());
+    }
+
+    @Test
+    public void testLongOverflowFallsBackToBigDecimal()
+    {
+        final DecimalAccumulator sum = new DecimalAccumulator();
+        sum.add(Long.MAX_VALUE, 0);
+        sum.add(1, 0);
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE), sum.toBigDecimal());
+
+        // aligning the scales overflows, the values themselves fit.
+        final DecimalAccumulator aligned = new DecimalAccumulator();
+        aligned.add(Long.MAX_VALUE / 10, 0);
+        aligned.add(1, 5);
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MAX_VALUE / 10).add(BigDecimal.valueOf(1, 5)), aligned.toBigDecimal());
+
+        final DecimalAccumulator negative = new DecimalAccumulator();
+        negative.add(Long.MIN_VALUE + 1, 0);
+        negative.add(-2, 0);
+        Assertions.assertEquals(BigDecimal.valueOf(Long.MIN_VALUE + 1).subtract(BigDecimal.valueOf(2)), negative.toBigDecimal());
+    }
+
+    @Test
+    public void testDecimalValuesAddedExactly()
+    {
+        // cents, negative and positive scales, and 18 and 19 digits either side of the long path.
+        final String[] texts = {"1234.56", "-0.07", "5E+3", "-2.5E+2", "0.00", "999999999999999999", "-99999999999999999.9",
+            "1234567890123456789", "-9223372036854775808.5", "0.000000000000000001"};
+        final DecimalAccumulator sum = new DecimalAccumulator();
+        final DecimalAccumulators sums = new DecimalAccumulators(1);
+        BigDecimal expected = BigDecimal.ZERO;
+        for (final String text : texts) {
+            final BigDecimal value = new BigDecimal(text);
+            sum.add(value);
+            sums.add(0, value);
+            expected = expected.add(value);
+        }
+
+        Assertions.assertEquals(expected, sum.toBigDecimal());
+        Assertions.assertEquals(expected, sums.get(0));
+    }
+
+    @Test
+    public void testSumsMatchBigDecimalBeyondLong()
+    {
+        final Random random = new Random(5);
+        final DecimalAccumulator sum = new DecimalAccumulator();
+        final DecimalAccumulator other = new DecimalAccumulator();
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int row = 0; row < 10000; row++) {
+            final BigDecimal value;
+            if (row % 250 == 0) {
+                // beyond +-2^63.
+                value = new BigDecimal("9223372036854775808.125").multiply(BigDecimal.valueOf(random.nextBoolean() ? 1 : -1));
+            } else {
+                value = BigDecimal.valueOf(random.nextLong() / 1000, random.nextInt(6) - 1);
+            }
+            (row % 2 == 0 ? sum : other).add(value);
+            expected = expected.add(value);
+        }
+        sum.add(other);
+
+        Assertions.assertEquals(expected, sum.toBigDecimal());
+        Assertions.assertEquals(null, new DecimalAccumulator().toBigDecimal());
+    }
+}
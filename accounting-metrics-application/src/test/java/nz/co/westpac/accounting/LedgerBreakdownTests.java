@@ -0,0 +1,112 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.ColumnarLedger;
+import nz.co.westpac.accounting.models.LedgerBreakdown;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class LedgerBreakdownTests
+{
+    private static final String[] CATEGORIES = {"revenue", "expense", "assets", "liability"};
+
+    @Test
+    public void testGroupSumsMatchDirectSums()
+    {
+        final List<Accounting> accounts = accounts(5000, 700);
+        final LedgerBreakdown breakdown = new LedgerBreakdown();
+        final Map<String, BigDecimal[]> expected = new HashMap<>();
+        for (final Accounting account : accounts) {
+            breakdown.add(account.getAccount_code(), account);
+            final BigDecimal[] sums = expected.computeIfAbsent(account.getAccount_code(), key -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO,
+                BigDecimal.ZERO, BigDecimal.ZERO});
+            sums[0] = sums[0].add(BigDecimal.ONE);
+            sums[1] = sums[1].add("revenue".equals(account.getAccount_category()) ? account.getTotal_value() : BigDecimal.ZERO);
+            sums[2] = sums[2].add("expense".equals(account.getAccount_category()) ? account.getTotal_value() : BigDecimal.ZERO);
+            sums[3] = sums[3].add(account.getTotal_value());
+        }
+
+        Assertions.assertEquals(expected.size(), breakdown.getGroups());
+        for (int group = 0; group < breakdown.getGroups(); group++) {
+            final BigDecimal[] sums = expected.get(breakdown.getKey(group));
+            Assertions.assertEquals(sums[0].longValue(), breakdown.getRows(group));
+            Assertions.assertEquals(0, sums[1].compareTo(breakdown.getRevenue(group)));
+            Assertions.assertEquals(0, sums[2].compareTo(breakdown.getExpenses(group)));
+            Assertions.assertEquals(0, sums[3].compareTo(breakdown.getTotal(group)));
+        }
+    }
+
+    @Test
+    public void testTopPagesMatchFullSort()
+    {
+        final LedgerBreakdown breakdown = new LedgerBreakdown();
+        for (final Accounting account : accounts(5000, 700)) {
+            breakdown.add(account.getAccount_code(), account);
+        }
+        final Integer[] groups = new Integer[breakdown.getGroups()];
+        for (int group = 0; group < groups.length; group++) {
+            groups[group] = group;
+        }
+        Arrays.sort(groups, Comparator.comparing(breakdown::getRevenue).reversed().thenComparing(group -> group));
+
+        for (final int[] page : new int[][] {{0, 10}, {10, 10}, {0, groups.length + 5}, {groups.length - 3, 10}, {groups.length, 10}}) {
+            final int[] top = breakdown.top(LedgerBreakdown.Sort.REVENUE, page[0], page[1]);
+            Assertions.assertEquals(Math.max(0, Math.min(groups.length, page[0] + page[1]) - page[0]), top.length);
+            for (int rank = 0; rank < top.length; rank++) {
+                Assertions.assertEquals(groups[page[0] + rank].intValue(), top[rank]);
+            }
+        }
+    }
+
+    @Test
+    public void testColumnarBreakdownMatchesRecords()
+    {
+        final BookKeeping book = new BookKeeping();
+        book.setData(accounts(2000, 50));
+        final ColumnarLedger ledger = ColumnarLedger.of(book);
+        final LedgerBreakdown columnar = ledger.breakdown(ledger.getCategories());
+        final LedgerBreakdown records = new LedgerBreakdown();
+        for (final Accounting account : book.getData()) {
+            records.add(account.getAccount_category(), account);
+        }
+
+        Assertions.assertEquals(records.getGroups(), columnar.getGroups());
+        for (int group = 0; group < records.getGroups(); group++) {
+            Assertions.assertEquals(records.getKey(group), columnar.getKey(group));
+            Assertions.assertEquals(records.getRows(group), columnar.getRows(group));
+            Assertions.assertEquals(records.getRevenue(group), columnar.getRevenue(group));
+            Assertions.assertEquals(records.getExpenses(group), columnar.getExpenses(group));
+            Assertions.assertEquals(records.getTotal(group), columnar.getTotal(group));
+        }
+    }
+
+    /**
+     * Accounting records with account codes of which some are missing, and a few values which do
+     * not fit a long.
+     */
+    private static List<Accounting> accounts(final int rows, final int codes)
+    {
+        final Random random = new Random(11);
+        final List<Accounting> accounts = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            final Accounting account = new Accounting();
+            account.setAccount_category(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            account.setAccount_code(random.nextInt(20) == 0 ? null : String.valueOf(random.nextInt(codes)));
+            account.setTotal_value(random.nextInt(100) == 0 ? new BigDecimal("92233720368547758070.5")
+                    : BigDecimal.valueOf(random.nextInt(2000000) - 1000000, random.nextInt(4)));
+            accounts.add(account);
+        }
+        return accounts;
+    }
+}
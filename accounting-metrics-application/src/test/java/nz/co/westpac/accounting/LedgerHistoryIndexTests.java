@@ -0,0 +1,104 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.LedgerHistoryIndex;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LedgerHistoryIndexTests
+{
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private static final String[] CATEGORIES = {"revenue", "expense", "assets", "liability"};
+
+    private static final String[] VALUE_TYPES = {"debit", "credit"};
+
+    private static final String[] ACCOUNT_TYPES = {"current", "bank", "current_accounts_receivable", "current_accounts_payable", "sales"};
+
+    @Test
+    public void testRangeSumsMatchDirectSums()
+    {
+        final Random random = new Random(7);
+        final long[] balanceDates = new long[40];
+        final List<LedgerAggregates> snapshots = new ArrayList<>();
+        for (int snapshot = 0; snapshot < balanceDates.length; snapshot++) {
+            // several snapshots share a balance date.
+            balanceDates[snapshot] = (snapshot / 2) * DAY;
+            final LedgerAggregates aggregates = new LedgerAggregates();
+            for (int row = 0; row < 10; row++) {
+                aggregates.add(account(random));
+            }
+            snapshots.add(aggregates);
+        }
+        final LedgerHistoryIndex index = new LedgerHistoryIndex(balanceDates, snapshots);
+
+        for (long from = -DAY; from <= 21 * DAY; from += DAY) {
+            for (long to = from; to <= 22 * DAY; to += DAY) {
+                final LedgerAggregates expected = new LedgerAggregates();
+                int count = 0;
+                for (int snapshot = 0; snapshot < balanceDates.length; snapshot++) {
+                    if (balanceDates[snapshot] >= from && balanceDates[snapshot] < to) {
+                        expected.add(snapshots.get(snapshot));
+                        count++;
+                    }
+                }
+                final LedgerAggregates range = index.sum(from, to);
+                Assertions.assertEquals(count, index.count(from, to));
+                Assertions.assertEquals(expected.getRows(), range.getRows());
+                assertSameValue(expected.getRevenue(), range.getRevenue());
+                assertSameValue(expected.getExpenses(), range.getExpenses());
+                assertSameValue(expected.getGrossProfit(), range.getGrossProfit());
+                assertSameValue(expected.getDebitAssets(), range.getDebitAssets());
+                assertSameValue(expected.getCreditAssets(), range.getCreditAssets());
+                assertSameValue(expected.getCreditLiabilities(), range.getCreditLiabilities());
+                assertSameValue(expected.getDebitLiabilities(), range.getDebitLiabilities());
+            }
+        }
+        Assertions.assertEquals(0, index.getFirstBalanceDate().getTime());
+        Assertions.assertEquals(19 * DAY, index.getLastBalanceDate().getTime());
+    }
+
+    @Test
+    public void testEmptyIndex()
+    {
+        final LedgerHistoryIndex index = new LedgerHistoryIndex(new long[0], new ArrayList<>());
+
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertNull(index.getFirstBalanceDate());
+        Assertions.assertEquals(0, index.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        Assertions.assertEquals(0, index.sum(Long.MIN_VALUE, Long.MAX_VALUE).getRows());
+    }
+
+    @Test
+    public void testUnorderedBalanceDates()
+    {
+        final List<LedgerAggregates> snapshots = List.of(new LedgerAggregates(), new LedgerAggregates());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LedgerHistoryIndex(new long[] {DAY, 0}, snapshots));
+    }
+
+    private static Accounting account(final Random random)
+    {
+        final Accounting account = new Accounting();
+        account.setAccount_category(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        account.setValue_type(VALUE_TYPES[random.nextInt(VALUE_TYPES.length)]);
+        account.setAccount_type(ACCOUNT_TYPES[random.nextInt(ACCOUNT_TYPES.length)]);
+        account.setTotal_value(BigDecimal.valueOf(random.nextInt(1000000), random.nextInt(3)));
+        return account;
+    }
+
+    /**
+     * Sums taken out of a running total keep its scale, so values are compared regardless of scale.
+     */
+    private static void assertSameValue(final BigDecimal expected, final BigDecimal actual)
+    {
+        Assertions.assertEquals(0, expected.compareTo(actual), expected + " != " + actual);
+    }
+}
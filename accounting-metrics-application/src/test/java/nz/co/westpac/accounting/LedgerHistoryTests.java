@@ -0,0 +1,138 @@
+package nz.co.westpac.accounting;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import nz.co.westpac.accounting.services.impl.LedgerHistory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The ledger history holds three archived ledgers, from the end of January to the end of June
+ * 2020, and requests for metrics of every period are limited to 24 periods.
+ */
+@SpringBootTest(properties = "accounting.metrics.history.maximumPeriods=24")
+@AutoConfigureMockMvc
+public class LedgerHistoryTests
+{
+    private static final String LEDGER = "{\"balance_date\":\"%sT00:00:00.000Z\",\"data\":[{\"account_category\":\"revenue\",\"total_value\":%d}]}";
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LedgerHistory ledgerHistory;
+
+    @DynamicPropertySource
+    static void historyDirectory(final DynamicPropertyRegistry registry)
+    {
+        registry.add("accounting.metrics.history.directory", () -> directory.toString());
+    }
+
+    @BeforeAll
+    static void writeLedgers() throws IOException
+    {
+        archive("2020-01-31", 100);
+        archive("2020-03-31", 300);
+        archive("2020-06-30", 600);
+    }
+
+    @Test
+    public void testHistoryMetricsInformation() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/history").param("fields", "revenue")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"revenue\":\"$1,000\"}"));
+        this.mockMvc.perform(get("/challenge/history").param("from", "2020-02-01").param("to", "2020-05-31").param("fields", "revenue"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("{\"revenue\":\"$300\"}"));
+    }
+
+    @Test
+    public void testPeriodRangeCutToHistory() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/history/month").param("from", "0001-01-01").param("to", "9999-12-31").param("fields", "revenue"))
+            .andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(6))
+            .andExpect(jsonPath("$[0].from").value("2020-01-31"))
+            .andExpect(jsonPath("$[0].to").value("2020-01-31"))
+            .andExpect(jsonPath("$[0].metrics.revenue").value("$100"))
+            .andExpect(jsonPath("$[1].snapshots").value(0))
+            .andExpect(jsonPath("$[2].metrics.revenue").value("$300"))
+            .andExpect(jsonPath("$[5].from").value("2020-06-01"))
+            .andExpect(jsonPath("$[5].to").value("2020-06-30"))
+            .andExpect(jsonPath("$[5].metrics.revenue").value("$600"));
+    }
+
+    @Test
+    public void testPeriodRangeOutsideHistory() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/history/day").param("from", "2021-01-01").param("to", "9999-12-31"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("[]"));
+    }
+
+    @Test
+    public void testTooManyPeriods() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/history/day")).andDo(print())
+            .andExpect(status().isBadRequest())
+            .andExpect(status().reason(containsString("History range from 2020-01-31 to 2020-06-30 holds more than 24 periods.")));
+        this.mockMvc.perform(get("/challenge/history/day").param("from", "2020-06-10"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(21));
+    }
+
+    @Test
+    public void testInvalidPeriodRange() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/history/year").param("from", "2020-06-01").param("to", "2020-05-01"))
+            .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get("/challenge/history/week"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testIndexRebuiltWhenLedgerArchived() throws Exception
+    {
+        Assertions.assertEquals(3, ledgerHistory.getIndex().size());
+
+        final Path archived = archive("2020-07-31", 700);
+        try {
+            Assertions.assertEquals(4, ledgerHistory.getIndex().size());
+            this.mockMvc.perform(get("/challenge/history").param("fields", "revenue"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"revenue\":\"$1,700\"}"));
+        } finally {
+            Files.delete(archived);
+        }
+        Assertions.assertEquals(3, ledgerHistory.getIndex().size());
+    }
+
+    private static Path archive(final String balanceDate, final int revenue) throws IOException
+    {
+        return Files.write(directory.resolve(balanceDate + ".json"), String.format(LEDGER, balanceDate, revenue).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,51 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.Accounting;
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.LedgerConsistency;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.services.AccountingMetricsInterface;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The live ledger of a ledger ingested in streaming mode, which keeps no accounting records.
+ */
+@SpringBootTest(properties = "accounting.metrics.ledger.mode=streaming")
+public class LiveLedgerTests
+{
+    @Autowired
+    private AccountingMetricsInterface accountingMetricsService;
+
+    @SpyBean
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testStreamedLedgerSeededWithoutTreeMapping() throws Exception
+    {
+        final Accounting changedRevenue = new Accounting();
+        changedRevenue.setAccount_identifier("e2bacdc6-2006-43c2-a5da-3c0e5f43b452");
+        changedRevenue.setTotal_value(new BigDecimal(40000));
+
+        final Metrics metrics = accountingMetricsService.applyLedgerDeltas(List.of(changedRevenue));
+        final LedgerConsistency consistency = accountingMetricsService.checkLiveConsistency();
+
+        Assertions.assertEquals("$40,000", metrics.getRevenue());
+        Assertions.assertEquals("$36,530", metrics.getExpenses());
+        Assertions.assertEquals("118.8%", metrics.getWorkingCapitalRatio());
+        Assertions.assertTrue(consistency.isConsistent());
+        Assertions.assertEquals(25, consistency.getAccounts());
+        Mockito.verify(objectMapper, Mockito.never()).readValue(Mockito.any(File.class), Mockito.eq(BookKeeping.class));
+    }
+}
@@ -0,0 +1,226 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.impl.AccountingMetricsService;
+import nz.co.westpac.accounting.services.impl.LedgerSnapshotCache;
+import nz.co.westpac.accounting.services.impl.LedgerTelemetry;
+import nz.co.westpac.accounting.services.impl.MetricsBroadcaster;
+import nz.co.westpac.accounting.services.impl.VirtualThreadExecutor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The broadcaster publishes snapshots offered to the ledger snapshot cache, and checks the cached
+ * snapshot every 10 milliseconds, so the same ledger version is published again and again.
+ */
+public class MetricsBroadcasterTests
+{
+    private static final long TIMEOUT = 10;
+
+    private final MetricsBroadcaster metricsBroadcaster = new MetricsBroadcaster();
+
+    private final VirtualThreadExecutor virtualThreadExecutor = new VirtualThreadExecutor();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Map<LedgerAggregates, Metrics> ledgerMetrics = new ConcurrentHashMap<>();
+
+    private final List<LedgerAggregates> calculated = new CopyOnWriteArrayList<>();
+
+    private final LedgerSnapshotCache ledgerSnapshotCache = new LedgerSnapshotCache()
+    {
+        @Override
+        public LedgerSnapshot getSnapshot()
+        {
+            return getCachedSnapshot();
+        }
+    };
+
+    private final AccountingMetricsService accountingMetricsService = new AccountingMetricsService()
+    {
+        @Override
+        public Metrics calculateMetrics(final LedgerAggregates aggregates)
+        {
+            calculated.add(aggregates);
+            final Metrics metrics = ledgerMetrics.get(aggregates);
+            if (metrics == null) {
+                throw new IllegalStateException("Failed calculating metrics.");
+            }
+            return metrics;
+        }
+    };
+
+    @BeforeEach
+    public void initialize()
+    {
+        final AccountingMetricsProperties properties = new AccountingMetricsProperties();
+        properties.getStream().setCheckInterval(10L);
+        properties.getThreads().setVirtual(false);
+        ReflectionTestUtils.setField(virtualThreadExecutor, "properties", properties);
+        virtualThreadExecutor.initialize();
+        final LedgerTelemetry telemetry = new LedgerTelemetry();
+        ReflectionTestUtils.setField(telemetry, "meterRegistry", meterRegistry);
+
+        ReflectionTestUtils.setField(metricsBroadcaster, "properties", properties);
+        ReflectionTestUtils.setField(metricsBroadcaster, "ledgerSnapshotCache", ledgerSnapshotCache);
+        ReflectionTestUtils.setField(metricsBroadcaster, "accountingMetricsService", accountingMetricsService);
+        ReflectionTestUtils.setField(metricsBroadcaster, "virtualThreadExecutor", virtualThreadExecutor);
+        ReflectionTestUtils.setField(metricsBroadcaster, "telemetry", telemetry);
+        metricsBroadcaster.initialize();
+    }
+
+    @AfterEach
+    public void shutdown()
+    {
+        metricsBroadcaster.shutdown();
+        virtualThreadExecutor.shutdown();
+    }
+
+    @Test
+    public void testSlowSubscriberSkipsToLatestMetrics() throws Exception
+    {
+        change(1, "$100");
+        final CountDownLatch busy = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final BlockingQueue<Metrics> slow = new LinkedBlockingQueue<>();
+        final BlockingQueue<Metrics> fast = new LinkedBlockingQueue<>();
+        final Runnable unsubscribeSlow = metricsBroadcaster.subscribe(metrics -> {
+            slow.add(metrics);
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final Runnable unsubscribeFast = metricsBroadcaster.subscribe(fast::add);
+        Assertions.assertTrue(busy.await(TIMEOUT, TimeUnit.SECONDS));
+        Assertions.assertEquals("$100", next(fast).getRevenue());
+
+        // the slow subscriber is still busy with $100, so $200 and $300 get replaced before delivery.
+        for (final String revenue : new String[] {"$200", "$300", "$400"}) {
+            change(Long.parseLong(revenue.substring(1)), revenue);
+            Assertions.assertEquals(revenue, next(fast).getRevenue());
+        }
+        awaitSkipped(2.0);
+        Assertions.assertEquals(2.0, meterRegistry.get("accounting.metrics.stream.subscribers").gauge().value());
+
+        release.countDown();
+        Assertions.assertEquals("$100", next(slow).getRevenue());
+        Assertions.assertEquals("$400", next(slow).getRevenue());
+        Assertions.assertNull(slow.poll(100, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(2.0, meterRegistry.get("accounting.metrics.stream.skipped").counter().count());
+
+        unsubscribeSlow.run();
+        unsubscribeFast.run();
+        Assertions.assertEquals(0.0, meterRegistry.get("accounting.metrics.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    public void testUnchangedMetricsCalculatedOncePerVersion() throws Exception
+    {
+        final LedgerSnapshot first = change(1, "$100");
+        final BlockingQueue<Metrics> one = new LinkedBlockingQueue<>();
+        final BlockingQueue<Metrics> other = new LinkedBlockingQueue<>();
+        final Runnable unsubscribeOne = metricsBroadcaster.subscribe(one::add);
+        final Runnable unsubscribeOther = metricsBroadcaster.subscribe(other::add);
+        Assertions.assertEquals("$100", next(one).getRevenue());
+        Assertions.assertEquals("$100", next(other).getRevenue());
+
+        // a new ledger version with the same metrics is calculated, but not pushed.
+        final LedgerSnapshot unchanged = change(2, "$100");
+        awaitCalculation(unchanged);
+        final LedgerSnapshot last = change(3, "$300");
+        Assertions.assertEquals("$300", next(one).getRevenue());
+        Assertions.assertEquals("$300", next(other).getRevenue());
+        Thread.sleep(100);
+
+        Assertions.assertNull(one.poll());
+        Assertions.assertNull(other.poll());
+        Assertions.assertEquals(3, calculated.size());
+        Assertions.assertEquals(1, Collections.frequency(calculated, first.getAggregates()));
+        Assertions.assertEquals(1, Collections.frequency(calculated, unchanged.getAggregates()));
+        Assertions.assertEquals(1, Collections.frequency(calculated, last.getAggregates()));
+        Assertions.assertEquals(0.0, meterRegistry.get("accounting.metrics.stream.skipped").counter().count());
+        unsubscribeOne.run();
+        unsubscribeOther.run();
+    }
+
+    @Test
+    public void testFailedCalculationRetriedByNextCheck() throws Exception
+    {
+        final LedgerSnapshot failing = change(1, null);
+        final BlockingQueue<Metrics> delivered = new LinkedBlockingQueue<>();
+        final Runnable unsubscribe = metricsBroadcaster.subscribe(delivered::add);
+        awaitCalculation(failing);
+
+        ledgerMetrics.put(failing.getAggregates(), metrics("$100"));
+
+        Assertions.assertEquals("$100", next(delivered).getRevenue());
+        Assertions.assertTrue(Collections.frequency(calculated, failing.getAggregates()) > 1);
+        unsubscribe.run();
+    }
+
+    /**
+     * Cache a new ledger version, failing its calculation when no revenue is given.
+     */
+    private LedgerSnapshot change(final long version, final String revenue)
+    {
+        final LedgerAggregates aggregates = new LedgerAggregates();
+        if (revenue != null) {
+            ledgerMetrics.put(aggregates, metrics(revenue));
+        }
+        return ledgerSnapshotCache.offer(new LedgerSnapshot(null, aggregates, null, version, 0, null, version));
+    }
+
+    private void awaitCalculation(final LedgerSnapshot snapshot) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!calculated.contains(snapshot.getAggregates()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(calculated.contains(snapshot.getAggregates()));
+    }
+
+    private void awaitSkipped(final double skipped) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (meterRegistry.get("accounting.metrics.stream.skipped").counter().count() < skipped && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(skipped, meterRegistry.get("accounting.metrics.stream.skipped").counter().count());
+    }
+
+    private static Metrics next(final BlockingQueue<Metrics> delivered) throws InterruptedException
+    {
+        final Metrics metrics = delivered.poll(TIMEOUT, TimeUnit.SECONDS);
+        Assertions.assertNotNull(metrics);
+        return metrics;
+    }
+
+    private static Metrics metrics(final String revenue)
+    {
+        final Metrics metrics = new Metrics();
+        metrics.setRevenue(revenue);
+        return metrics;
+    }
+}
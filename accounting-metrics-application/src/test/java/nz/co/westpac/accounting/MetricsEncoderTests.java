@@ -0,0 +1,200 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.DataQuality;
+import nz.co.westpac.accounting.models.Metric;
+import nz.co.westpac.accounting.models.Metrics;
+import nz.co.westpac.accounting.models.MetricsEncoding;
+import nz.co.westpac.accounting.services.impl.MetricsEncoder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the protocol buffers encoding field by field, after {@code src/main/proto/metrics.proto}.
+ */
+public class MetricsEncoderTests
+{
+    private final MetricsEncoder metricsEncoder = new MetricsEncoder();
+
+    @Test
+    public void testProtobufValuesDecoded()
+    {
+        final Map<Integer, List<Object>> message = decode(metricsEncoder.encode(metrics(), MetricsEncoding.PROTOBUF));
+
+        // revenue 32431.00 keeps its scale.
+        final Map<Integer, List<Object>> revenue = decode(bytes(message, 1));
+        Assertions.assertEquals(3243100L, unscaled(revenue));
+        Assertions.assertEquals(2L, zigZag(varint(revenue, 2)));
+        Assertions.assertEquals("$32,431", text(revenue, 3));
+
+        // negative values are ZigZag encoded, -126 becomes 251.
+        final Map<Integer, List<Object>> netProfitMargin = decode(bytes(message, 4));
+        Assertions.assertEquals(251L, varint(netProfitMargin, 1));
+        Assertions.assertEquals(-126L, unscaled(netProfitMargin));
+        Assertions.assertEquals(3L, zigZag(varint(netProfitMargin, 2)));
+        Assertions.assertEquals("-12.6%", text(netProfitMargin, 3));
+
+        Assertions.assertEquals("NZD", text(message, 6));
+        final Map<Integer, List<Object>> dataQuality = decode(bytes(message, 8));
+        Assertions.assertEquals(24L, varint(dataQuality, 1));
+        Assertions.assertEquals(1L, varint(dataQuality, 2));
+        final Map<Integer, List<Object>> quarantined = decode(bytes(dataQuality, 3));
+        Assertions.assertEquals("missingTotalValue", text(quarantined, 1));
+        Assertions.assertEquals(1L, varint(quarantined, 2));
+        Assertions.assertEquals("grossProfitMargin", text(dataQuality, 4));
+        Assertions.assertFalse(message.containsKey(3));
+    }
+
+    @Test
+    public void testProtobufZeroTellsApartFromNoValue()
+    {
+        final Map<Integer, List<Object>> message = decode(metricsEncoder.encode(metrics(), MetricsEncoding.PROTOBUF));
+
+        // expenses of zero hold an unscaled value of zero, the working capital ratio has no value.
+        final Map<Integer, List<Object>> expenses = decode(bytes(message, 2));
+        Assertions.assertEquals(0L, unscaled(expenses));
+        Assertions.assertFalse(expenses.containsKey(2));
+        Assertions.assertEquals("$0", text(expenses, 3));
+        final Map<Integer, List<Object>> workingCapitalRatio = decode(bytes(message, 5));
+        Assertions.assertFalse(workingCapitalRatio.containsKey(1));
+        Assertions.assertEquals("118.8%", text(workingCapitalRatio, 3));
+    }
+
+    @Test
+    public void testProtobufRoundedToEighteenDigits()
+    {
+        final Metrics metrics = new Metrics();
+        metrics.setRevenue("$12,345,678,901,234,567,890");
+        final Map<Metric, BigDecimal> values = new EnumMap<>(Metric.class);
+        values.put(Metric.REVENUE, new BigDecimal("-12345678901234567890.12"));
+        metrics.setValues(values);
+
+        final Map<Integer, List<Object>> revenue = decode(bytes(decode(metricsEncoder.encode(metrics, MetricsEncoding.PROTOBUF)), 1));
+
+        final long scale = zigZag(varint(revenue, 2));
+        Assertions.assertEquals(-2L, scale);
+        Assertions.assertEquals(new BigDecimal("-1.23456789012345679E+19"), BigDecimal.valueOf(unscaled(revenue), (int) scale));
+        Assertions.assertEquals(18, BigDecimal.valueOf(unscaled(revenue)).precision());
+    }
+
+    @Test
+    public void testSmileDecoded() throws IOException
+    {
+        final JsonNode metrics = new ObjectMapper(new SmileFactory()).readTree(metricsEncoder.encode(metrics(), MetricsEncoding.SMILE));
+
+        Assertions.assertEquals("$32,431", metrics.get("revenue").get("text").asText());
+        Assertions.assertEquals(0, new BigDecimal("32431.00").compareTo(metrics.get("revenue").get("value").decimalValue()));
+        Assertions.assertEquals(0, BigDecimal.ZERO.compareTo(metrics.get("expenses").get("value").decimalValue()));
+        Assertions.assertEquals(0, new BigDecimal("-0.126").compareTo(metrics.get("netProfitMargin").get("value").decimalValue()));
+        Assertions.assertFalse(metrics.get("workingCapitalRatio").has("value"));
+        Assertions.assertEquals("NZD", metrics.get("currency").asText());
+        Assertions.assertEquals(24, metrics.get("dataQuality").get("validRows").asInt());
+        Assertions.assertEquals(1, metrics.get("dataQuality").get("quarantined").get("missingTotalValue").asInt());
+        Assertions.assertEquals("grossProfitMargin", metrics.get("dataQuality").get("undefinedMetrics").get(0).asText());
+    }
+
+    /**
+     * Metrics with a scaled, a zero, a negative and a missing value, and a data quality summary.
+     */
+    private static Metrics metrics()
+    {
+        final Metrics metrics = new Metrics();
+        metrics.setRevenue("$32,431");
+        metrics.setExpenses("$0");
+        metrics.setNetProfitMargin("-12.6%");
+        metrics.setWorkingCapitalRatio("118.8%");
+        metrics.setCurrency("NZD");
+        final Map<Metric, BigDecimal> values = new EnumMap<>(Metric.class);
+        values.put(Metric.REVENUE, new BigDecimal("32431.00"));
+        values.put(Metric.EXPENSES, BigDecimal.ZERO);
+        values.put(Metric.NET_PROFIT_MARGIN, new BigDecimal("-0.126"));
+        metrics.setValues(values);
+        final DataQuality dataQuality = new DataQuality();
+        dataQuality.setValidRows(24);
+        dataQuality.setQuarantinedRows(1);
+        final Map<String, Long> quarantined = new LinkedHashMap<>();
+        quarantined.put("missingTotalValue", 1L);
+        dataQuality.setQuarantined(quarantined);
+        dataQuality.setUndefinedMetrics(List.of("grossProfitMargin"));
+        metrics.setDataQuality(dataQuality);
+        return metrics;
+    }
+
+    /**
+     * Decode a message into the values of its fields, a Long for varints and a byte array for
+     * length delimited fields.
+     */
+    private static Map<Integer, List<Object>> decode(final byte[] message)
+    {
+        final Map<Integer, List<Object>> fields = new LinkedHashMap<>();
+        final int[] position = {0};
+        while (position[0] < message.length) {
+            final long tag = readVarint(message, position);
+            final Object value;
+            if ((tag & 0x7) == 0) {
+                value = readVarint(message, position);
+            } else {
+                Assertions.assertEquals(2, tag & 0x7);
+                final int length = (int) readVarint(message, position);
+                final byte[] bytes = new byte[length];
+                System.arraycopy(message, position[0], bytes, 0, length);
+                position[0] += length;
+                value = bytes;
+            }
+            fields.computeIfAbsent((int) (tag >>> 3), fieldNumber -> new ArrayList<>()).add(value);
+        }
+        return fields;
+    }
+
+    private static long readVarint(final byte[] message, final int[] position)
+    {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            final byte next = message[position[0]++];
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long unscaled(final Map<Integer, List<Object>> metricValue)
+    {
+        return zigZag(varint(metricValue, 1));
+    }
+
+    private static long zigZag(final long value)
+    {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static long varint(final Map<Integer, List<Object>> message, final int fieldNumber)
+    {
+        Assertions.assertTrue(message.containsKey(fieldNumber));
+        return (Long) message.get(fieldNumber).get(0);
+    }
+
+    private static byte[] bytes(final Map<Integer, List<Object>> message, final int fieldNumber)
+    {
+        Assertions.assertTrue(message.containsKey(fieldNumber));
+        return (byte[]) message.get(fieldNumber).get(0);
+    }
+
+    private static String text(final Map<Integer, List<Object>> message, final int fieldNumber)
+    {
+        return new String(bytes(message, fieldNumber), StandardCharsets.UTF_8);
+    }
+}
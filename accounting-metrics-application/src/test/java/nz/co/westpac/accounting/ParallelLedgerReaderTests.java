@@ -0,0 +1,94 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.services.impl.ParallelLedgerReader;
+import nz.co.westpac.accounting.services.impl.StreamingLedgerReader;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelLedgerReaderTests
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final StreamingLedgerReader streamingLedgerReader = new StreamingLedgerReader(objectMapper);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void stopExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelMatchesStreaming() throws Exception
+    {
+        assertMatchesStreaming(new File("src/main/resources/data.json"));
+    }
+
+    @Test
+    public void testParallelMatchesStreamingWithStructureInStrings(@TempDir final Path directory) throws Exception
+    {
+        final StringBuilder content = new StringBuilder("{\"tags\":[\"a,]\",{\"x\":[1,2]}],\"object_category\":\"general\\\"ledger\",\"data\":[");
+        for (int row = 0; row < 500; row++) {
+            content.append(row == 0 ? "" : ",\n")
+                .append("{\"account_category\":\"").append(row % 3 == 0 ? "revenue" : row % 3 == 1 ? "expense" : "assets")
+                .append("\",\"account_name\":\"name\\\\\\\"},{\\\\").append(row).append(",]\\\\\",\"extra\":{\"nested\":[[{}],[]]},")
+                .append("\"account_type\":\"current\",\"value_type\":\"debit\",\"total_value\":").append(row).append('.').append(row % 100).append('}');
+        }
+        content.append("],\"currency\":\"AUD\",\"after\":[1,2,3]}");
+        final File file = directory.resolve("ledger.json").toFile();
+        Files.writeString(file.toPath(), content);
+
+        assertMatchesStreaming(file);
+    }
+
+    @Test
+    public void testParallelInvalidContent(@TempDir final Path directory) throws Exception
+    {
+        final File file = directory.resolve("ledger.json").toFile();
+        Files.writeString(file.toPath(), Files.readString(Path.of("src/main/resources/data.json")).replace("\"revenue\"", "revenue"));
+
+        for (final int segments : new int[] {2, 16}) {
+            Assertions.assertThrows(JsonParseException.class,
+                () -> new ParallelLedgerReader(streamingLedgerReader, executor, segments, 16).read(file, new LedgerAggregates()));
+        }
+    }
+
+    private void assertMatchesStreaming(final File file) throws Exception
+    {
+        final LedgerAggregates expected = new LedgerAggregates();
+        final BookKeeping expectedHeader = streamingLedgerReader.read(file, expected::add);
+
+        for (final int segments : new int[] {2, 3, 7, 64}) {
+            final LedgerAggregates aggregates = new LedgerAggregates();
+            final BookKeeping header = new ParallelLedgerReader(streamingLedgerReader, executor, segments, 16).read(file, aggregates);
+
+            Assertions.assertNull(header.getData(), "Accounting records are not kept in memory.");
+            Assertions.assertEquals(expectedHeader.getCategory(), header.getCategory());
+            Assertions.assertEquals(expectedHeader.getCurrency(), header.getCurrency());
+            Assertions.assertEquals(expectedHeader.getBalance_date(), header.getBalance_date());
+            Assertions.assertEquals(expected.getRows(), aggregates.getRows());
+            Assertions.assertEquals(expected.getRevenue(), aggregates.getRevenue());
+            Assertions.assertEquals(expected.getExpenses(), aggregates.getExpenses());
+            Assertions.assertEquals(expected.getGrossProfit(), aggregates.getGrossProfit());
+            Assertions.assertEquals(expected.getDebitAssets(), aggregates.getDebitAssets());
+            Assertions.assertEquals(expected.getCreditAssets(), aggregates.getCreditAssets());
+            Assertions.assertEquals(expected.getCreditLiabilities(), aggregates.getCreditLiabilities());
+            Assertions.assertEquals(expected.getDebitLiabilities(), aggregates.getDebitLiabilities());
+        }
+    }
+}
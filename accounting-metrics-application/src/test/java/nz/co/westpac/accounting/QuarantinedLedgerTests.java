@@ -0,0 +1,96 @@
+package nz.co.westpac.accounting;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The ledger holds a single valid expense record, next to records which are not objects, or have a
+ * missing or invalid total_value. It has no revenue and no liabilities, so every ratio is undefined.
+ */
+@SpringBootTest(properties = "accounting.metrics.ledger.mode=tree")
+@AutoConfigureMockMvc
+public class QuarantinedLedgerTests
+{
+    private static final String LEDGER = "{\"data\": [{\"account_category\": \"expense\", \"total_value\": 100}, 42, null,"
+        + " {\"account_category\": \"expense\"}, {\"account_category\": \"expense\", \"total_value\": null},"
+        + " {\"account_category\": \"expense\", \"total_value\": \"n/a\"}]}";
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void ledgerPath(final DynamicPropertyRegistry registry)
+    {
+        registry.add("accounting.metrics.ledger.path", () -> directory.resolve("data.json").toString());
+    }
+
+    @BeforeAll
+    static void writeLedger() throws IOException
+    {
+        Files.write(directory.resolve("data.json"), LEDGER.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDataQualityReported() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.revenue").value("$0"))
+            .andExpect(jsonPath("$.expenses").value("$100"))
+            .andExpect(jsonPath("$.grossProfitMargin").doesNotExist())
+            .andExpect(jsonPath("$.netProfitMargin").doesNotExist())
+            .andExpect(jsonPath("$.workingCapitalRatio").doesNotExist())
+            .andExpect(jsonPath("$.dataQuality.validRows").value(1))
+            .andExpect(jsonPath("$.dataQuality.quarantinedRows").value(5))
+            .andExpect(jsonPath("$.dataQuality.quarantined.malformedRecord").value(2))
+            .andExpect(jsonPath("$.dataQuality.quarantined.missingTotalValue").value(2))
+            .andExpect(jsonPath("$.dataQuality.quarantined.invalidTotalValue").value(1))
+            .andExpect(jsonPath("$.dataQuality.undefinedMetrics.length()").value(3))
+            .andExpect(jsonPath("$.dataQuality.undefinedMetrics[0]").value("grossProfitMargin"))
+            .andExpect(jsonPath("$.dataQuality.undefinedMetrics[1]").value("netProfitMargin"))
+            .andExpect(jsonPath("$.dataQuality.undefinedMetrics[2]").value("workingCapitalRatio"));
+    }
+
+    @Test
+    public void testQuarantinedRecordsLeftOutOfBreakdown() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge/breakdown/account_category")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.groups").value(1))
+            .andExpect(jsonPath("$.items[0].key").value("expense"))
+            .andExpect(jsonPath("$.items[0].rows").value(1))
+            .andExpect(jsonPath("$.items[0].expenses").value("$100"));
+    }
+
+    @Test
+    public void testDataQualityOfSelectedMetrics() throws Exception
+    {
+        this.mockMvc.perform(get("/challenge").param("fields", "expenses,netProfitMargin")).andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.expenses").value("$100"))
+            .andExpect(jsonPath("$.revenue").doesNotExist())
+            .andExpect(jsonPath("$.dataQuality.quarantinedRows").value(5))
+            .andExpect(jsonPath("$.dataQuality.undefinedMetrics.length()").value(1))
+            .andExpect(jsonPath("$.dataQuality.undefinedMetrics[0]").value("netProfitMargin"));
+    }
+}
@@ -0,0 +1,103 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.Metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveAccountingMetricsApplicationTests
+{
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testAllMetricsInformation()
+    {
+        this.webTestClient.get().uri("/challenge").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo(
+                "{\"revenue\":\"$32,431\",\"expenses\":\"$36,530\",\"grossProfitMargin\":\"0%\",\"netProfitMargin\":\"-12.6%\",\"workingCapitalRatio\":\"118.8%\"}");
+    }
+
+    @Test
+    public void testSelectedMetricsInformation()
+    {
+        this.webTestClient.get().uri("/challenge?fields=netProfitMargin,revenue").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("{\"revenue\":\"$32,431\",\"netProfitMargin\":\"-12.6%\"}");
+    }
+
+    @Test
+    public void testRevenueMetricsInformation()
+    {
+        this.webTestClient.get().uri("/challenge/revenue").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("{\"revenue\":\"$32,431\"}");
+    }
+
+    @Test
+    public void testWorkingCapitalRatioMetricsInformation()
+    {
+        this.webTestClient.get().uri("/challenge/workingCapitalRatio").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("{\"workingCapitalRatio\":\"118.8%\"}");
+    }
+
+    @Test
+    public void testInvalidMetricsInformation()
+    {
+        this.webTestClient.get().uri("/challenge/invalid").exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testStreamedMetricsInformation() throws Exception
+    {
+        final ServerSentEvent<Metrics> event = this.webTestClient.get().uri("/challenge/stream").accept(MediaType.TEXT_EVENT_STREAM).exchange()
+            .expectStatus().isOk()
+            .returnResult(new ParameterizedTypeReference<ServerSentEvent<Metrics>>()
+            {
+            }).getResponseBody().blockFirst(Duration.ofSeconds(10));
+
+        Assertions.assertEquals("metrics", event.event());
+        Assertions.assertEquals("$32,431", event.data().getRevenue());
+        Assertions.assertEquals("118.8%", event.data().getWorkingCapitalRatio());
+
+        // cancelling the stream after the first event unsubscribes from the metrics.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.get("accounting.metrics.stream.subscribers").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0.0, meterRegistry.get("accounting.metrics.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    public void testNotModifiedMetricsInformation()
+    {
+        final String eTag = this.webTestClient.get().uri("/challenge/expenses").exchange()
+            .expectStatus().isOk()
+            .expectHeader().exists(HttpHeaders.ETAG)
+            .returnResult(String.class).getResponseHeaders().getETag();
+
+        this.webTestClient.get().uri("/challenge/expenses").header(HttpHeaders.IF_NONE_MATCH, eTag).exchange()
+            .expectStatus().isNotModified();
+    }
+}
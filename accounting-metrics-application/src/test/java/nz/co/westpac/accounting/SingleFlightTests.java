@@ -0,0 +1,129 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.services.impl.SingleFlight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class SingleFlightTests
+{
+    private static final int WAITERS = 8;
+
+    private final Counter coalesced = Counter.builder("coalesced").register(new SimpleMeterRegistry());
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(WAITERS + 1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    public void stopExecutor()
+    {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentLoadsCoalesced() throws Exception
+    {
+        final SingleFlight<String, String> flights = new SingleFlight<>(10000, coalesced);
+        final List<Future<String>> results = start(flights, () -> "snapshot");
+        release.countDown();
+
+        for (final Future<String> result : results) {
+            Assertions.assertEquals("snapshot", result.get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, loads.get());
+
+        // a completed load is not kept, the next caller loads again.
+        Assertions.assertEquals("reloaded", flights.execute("ledger", () -> "reloaded"));
+    }
+
+    @Test
+    public void testFailureSharedByWaiters() throws Exception
+    {
+        final ResponseStatusException failure = new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Data file contains invalid content");
+        final List<Future<String>> results = start(new SingleFlight<>(10000, coalesced), () -> {
+            throw failure;
+        });
+        release.countDown();
+
+        for (final Future<String> result : results) {
+            final ExecutionException thrown = Assertions.assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            Assertions.assertSame(failure, thrown.getCause());
+        }
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testTimeoutSharedByWaiters() throws Exception
+    {
+        final List<Future<String>> results = start(new SingleFlight<>(1000, coalesced), () -> "late");
+
+        for (final Future<String> result : results.subList(1, results.size())) {
+            final ExecutionException thrown = Assertions.assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) thrown.getCause()).getStatus());
+        }
+        release.countDown();
+        Assertions.assertEquals("late", results.get(0).get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    /**
+     * Start a load held until released, then the waiters for the same key, and wait until they all
+     * joined the load in flight.
+     *
+     * @return results of the loading caller first, then of the waiters.
+     */
+    private List<Future<String>> start(final SingleFlight<String, String> flights, final Supplier<String> load) throws Exception
+    {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flights.execute("ledger", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return load.get();
+        })));
+        Assertions.assertTrue(loading.await(10, TimeUnit.SECONDS));
+        for (int waiter = 0; waiter < WAITERS; waiter++) {
+            results.add(executor.submit(() -> flights.execute("ledger", () -> {
+                loads.incrementAndGet();
+                return "duplicate";
+            })));
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalesced.count() < WAITERS && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(WAITERS, (int) coalesced.count());
+        return results;
+    }
+
+    private static void await(final CountDownLatch latch)
+    {
+        try {
+            latch.await();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.BookKeeping;
+import nz.co.westpac.accounting.models.LedgerAggregates;
+import nz.co.westpac.accounting.models.QuarantineReason;
+import nz.co.westpac.accounting.services.impl.StreamingLedgerReader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class StreamingLedgerReaderTests
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testStreamingMatchesTreeMapping() throws Exception
+    {
+        final File file = new File("src/main/resources/data.json");
+        final BookKeeping tree = objectMapper.readValue(file, BookKeeping.class);
+        final LedgerAggregates expected = LedgerAggregates.of(tree);
+
+        final LedgerAggregates aggregates = new LedgerAggregates();
+        final BookKeeping header = new StreamingLedgerReader(objectMapper).read(file, aggregates::add);
+
+        Assertions.assertNull(header.getData(), "Accounting records are not kept in memory.");
+        Assertions.assertEquals(tree.getConnection_id(), header.getConnection_id());
+        Assertions.assertEquals(tree.getUser(), header.getUser());
+        Assertions.assertEquals(tree.getBalance_date(), header.getBalance_date());
+        Assertions.assertEquals(expected.getRows(), aggregates.getRows());
+        Assertions.assertEquals(expected.getRevenue(), aggregates.getRevenue());
+        Assertions.assertEquals(expected.getExpenses(), aggregates.getExpenses());
+        Assertions.assertEquals(expected.getGrossProfit(), aggregates.getGrossProfit());
+        Assertions.assertEquals(expected.getDebitAssets(), aggregates.getDebitAssets());
+        Assertions.assertEquals(expected.getCreditAssets(), aggregates.getCreditAssets());
+        Assertions.assertEquals(expected.getCreditLiabilities(), aggregates.getCreditLiabilities());
+        Assertions.assertEquals(expected.getDebitLiabilities(), aggregates.getDebitLiabilities());
+    }
+
+    @Test
+    public void testInvalidRecordsQuarantinedLikeTreeMapping() throws Exception
+    {
+        final String content = "{\"data\": [{\"account_category\": \"revenue\", \"total_value\": 250.5}, {\"account_category\": \"revenue\"},"
+                + " {\"account_category\": \"revenue\", \"total_value\": \"1,000\"}, {\"account_category\": \"revenue\", \"total_value\": [1]},"
+                + " 42, null, \"revenue\", [{\"account_category\": \"revenue\", \"total_value\": 1}]]}";
+        final LedgerAggregates expected = LedgerAggregates.of(objectMapper.readValue(content, BookKeeping.class));
+
+        final LedgerAggregates aggregates = new LedgerAggregates();
+        new StreamingLedgerReader(objectMapper).read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), aggregates::add);
+
+        for (final LedgerAggregates quarantined : List.of(expected, aggregates)) {
+            Assertions.assertEquals(1, quarantined.getRows());
+            Assertions.assertEquals(new BigDecimal("250.5"), quarantined.getRevenue());
+            Assertions.assertEquals(1, quarantined.getQuarantinedRows(QuarantineReason.MISSING_TOTAL_VALUE));
+            Assertions.assertEquals(2, quarantined.getQuarantinedRows(QuarantineReason.INVALID_TOTAL_VALUE));
+            Assertions.assertEquals(4, quarantined.getQuarantinedRows(QuarantineReason.MALFORMED_RECORD));
+            Assertions.assertEquals(7, quarantined.getQuarantinedRows());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.models.LedgerSnapshot;
+import nz.co.westpac.accounting.models.LedgerStoreStatistics;
+import nz.co.westpac.accounting.services.impl.TenantLedgerStore;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The memory budget holds two of the three ledgers below: a tree mapped ledger is estimated at
+ * 2048 bytes plus three times its file length.
+ */
+@SpringBootTest(properties = {"accounting.metrics.tenants.memoryBudget=5000", "accounting.metrics.ledger.mode=tree"})
+public class TenantLedgerStoreTests
+{
+    private static final String LEDGER = "{\"data\":[{\"account_category\":\"revenue\",\"value_type\":\"debit\",\"account_type\":\"sales\",\"total_value\":%d}]}";
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private TenantLedgerStore tenantLedgerStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void tenantsDirectory(final DynamicPropertyRegistry registry)
+    {
+        registry.add("accounting.metrics.tenants.directory", () -> directory.toString());
+    }
+
+    @BeforeAll
+    static void writeLedgers() throws Exception
+    {
+        for (final String connectionId : new String[] {"alpha", "bravo", "charlie"}) {
+            Files.write(directory.resolve(connectionId + ".json"), String.format(LEDGER, 100 + connectionId.length()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvictedToFitBudget()
+    {
+        final LedgerSnapshot alpha = tenantLedgerStore.getSnapshot("alpha");
+        tenantLedgerStore.getSnapshot("bravo");
+        final LedgerStoreStatistics loaded = tenantLedgerStore.getStatistics();
+        Assertions.assertEquals(2, loaded.getLedgers());
+        Assertions.assertEquals(0, loaded.getEvictions());
+        Assertions.assertEquals(5000L, loaded.getMemoryBudget());
+        Assertions.assertEquals(alpha.getRetainedSize() * 2, loaded.getRetainedSize());
+
+        // alpha is used after bravo, so bravo is the least recently used ledger once charlie loads.
+        Assertions.assertSame(alpha, tenantLedgerStore.getSnapshot("alpha"));
+        tenantLedgerStore.getSnapshot("charlie");
+        final LedgerStoreStatistics evicted = tenantLedgerStore.getStatistics();
+        Assertions.assertEquals(2, evicted.getLedgers());
+        Assertions.assertEquals(1, evicted.getEvictions());
+        Assertions.assertTrue(evicted.getRetainedSize() <= evicted.getMemoryBudget());
+        Assertions.assertEquals(loaded.getHits() + 1, evicted.getHits());
+        Assertions.assertEquals(loaded.getMisses() + 1, evicted.getMisses());
+
+        Assertions.assertSame(alpha, tenantLedgerStore.getSnapshot("alpha"));
+        tenantLedgerStore.getSnapshot("bravo");
+        final LedgerStoreStatistics reloaded = tenantLedgerStore.getStatistics();
+        Assertions.assertEquals(2, reloaded.getLedgers());
+        Assertions.assertEquals(2, reloaded.getEvictions());
+        Assertions.assertEquals(evicted.getHits() + 1, reloaded.getHits());
+        Assertions.assertEquals(evicted.getMisses() + 1, reloaded.getMisses());
+        Assertions.assertSame(alpha, tenantLedgerStore.getSnapshot("alpha"));
+
+        Assertions.assertEquals(2.0, meterRegistry.get("accounting.metrics.connections.evictions").functionCounter().count());
+        Assertions.assertEquals(2.0, meterRegistry.get("accounting.metrics.connections.ledgers").gauge().value());
+    }
+}
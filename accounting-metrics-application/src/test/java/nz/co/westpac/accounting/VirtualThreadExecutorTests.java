@@ -0,0 +1,96 @@
+package nz.co.westpac.accounting;
+
+import nz.co.westpac.accounting.properties.AccountingMetricsProperties;
+import nz.co.westpac.accounting.services.impl.VirtualThreadExecutor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+public class VirtualThreadExecutorTests
+{
+    private final VirtualThreadExecutor virtualThreadExecutor = new VirtualThreadExecutor();
+
+    @AfterEach
+    public void shutdown()
+    {
+        virtualThreadExecutor.shutdown();
+    }
+
+    @Test
+    public void testDisabledRunsSubtasksInline()
+    {
+        initialize(false);
+        final Thread caller = Thread.currentThread();
+
+        final Future<Thread> subtask = virtualThreadExecutor.fork(Thread::currentThread);
+
+        Assertions.assertEquals(false, virtualThreadExecutor.isEnabled());
+        Assertions.assertEquals(null, virtualThreadExecutor.getExecutor());
+        Assertions.assertTrue(subtask.isDone());
+        Assertions.assertSame(caller, virtualThreadExecutor.join(subtask));
+    }
+
+    @Test
+    public void testUnsupportedFallsBackToInline()
+    {
+        initialize(true);
+        final boolean supported = Runtime.version().feature() >= 21;
+
+        final Future<Thread> subtask = virtualThreadExecutor.fork(Thread::currentThread);
+
+        // virtual threads need Java 21, older runtimes run subtasks on the calling thread.
+        Assertions.assertEquals(supported, virtualThreadExecutor.isEnabled());
+        Assertions.assertEquals(supported, VirtualThreadExecutor.newVirtualThreadPerTaskExecutor() != null);
+        Assertions.assertEquals(!supported, virtualThreadExecutor.join(subtask) == Thread.currentThread());
+    }
+
+    @Test
+    public void testFailingSubtaskReachesJoin()
+    {
+        for (final boolean virtual : new boolean[] {false, true}) {
+            initialize(virtual);
+            final IllegalStateException failure = new IllegalStateException("Failed subtask.");
+
+            final Future<Object> subtask = virtualThreadExecutor.fork(() -> {
+                throw failure;
+            });
+
+            Assertions.assertSame(failure, Assertions.assertThrows(IllegalStateException.class, () -> virtualThreadExecutor.join(subtask)));
+            virtualThreadExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCheckedFailureReachesJoinAsStatus()
+    {
+        for (final boolean virtual : new boolean[] {false, true}) {
+            initialize(virtual);
+            final IOException failure = new IOException("Failed reading.");
+
+            final Future<Object> subtask = virtualThreadExecutor.fork(() -> {
+                throw failure;
+            });
+
+            final ResponseStatusException statusException = Assertions.assertThrows(ResponseStatusException.class, () -> virtualThreadExecutor.join(subtask));
+            Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, statusException.getStatus());
+            Assertions.assertSame(failure, statusException.getCause());
+            virtualThreadExecutor.shutdown();
+        }
+    }
+
+    private void initialize(final boolean virtual)
+    {
+        final AccountingMetricsProperties properties = new AccountingMetricsProperties();
+        properties.getThreads().setVirtual(virtual);
+        ReflectionTestUtils.setField(virtualThreadExecutor, "properties", properties);
+        ReflectionTestUtils.setField(virtualThreadExecutor, "executor", null);
+        virtualThreadExecutor.initialize();
+    }
+}